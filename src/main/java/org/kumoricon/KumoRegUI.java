@@ -31,6 +31,7 @@ import org.kumoricon.site.utility.closeouttill.CloseOutTillView;
 import org.kumoricon.site.utility.importattendee.ImportAttendeeView;
 import org.kumoricon.site.utility.loadbasedata.LoadBaseDataView;
 import org.kumoricon.site.utility.preprint.PreprintBadgeView;
+import org.kumoricon.site.utility.printqueue.PrintQueueView;
 import org.kumoricon.site.utility.testbadge.TestBadgeView;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -196,6 +197,7 @@ public class KumoRegUI extends UI {
 
             MenuBar.MenuItem utility = menu.addItem("Utility", null, null);
             utility.addItem("Print Test Badge", null, v -> getNavigator().navigateTo(TestBadgeView.VIEW_NAME));
+            utility.addItem("Print Queue", null, v -> getNavigator().navigateTo(PrintQueueView.VIEW_NAME));
             if (getLoggedInUser().hasRight("at_con_registration")) {
                 utility.addItem("Close out Till", null, v -> getNavigator().navigateTo(CloseOutTillView.VIEW_NAME));
             }
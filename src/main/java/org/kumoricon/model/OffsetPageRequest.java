@@ -0,0 +1,60 @@
+package org.kumoricon.model;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.io.Serializable;
+
+/**
+ * Pageable that starts at an arbitrary row instead of a page boundary. Vaadin grids request
+ * rows by offset and limit, which don't line up with PageRequest's page numbers.
+ */
+public class OffsetPageRequest implements Pageable, Serializable {
+    private final int offset;
+    private final int limit;
+    private final Sort sort;
+
+    /**
+     * @param offset First row to return, starting at 0
+     * @param limit Maximum number of rows to return
+     * @param sort Sort order, may be null
+     */
+    public OffsetPageRequest(int offset, int limit, Sort sort) {
+        if (offset < 0) { throw new IllegalArgumentException("Offset must not be less than zero"); }
+        if (limit < 1) { throw new IllegalArgumentException("Limit must not be less than one"); }
+        this.offset = offset;
+        this.limit = limit;
+        this.sort = sort;
+    }
+
+    @Override
+    public int getPageNumber() { return offset / limit; }
+
+    @Override
+    public int getPageSize() { return limit; }
+
+    @Override
+    public int getOffset() { return offset; }
+
+    @Override
+    public Sort getSort() { return sort; }
+
+    @Override
+    public Pageable next() { return new OffsetPageRequest(offset + limit, limit, sort); }
+
+    @Override
+    public Pageable previousOrFirst() {
+        return hasPrevious() ? new OffsetPageRequest(Math.max(offset - limit, 0), limit, sort) : first();
+    }
+
+    @Override
+    public Pageable first() { return new OffsetPageRequest(0, limit, sort); }
+
+    @Override
+    public boolean hasPrevious() { return offset > 0; }
+
+    @Override
+    public String toString() {
+        return String.format("[OffsetPageRequest offset %s, limit %s, sort %s]", offset, limit, sort);
+    }
+}
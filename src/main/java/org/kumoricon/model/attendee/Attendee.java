@@ -1,5 +1,6 @@
 package org.kumoricon.model.attendee;
 
+import org.hibernate.Hibernate;
 import org.kumoricon.model.Record;
 import org.kumoricon.model.badge.AgeRange;
 import org.kumoricon.model.badge.Badge;
@@ -46,7 +47,7 @@ public class Attendee extends Record {
     private Boolean checkedIn;                  // Has attendee checked in and received badge?
     @Temporal(TemporalType.TIMESTAMP)
     private Date checkInTime;                    // Timestamp when checked in
-    @OneToMany(fetch = FetchType.EAGER, cascade = CascadeType.ALL, mappedBy = "attendee")
+    @OneToMany(fetch = FetchType.LAZY, cascade = CascadeType.ALL, mappedBy = "attendee")
     @OrderBy("timestamp desc")
     private Set<AttendeeHistory> history;
     private boolean preRegistered;              // Did attendee register before con?
@@ -58,6 +59,8 @@ public class Attendee extends Record {
     private String staffDepartment;
     private String staffDepartmentColor;        // HTML color code for the department. Ex: "#00FF00"
     private String staffImageFilename;
+    @Column(length = 64)
+    private String staffImportHash;             // Hash of the staff record this was last imported from
 
 
     public Attendee() {
@@ -118,12 +121,20 @@ public class Attendee extends Record {
     public LocalDate getBirthDate() { return birthDate; }
     public void setBirthDate(LocalDate birthDate) { this.birthDate = birthDate; }
     public Long getAge() {
-        if (birthDate == null) { return 0L; }
-        LocalDate now = LocalDate.now(ZoneId.of("America/Los_Angeles"));
-        return ChronoUnit.YEARS.between(birthDate, now);
+        return getAge(birthDate, LocalDate.now(ZoneId.of("America/Los_Angeles")));
     }
 
     public Long getAge(LocalDate date) {
+        return getAge(birthDate, date);
+    }
+
+    /**
+     * Age on the given date. Shared with AttendeeSummary so both calculate it the same way
+     * @param birthDate Birth date (may be null)
+     * @param date Date to calculate age on
+     * @return Age in years, or 0 if birthDate is null
+     */
+    public static Long getAge(LocalDate birthDate, LocalDate date) {
         if (birthDate == null) { return 0L; }
         return ChronoUnit.YEARS.between(birthDate, date);
     }
@@ -185,7 +196,10 @@ public class Attendee extends Record {
 
     public void addHistoryEntry(User user, String message) {
         if (message != null && !message.trim().equals("")) {
-            if (history == null) { history = new HashSet<>(); }
+            // History is loaded lazily. If it wasn't loaded, don't load it just to add an entry -
+            // the collection is the inverse side of the relationship, so saving this attendee
+            // inserts the new entry without touching existing rows.
+            if (history == null || !Hibernate.isInitialized(history)) { history = new HashSet<>(); }
             history.add(new AttendeeHistory(user, this, message.trim()));
         }
     }
@@ -230,6 +244,9 @@ public class Attendee extends Record {
         return null;
     }
 
+    public String getStaffImportHash() { return staffImportHash; }
+    public void setStaffImportHash(String staffImportHash) { this.staffImportHash = staffImportHash; }
+
     public String getStaffIDNumber() { return staffIDNumber; }
     public void setStaffIDNumber(String staffIDNumber) { this.staffIDNumber = staffIDNumber; }
 
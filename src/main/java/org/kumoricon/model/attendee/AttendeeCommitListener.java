@@ -0,0 +1,141 @@
+package org.kumoricon.model.attendee;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Base class for components that keep data derived from attendees. Registers with Hibernate so
+ * that inserts, updates and deletes are passed to the subclass after they are committed,
+ * including attendees saved by cascading from an Order. Changes that are rolled back are never
+ * seen. Subclasses that write to the database instead can ask to be called while the change is
+ * flushed, in the same transaction.
+ *
+ * Bulk JPQL deletes (AttendeeRepository.deleteById) and JDBC batch inserts (pre-reg import)
+ * don't fire Hibernate events; callers using them must call attendeeDeletedInBulk() or
+ * attendeeInsertedInBulk() on every listener themselves.
+ */
+public abstract class AttendeeCommitListener implements PostInsertEventListener, PostUpdateEventListener,
+        PostDeleteEventListener {
+    private final transient EntityManagerFactory entityManagerFactory;
+    private final boolean afterCommit;
+
+    protected AttendeeCommitListener(EntityManagerFactory entityManagerFactory) {
+        this(entityManagerFactory, true);
+    }
+
+    /**
+     * @param entityManagerFactory Entity manager factory
+     * @param afterCommit If false, changes are passed to the subclass while they are flushed,
+     *                    on the connection of the transaction that saves them
+     */
+    protected AttendeeCommitListener(EntityManagerFactory entityManagerFactory, boolean afterCommit) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.afterCommit = afterCommit;
+    }
+
+    @PostConstruct
+    public void registerListeners() {
+        if (afterCommit) {
+            registerListener(entityManagerFactory, this,
+                    EventType.POST_COMMIT_INSERT, EventType.POST_COMMIT_UPDATE, EventType.POST_COMMIT_DELETE);
+        } else {
+            registerListener(entityManagerFactory, this,
+                    EventType.POST_INSERT, EventType.POST_UPDATE, EventType.POST_DELETE);
+        }
+    }
+
+    /**
+     * Registers a Hibernate event listener, for listeners that need other entities or events
+     * than this class handles
+     * @param entityManagerFactory Entity manager factory
+     * @param listener Listener; must implement the listener interface of every event type
+     * @param eventTypes Event types
+     */
+    public static void registerListener(EntityManagerFactory entityManagerFactory, Object listener,
+                                        EventType<?>... eventTypes) {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        for (EventType<?> eventType : eventTypes) {
+            appendListener(registry, eventType, listener);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void appendListener(EventListenerRegistry registry, EventType<T> eventType, Object listener) {
+        registry.appendListeners(eventType, (T) listener);
+    }
+
+    /**
+     * Called after a new attendee is committed (or flushed)
+     * @param event Hibernate event, getEntity() is the Attendee
+     */
+    protected abstract void attendeeInserted(PostInsertEvent event);
+
+    /**
+     * Called after changes to an attendee are committed (or flushed). event.getOldState() is null if the
+     * attendee wasn't loaded in the session that saved it.
+     * @param event Hibernate event, getEntity() is the Attendee
+     */
+    protected abstract void attendeeUpdated(PostUpdateEvent event);
+
+    /**
+     * Called after an attendee is deleted
+     * @param event Hibernate event, getDeletedState() has the values as they were loaded
+     */
+    protected abstract void attendeeDeleted(PostDeleteEvent event);
+
+    /**
+     * Called by code that inserts attendees without Hibernate, after the insert is committed
+     * @param attendee Attendee as it was stored, including its ID
+     */
+    public abstract void attendeeInsertedInBulk(Attendee attendee);
+
+    /**
+     * Called by code that deletes an attendee with a bulk JPQL statement, after the statement
+     * is committed
+     * @param attendee Attendee as it was stored before it was deleted
+     */
+    public abstract void attendeeDeletedInBulk(Attendee attendee);
+
+    /**
+     * Gets the value of a property from a Hibernate state array
+     * @param persister Entity persister from the event
+     * @param state State array from the event
+     * @param propertyName Property name, for example "checkedIn"
+     * @return Property value
+     */
+    protected static Object getProperty(EntityPersister persister, Object[] state, String propertyName) {
+        return state[persister.getEntityMetamodel().getPropertyIndex(propertyName)];
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Attendee) {
+            attendeeInserted(event);
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Attendee) {
+            attendeeUpdated(event);
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Attendee) {
+            attendeeDeleted(event);
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return afterCommit && Attendee.class.equals(persister.getMappedClass());
+    }
+}
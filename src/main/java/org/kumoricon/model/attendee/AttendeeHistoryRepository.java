@@ -1,9 +1,12 @@
 package org.kumoricon.model.attendee;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Set;
 
@@ -13,6 +16,11 @@ public interface AttendeeHistoryRepository extends JpaRepository<AttendeeHistory
     @Query(value = "SELECT ah from AttendeeHistory ah where ah.attendee = ?1 ORDER BY ah.timestamp ASC")
     Set<AttendeeHistory> findByAttendee(Attendee attendee);
 
-    @Query(value = "SELECT users.first_name, users.last_name, COUNT(attendeehistory.id) FROM attendeehistory JOIN users ON attendeehistory.user_id = users.id WHERE message=\"Attendee checked in\" AND timestamp >= NOW() - INTERVAL 15 MINUTE AND attendeehistory.timestamp <= NOW() GROUP BY user_id", nativeQuery = true)
-    List<Object[]> checkInCountByUsers();
+    @Transactional
+    @Modifying
+    @Query(value = "delete from AttendeeHistory ah where ah.attendee = ?1")
+    void deleteByAttendee(Attendee attendee);
+
+    @Query(value = "select u.id, u.username, u.firstName, u.lastName, ah.timestamp from AttendeeHistory ah join ah.user u where lower(ah.message) = ?1 and ah.timestamp >= ?2")
+    List<Object[]> findCheckInsSince(String lowerCaseMessage, Date since);
 }
@@ -2,6 +2,7 @@ package org.kumoricon.model.attendee;
 
 import org.kumoricon.model.badge.Badge;
 import org.kumoricon.model.order.Order;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
@@ -9,19 +10,58 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @Service
 public interface AttendeeRepository extends JpaRepository<Attendee, Integer>, JpaSpecificationExecutor {
+    String SUMMARY_SELECT = "select new org.kumoricon.model.attendee.AttendeeSummary(a.id, a.firstName, " +
+            "a.lastName, a.legalFirstName, a.legalLastName, a.fanName, a.badgeNumber, a.birthDate, a.zip, " +
+            "a.checkedIn, a.checkInTime) ";
 
     @Query(value = "select a from Attendee a where a.staffIDNumber = ?1")
     List<Attendee> findByStaffId(String staffId);
 
+    @Query(value = "select a.staffIDNumber, a.staffImportHash from Attendee a where a.staffIDNumber in ?1")
+    List<Object[]> findStaffImportHashes(Collection<String> staffIds);
+
+    @Query(value = "select distinct a from Attendee a left join fetch a.history where a.staffIDNumber in ?1")
+    List<Attendee> findByStaffIdInWithHistory(Collection<String> staffIds);
+
     @Query(value = "select a from Attendee a inner join a.order as o where o.orderId LIKE ?1 OR a.badgeNumber LIKE ?1")
     List<Attendee> findByBadgeNumberOrOrderId(String searchString);
 
+    @Query(value = "select distinct a from Attendee a left join fetch a.history where a.id = ?1")
+    Attendee findOneWithHistory(Integer id);
+
+    @Query(value = "select a.id, a.firstName, a.lastName, a.fanName, a.legalFirstName, a.legalLastName from Attendee a")
+    List<Object[]> findAllSearchFields();
+
+    @Query(value = "select b.id, a.checkedIn, a.preRegistered, a.firstName, a.lastName, a.zip, a.birthDate, a.paidAmount from Attendee a left join a.badge b")
+    List<Object[]> findAllCountFields();
+
+    @Query(value = "select a.checkInTime, a.preRegistered, a.paidAmount from Attendee a where a.checkedIn = true")
+    List<Object[]> findAllCheckInFields();
+
+    long countByCheckedInTrue();
+
     @Query(value = "select a from Attendee a where a.lastName like ?1% or a.badgeNumber like ?1%")
     List<Attendee> findByLastNameOrBadgeNumber(String searchString);
+
+    @Query(value = SUMMARY_SELECT + "from Attendee a where a.lastName like ?1% or a.badgeNumber like ?1%")
+    List<AttendeeSummary> findSummariesByLastNameOrBadgeNumber(String searchString);
+
+    @Query(value = SUMMARY_SELECT + "from Attendee a inner join a.order as o where o.orderId LIKE ?1 OR a.badgeNumber LIKE ?1")
+    List<AttendeeSummary> findSummariesByBadgeNumberOrOrderId(String searchString, Pageable pageable);
+
+    @Query(value = "select count(a) from Attendee a inner join a.order as o where o.orderId LIKE ?1 OR a.badgeNumber LIKE ?1")
+    long countByBadgeNumberOrOrderId(String searchString);
+
+    @Query(value = SUMMARY_SELECT + "from Attendee a where a.id in ?1 order by a.id")
+    List<AttendeeSummary> findSummariesByIdIn(Collection<Integer> ids);
+
+    @Query(value = SUMMARY_SELECT + "from Attendee a where a.id in ?1")
+    List<AttendeeSummary> findSummariesByIdIn(Collection<Integer> ids, Pageable pageable);
     List<Attendee> findByOrder(Order order);
 
     @Query(value = "select a from Attendee a where a.lastName like ?1% and a.checkedIn = false")
@@ -62,6 +102,11 @@ public interface AttendeeRepository extends JpaRepository<Attendee, Integer>, Jp
     @Query(value = "select a from Attendee a where a.badge = ?1")
     List<Attendee> findByBadgeType(Badge badge);
 
+    @Query(value = SUMMARY_SELECT + "from Attendee a where a.badge = ?1")
+    List<AttendeeSummary> findSummariesByBadgeType(Badge badge, Pageable pageable);
+
+    long countByBadge(Badge badge);
+
     @Transactional
     @Modifying
     @Query(value = "delete from Attendee a where a.id = ?1")
@@ -1,11 +1,14 @@
 package org.kumoricon.model.attendee;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import java.util.ArrayList;
@@ -29,15 +32,75 @@ public class AttendeeSearchRepository {
         CriteriaQuery<Attendee> query = builder.createQuery(Attendee.class);
         Root<Attendee> root = query.from(Attendee.class);
 
+        query.where(buildPredicatesForWords(builder, root, searchWords));
+        return em.createQuery(query.select(root)).getResultList();
+    }
+
+    /**
+     * Same search as searchFor, but only loads the fields in AttendeeSummary for one page of results
+     * @param searchWords Words to search for
+     * @param pageable Page to return. Sorted by id if no sort order is given
+     * @return Matching Attendees
+     */
+    public List<AttendeeSummary> searchSummariesFor(String[] searchWords, Pageable pageable) {
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<AttendeeSummary> query = builder.createQuery(AttendeeSummary.class);
+        Root<Attendee> root = query.from(Attendee.class);
+
+        query.select(builder.construct(AttendeeSummary.class,
+                root.get("id"), root.get("firstName"), root.get("lastName"), root.get("legalFirstName"),
+                root.get("legalLastName"), root.get("fanName"), root.get("badgeNumber"), root.get("birthDate"),
+                root.get("zip"), root.get("checkedIn"), root.get("checkInTime")));
+        query.where(buildPredicatesForWords(builder, root, searchWords));
+
+        List<Order> orders = new ArrayList<>();
+        if (pageable.getSort() != null) {
+            for (Sort.Order order : pageable.getSort()) {
+                orders.add(order.isAscending() ?
+                        builder.asc(root.get(order.getProperty())) : builder.desc(root.get(order.getProperty())));
+            }
+        }
+        if (orders.isEmpty()) {
+            orders.add(builder.asc(root.get("id")));
+        }
+        query.orderBy(orders);
+
+        return em.createQuery(query)
+                .setFirstResult(pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+    }
+
+    /**
+     * Counts the Attendees that searchFor would return
+     * @param searchWords Words to search for
+     * @return Number of matching Attendees
+     */
+    public long countFor(String[] searchWords) {
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Long> query = builder.createQuery(Long.class);
+        Root<Attendee> root = query.from(Attendee.class);
+
+        query.select(builder.count(root));
+        query.where(buildPredicatesForWords(builder, root, searchWords));
+        return em.createQuery(query).getSingleResult();
+    }
+
+    /**
+     * Creates a query predicate that requires all of the given words
+     * @param builder Current CriteriaBuilder
+     * @param root Root Attendee class
+     * @param searchWords Words to search for
+     * @return Predicate word1 AND word2 AND ...
+     */
+    private Predicate buildPredicatesForWords(CriteriaBuilder builder, Root<Attendee> root, String[] searchWords) {
         List<Predicate> predicates = new ArrayList<>();
 
         for (String word : searchWords) {
             predicates.add(buildOrPredicatesForWord(builder, root, word));
         }
 
-        Predicate allPredicates = builder.and(predicates.toArray(new Predicate[predicates.size()]));
-        query.where(allPredicates);
-        return em.createQuery(query.select(root)).getResultList();
+        return builder.and(predicates.toArray(new Predicate[predicates.size()]));
     }
 
     /**
@@ -0,0 +1,64 @@
+package org.kumoricon.model.attendee;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Read-only view of the Attendee fields displayed in search result grids. Loaded with a
+ * constructor expression, so Order, Badge and history are never fetched.
+ */
+public class AttendeeSummary {
+    private final Integer id;
+    private final String firstName;
+    private final String lastName;
+    private final String legalFirstName;
+    private final String legalLastName;
+    private final String fanName;
+    private final String badgeNumber;
+    private final LocalDate birthDate;
+    private final String zip;
+    private final Boolean checkedIn;
+    private final Date checkInTime;
+
+    public AttendeeSummary(Integer id, String firstName, String lastName, String legalFirstName,
+                           String legalLastName, String fanName, String badgeNumber, LocalDate birthDate,
+                           String zip, Boolean checkedIn, Date checkInTime) {
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.legalFirstName = legalFirstName;
+        this.legalLastName = legalLastName;
+        this.fanName = fanName;
+        this.badgeNumber = badgeNumber;
+        this.birthDate = birthDate;
+        this.zip = zip;
+        this.checkedIn = checkedIn;
+        this.checkInTime = checkInTime == null ? null : new Date(checkInTime.getTime());
+    }
+
+    public Integer getId() { return id; }
+    public String getFirstName() { return firstName; }
+    public String getLastName() { return lastName; }
+    public String getLegalFirstName() { return legalFirstName; }
+    public String getLegalLastName() { return legalLastName; }
+    public String getFanName() { return fanName; }
+    public String getBadgeNumber() { return badgeNumber; }
+    public LocalDate getBirthDate() { return birthDate; }
+    public String getZip() { return zip; }
+    public Boolean getCheckedIn() { return checkedIn; }
+
+    public Date getCheckInTime() {
+        if (checkInTime == null) return null;
+        return new Date(checkInTime.getTime());
+    }
+
+    public Long getAge() {
+        return Attendee.getAge(birthDate, LocalDate.now(ZoneId.of("America/Los_Angeles")));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[AttendeeSummary %s: %s %s]", id, firstName, lastName);
+    }
+}
@@ -0,0 +1,58 @@
+package org.kumoricon.model.attendee;
+
+import org.kumoricon.model.Record;
+
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Number of attendees checked in and the amount they paid, for one hour of one day. At-con and
+ * pre-registered attendees are counted in separate rows. Updated in the same transaction as
+ * the check in (see CheckInCountUpdater), so reports can read totals without grouping every
+ * attendee by DATE()/HOUR() of their check in time.
+ */
+@Entity
+@Table(name = "checkincounts",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"checkInDate", "checkInHour", "preRegistered"}))
+public class CheckInCount extends Record {
+    private LocalDate checkInDate;
+    private int checkInHour;
+    private boolean preRegistered;
+    private int attendeeCount;
+    private BigDecimal revenue;
+
+    public CheckInCount() {}
+
+    public CheckInCount(LocalDate checkInDate, int checkInHour, boolean preRegistered, int attendeeCount,
+                        BigDecimal revenue) {
+        this.checkInDate = checkInDate;
+        this.checkInHour = checkInHour;
+        this.preRegistered = preRegistered;
+        this.attendeeCount = attendeeCount;
+        this.revenue = revenue;
+    }
+
+    public LocalDate getCheckInDate() { return checkInDate; }
+    public void setCheckInDate(LocalDate checkInDate) { this.checkInDate = checkInDate; }
+
+    public int getCheckInHour() { return checkInHour; }
+    public void setCheckInHour(int checkInHour) { this.checkInHour = checkInHour; }
+
+    public boolean isPreRegistered() { return preRegistered; }
+    public void setPreRegistered(boolean preRegistered) { this.preRegistered = preRegistered; }
+
+    public int getAttendeeCount() { return attendeeCount; }
+    public void setAttendeeCount(int attendeeCount) { this.attendeeCount = attendeeCount; }
+
+    public BigDecimal getRevenue() { return revenue; }
+    public void setRevenue(BigDecimal revenue) { this.revenue = revenue; }
+
+    @Override
+    public String toString() {
+        return String.format("[CheckInCount %s %s:00 %s: %s]", checkInDate, checkInHour,
+                preRegistered ? "pre-reg" : "at-con", attendeeCount);
+    }
+}
@@ -0,0 +1,27 @@
+package org.kumoricon.model.attendee;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.LockModeType;
+import java.util.List;
+
+@Service
+public interface CheckInCountRepository extends JpaRepository<CheckInCount, Integer> {
+    String UPSERT = "INSERT INTO checkincounts (uuid, check_in_date, check_in_hour, pre_registered, attendee_count, revenue) VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE attendee_count = attendee_count + ?, revenue = revenue + ?";
+
+    // Locks every row and the gaps between them until the transaction ends, so UPSERT waits
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(value = "select c from CheckInCount c")
+    List<CheckInCount> findAllForUpdate();
+
+    // Same columns as AttendeeRepository.findCheckInCountsByHour()
+    @Query(value = "select c.checkInDate, c.checkInHour, sum(case when c.preRegistered = false then c.attendeeCount else 0 end), sum(case when c.preRegistered = true then c.attendeeCount else 0 end), sum(c.attendeeCount) from CheckInCount c group by c.checkInDate, c.checkInHour having sum(c.attendeeCount) > 0 order by c.checkInDate, c.checkInHour")
+    List<Object[]> findCheckInCountsByHour();
+
+    // Same columns as AttendeeRepository.findAtConCheckInCountsByDate()/findPreRegCheckInCountsByDate()
+    @Query(value = "select c.checkInDate, sum(c.attendeeCount), sum(c.revenue) from CheckInCount c where c.preRegistered = ?1 group by c.checkInDate having sum(c.attendeeCount) > 0 order by c.checkInDate")
+    List<Object[]> findCheckInCountsByDate(boolean preRegistered);
+}
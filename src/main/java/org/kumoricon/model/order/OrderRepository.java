@@ -2,6 +2,7 @@ package org.kumoricon.model.order;
 
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -18,4 +19,7 @@ public interface OrderRepository extends JpaRepository<Order, Integer> {
     List<Order> findByOrderIdLikeIgnoreCaseOrderByIdDesc(String orderIdFilter, Pageable pageable);
 
     long countByOrderIdLikeOrderByIdDesc(String orderIdFilter);
+
+    @Query(value = "select o.orderId, o.id from Order o")
+    List<Object[]> findAllOrderIds();
 }
\ No newline at end of file
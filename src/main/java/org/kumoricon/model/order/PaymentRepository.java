@@ -20,8 +20,11 @@ public interface PaymentRepository extends JpaRepository<Payment, Integer> {
     @Query(value = "select sum(amount) from payments where session_id = ?1", nativeQuery = true)
     BigDecimal getTotalForSessionId(Integer id);
 
-    @Query(value = "select sum(amount) from payments WHERE session_id = ?1 AND payment_type = ?2", nativeQuery=true)
-    BigDecimal getTotalByPaymentTypeForSessionId(Integer id, Integer paymentType);
+    @Query(value = "select p.paymentType, sum(p.amount) from Payment p where p.session.id = ?1 group by p.paymentType")
+    List<Object[]> getTotalsByPaymentTypeForSessionId(Integer id);
+
+    @Query(value = "select p.session.id, p.paymentType, sum(p.amount) from Payment p group by p.session.id, p.paymentType")
+    List<Object[]> getTotalsBySessionAndPaymentType();
 
     List<Payment> findBySessionAndPaymentType(Session session, Payment.PaymentType paymentType);
 
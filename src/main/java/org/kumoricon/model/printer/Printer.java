@@ -4,7 +4,6 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Table;
 import javax.print.PrintService;
-import javax.print.PrintServiceLookup;
 import org.kumoricon.model.Record;
 import org.kumoricon.model.system.Command;
 import org.kumoricon.site.computer.ComputerPresenter;
@@ -119,22 +118,13 @@ public class Printer extends Record {
         return String.format("[Printer %s: %s]", getName(), getIpAddress());
     }
 
-    public static List<Printer> getPrinterList() {
+    /**
+     * @param printServices Printers installed on the server (see PrinterRegistry)
+     * @return Printers, not including ones that have been uninstalled
+     */
+    public static List<Printer> getPrinterList(List<PrintService> printServices) {
         List<Printer> printers = new ArrayList<>();
 
-        // Remove the PrintServiceLookup class from AppContext
-        // This forces Java to rebuild its printer list during the next call to lookupPrinterServices
-         Class<?>[] classes = PrintServiceLookup.class.getDeclaredClasses();
-        for (int i = 0; i < classes.length; i++) {
-            if ("javax.print.PrintServiceLookup$Services".equals(classes[i].getName())) {
-                sun.awt.AppContext.getAppContext().remove(classes[i]);
-                break;
-            }
-        }
-
-        // Get platform-independent list of all printers on the server
-        PrintService[] printServices = PrintServiceLookup.lookupPrintServices(null, null);
-
         // For each printer found add it to the list of printers
         for (PrintService ps : printServices) {
             Printer p = new Printer();
@@ -17,6 +17,6 @@ interface SessionRepository extends JpaRepository<Session, Integer> {
     @Query(value = "select s from Session s where s.open = true")
     List<Session> findAllOpenSessions();
 
-    @Query(value = "select s from Session s ORDER BY s.end desc")
+    @Query(value = "select s from Session s left join fetch s.user ORDER BY s.end desc")
     List<Session> findAllOrderByEnd();
 }
@@ -10,7 +10,10 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 @Service
@@ -122,29 +125,66 @@ public class SessionService {
         output.append("<table border=\"1\" cellpadding=\"5\" style=\"border-collapse: collapse; border-spacing: 5px; border-style: 1px solid black;\">")
                 .append("<tr><td>Type</td><td>Amount</td></tr>");
         // Total per payment type
-        for (Payment.PaymentType pt : Payment.PaymentType.values()) {
-            BigDecimal amount = paymentRepository.getTotalByPaymentTypeForSessionId(session.getId(), pt.getValue());
-            if (amount != null) {
-                output.append(String.format("<tr><td>%s</td><td align=\"right\">$%s</td></tr>",
-                        pt.toString(), amount));
-            }
+        for (Map.Entry<Payment.PaymentType, BigDecimal> total : getTotalsByPaymentType(session).entrySet()) {
+            output.append(String.format("<tr><td>%s</td><td align=\"right\">$%s</td></tr>",
+                    total.getKey().toString(), total.getValue()));
         }
         output.append("</table>");
         return output.toString();
     }
 
     public String buildTextTotalsForSession(Session session) {
+        return buildTextTotals(getTotalsByPaymentType(session));
+    }
+
+    /**
+     * @param totals Totals by payment type
+     * @return One line per payment type, for example "Cash          $     10.00"
+     */
+    public static String buildTextTotals(Map<Payment.PaymentType, BigDecimal> totals) {
         StringBuilder output = new StringBuilder();
-        // Total per payment type
-        for (Payment.PaymentType pt : Payment.PaymentType.values()) {
-            BigDecimal amount = paymentRepository.getTotalByPaymentTypeForSessionId(session.getId(), pt.getValue());
-            if (amount != null) {
-                output.append(String.format("%1$-10s    $%2$10s\n", pt.toString(), amount));
-            }
+        for (Map.Entry<Payment.PaymentType, BigDecimal> total : totals.entrySet()) {
+            output.append(formatTextTotal(total.getKey(), total.getValue())).append("\n");
         }
         return output.toString();
     }
 
+    /**
+     * @param paymentType Payment type
+     * @param amount Total amount
+     * @return Payment type and amount formatted as one line of a text till report, without a newline
+     */
+    public static String formatTextTotal(Payment.PaymentType paymentType, BigDecimal amount) {
+        return String.format("%1$-10s    $%2$10s", paymentType.toString(), amount);
+    }
+
+    /**
+     * Totals for one session in a single query
+     * @param session Session
+     * @return Total amount for each payment type used in the session, in PaymentType order
+     */
+    public Map<Payment.PaymentType, BigDecimal> getTotalsByPaymentType(Session session) {
+        Map<Payment.PaymentType, BigDecimal> totals = new EnumMap<>(Payment.PaymentType.class);
+        for (Object[] row : paymentRepository.getTotalsByPaymentTypeForSessionId(session.getId())) {
+            totals.put((Payment.PaymentType) row[0], (BigDecimal) row[1]);
+        }
+        return totals;
+    }
+
+    /**
+     * Totals for every session in a single query, for reports that list all sessions
+     * @return Map of session ID to the total amount for each payment type used in that session,
+     * in PaymentType order. Sessions without payments aren't included.
+     */
+    public Map<Integer, Map<Payment.PaymentType, BigDecimal>> getTotalsByPaymentTypeForAllSessions() {
+        Map<Integer, Map<Payment.PaymentType, BigDecimal>> totals = new HashMap<>();
+        for (Object[] row : paymentRepository.getTotalsBySessionAndPaymentType()) {
+            totals.computeIfAbsent((Integer) row[0], id -> new EnumMap<>(Payment.PaymentType.class))
+                    .put((Payment.PaymentType) row[1], (BigDecimal) row[2]);
+        }
+        return totals;
+    }
+
     private String buildHTMLDetailsForSession(Session session, Payment.PaymentType paymentType) {
         StringBuilder output = new StringBuilder();
 
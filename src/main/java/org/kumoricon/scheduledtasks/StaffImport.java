@@ -7,31 +7,40 @@ import org.kumoricon.model.badge.Badge;
 import org.kumoricon.model.badge.BadgeRepository;
 import org.kumoricon.scheduledtasks.staffimport.Action;
 import org.kumoricon.scheduledtasks.staffimport.ImportFile;
+import org.kumoricon.scheduledtasks.staffimport.ImportSchedule;
+import org.kumoricon.scheduledtasks.staffimport.OrderedTaskRunner;
 import org.kumoricon.scheduledtasks.staffimport.Person;
+import org.kumoricon.scheduledtasks.staffimport.StaffImportMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.lang.reflect.Type;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.file.StandardWatchEventKinds.*;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Scheduled;
 
 @Component
 public class StaffImport {
     private static final Logger log = LoggerFactory.getLogger(StaffImport.class);
     private static final DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss.SSS");
+    private static final int LOOKUP_CHUNK_SIZE = 500;
 
     @Value("${kumoreg.staffImport.input}")
     private String inputPathString;
@@ -48,16 +57,118 @@ public class StaffImport {
     @Autowired
     private BadgeRepository badgeRepository;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private StaffImportMetrics staffImportMetrics;
+
+    @Value("${kumoreg.staffImport.enabled:true}")
+    private boolean enabled;
+    @Value("${kumoreg.staffImport.threads:4}")
+    private int threads;
+    @Value("${kumoreg.staffImport.stableMillis:1000}")
+    private long stableMillis;
+    @Value("${kumoreg.staffImport.pollSeconds:60}")
+    private long pollSeconds;
+
+    private TransactionTemplate transactionTemplate;
+    private ExecutorService executor;
+    private Thread watcher;
+    private ImportSchedule schedule;
+
     private Badge staffBadge;
 
-    @Scheduled(fixedRate = 10000)
-    public void staffImport() {
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("Staff import disabled (kumoreg.staffImport.enabled=false)");
+            return;
+        }
+        schedule = new ImportSchedule(stableMillis, TimeUnit.SECONDS.toMillis(Math.max(pollSeconds, 1)));
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        executor = Executors.newFixedThreadPool(Math.max(threads, 1), r -> {
+            Thread thread = new Thread(r, "staff-import-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcher = new Thread(this::watchInputDirectory, "staff-import-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (watcher != null) { watcher.interrupt(); }
+        if (executor != null) { executor.shutdownNow(); }
+    }
+
+    /**
+     * Imports files as they arrive in the input directory. Files are imported once they haven't
+     * changed for stableMillis, so partly copied files are left alone. The directory is also
+     * checked every pollSeconds in case a change notification was missed, and the Staff badge
+     * is looked up again then.
+     */
+    private void watchInputDirectory() {
         createDirectories();
         if (!importEnabled) { return; }
 
-        staffBadge = badgeRepository.findOneByNameIgnoreCase("Staff");
-        processInputFiles();
+        Path inputPath = Paths.get(inputPathString);
+        try (WatchService watchService = inputPath.getFileSystem().newWatchService()) {
+            inputPath.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+            log.info("Watching {} for staff import files", inputPath);
+
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.poll(schedule.getTimeout(), TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    if (hasImportFileEvent(key)) {
+                        // Wait for the directory to be quiet before importing
+                        schedule.fileChanged();
+                    }
+                    if (!key.reset()) {
+                        log.warn("No longer watching {}, checking it every {} seconds", inputPath, pollSeconds);
+                    }
+                    continue;
+                }
 
+                boolean filesPending = false;
+                try {
+                    filesPending = importFiles(schedule.isPolled());
+                } catch (RuntimeException ex) {
+                    log.error("Error importing staff files, trying again in {} seconds", pollSeconds, ex);
+                }
+                schedule.checked(filesPending);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            log.info("Stopped watching {} for staff import files", inputPath);
+        } catch (IOException ex) {
+            log.error("Staff import disabled. Error watching {}: {}", inputPath, ex.getMessage());
+            importEnabled = false;
+        }
+    }
+
+    private static boolean hasImportFileEvent(WatchKey key) {
+        boolean found = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            // Overflow means events were lost; check the directory to be safe
+            if (event.kind() == OVERFLOW || event.context().toString().endsWith(".json")) {
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Imports the files in the input directory that have stopped changing
+     * @param reloadBadge Look up the Staff badge again instead of using the cached one
+     * @return True if some files were still changing and should be checked again shortly
+     */
+    private boolean importFiles(boolean reloadBadge) {
+        if (staffBadge == null || reloadBadge) {
+            staffBadge = badgeRepository.findOneByNameIgnoreCase("Staff");
+        }
+        return processInputFiles();
     }
 
     private ImportFile loadFile(Path filePath) throws Exception {
@@ -72,73 +183,226 @@ public class StaffImport {
         }
     }
 
-    private void importData(ImportFile file) {
+    /**
+     * Saves the people in the file and deletes staff listed in its actions. People whose content
+     * hash matches the one stored on their attendee haven't changed since the last import and are
+     * skipped without loading the attendee. Other attendees are loaded with one query per
+     * LOOKUP_CHUNK_SIZE staff IDs, and changes are saved together. Must run in a transaction.
+     * @param file Staff import file
+     * @param counts Updated with the number of people skipped, updated and inserted
+     */
+    private void importData(ImportFile file, StaffImportMetrics.FileCounts counts) {
         if (file.persons != null) {
-            for (Person person : file.persons) {log.info(person.nameOnId);
+            List<String> staffIds = new ArrayList<>();
+            for (Person person : file.persons) {
+                staffIds.add(String.format("%s", person.id));
+            }
+            Map<String, String> storedHashes = new HashMap<>();
+            for (Object[] row : findStaffImportHashes(staffIds)) {
+                storedHashes.putIfAbsent((String) row[0], row[1] == null ? "" : (String) row[1]);
+            }
+
+            Map<Person, String> changed = new LinkedHashMap<>();
+            List<String> changedIds = new ArrayList<>();
+            for (Person person : file.persons) {
                 String staffId = String.format("%s", person.id);
-                List<Attendee> fromDatabase = attendeeRepository.findByStaffId(staffId);
-                if (fromDatabase.size() > 0) {
-                    Attendee attendee = fromDatabase.get(0);
-                    boolean updated = person.updateAttendee(attendee);
-                    if (updated) {
-                        attendeeRepository.save(attendee);
+                String hash = person.contentHash();
+                if (hash.equals(storedHashes.get(staffId))) {
+                    counts.skipped();
+                } else {
+                    changed.put(person, hash);
+                    if (storedHashes.containsKey(staffId)) { changedIds.add(staffId); }
+                }
+            }
+
+            Map<String, Attendee> fromDatabase = new HashMap<>();
+            for (Attendee attendee : findByStaffIds(changedIds)) {
+                fromDatabase.putIfAbsent(attendee.getStaffIDNumber(), attendee);
+            }
+
+            Set<Attendee> toSave = new LinkedHashSet<>();
+            for (Map.Entry<Person, String> entry : changed.entrySet()) {
+                Person person = entry.getKey();
+                log.debug(person.nameOnId);
+                String staffId = String.format("%s", person.id);
+                Attendee attendee = fromDatabase.get(staffId);
+                if (attendee != null) {
+                    if (person.updateAttendee(attendee)) {
+                        counts.updated();
+                    } else {
+                        counts.skipped();
                     }
                 } else {
-                    Attendee attendee = person.toAttendee();
+                    attendee = person.toAttendee();
                     attendee.setBadge(staffBadge);
-                    attendeeRepository.save(attendee);
-//                    log.info(attendee.toString());
+                    // Later entries for the same person in this file update this attendee
+                    fromDatabase.put(staffId, attendee);
+                    counts.inserted();
                 }
+                // Saved even if nothing else changed, so the next import can skip this person
+                attendee.setStaffImportHash(entry.getValue());
+                toSave.add(attendee);
             }
+            attendeeRepository.save(toSave);
         }
 
         if (file.actions != null) {
+            List<String> deletedIds = new ArrayList<>();
             for (Action action : file.actions) {
-                for (String staffId : action.deleted) {
-                    log.info("Deleting staff id {}", staffId);
-                    List<Attendee> attendees = attendeeRepository.findByStaffId(staffId);
-                    if (attendees.size() == 1) {
-                        log.info("Deleting {}", attendees.get(0));
-                        attendeeRepository.delete(attendees.get(0));
-                    } else if (attendees.size() == 0) {
-                        log.info("No Attendee with staff id {} not found, skipping", staffId);
-                    } else {
-                        log.error("While deleting staff, found more than one attendee with staff id {}. Skipping." , staffId);
-                    }
+                deletedIds.addAll(Arrays.asList(action.deleted));
+            }
+            Map<String, List<Attendee>> fromDatabase = new HashMap<>();
+            for (Attendee attendee : findByStaffIds(deletedIds)) {
+                fromDatabase.computeIfAbsent(attendee.getStaffIDNumber(), k -> new ArrayList<>()).add(attendee);
+            }
+
+            Set<Attendee> toDelete = new LinkedHashSet<>();
+            for (String staffId : deletedIds) {
+                log.info("Deleting staff id {}", staffId);
+                List<Attendee> attendees = fromDatabase.getOrDefault(staffId, Collections.emptyList());
+                if (attendees.size() == 1) {
+                    log.info("Deleting {}", attendees.get(0));
+                    toDelete.add(attendees.get(0));
+                } else if (attendees.size() == 0) {
+                    log.info("No Attendee with staff id {} not found, skipping", staffId);
+                } else {
+                    log.error("While deleting staff, found more than one attendee with staff id {}. Skipping." , staffId);
                 }
             }
+            attendeeRepository.delete(toDelete);
         }
     }
 
-    private void processInputFiles() {
-        Path inputPath = Paths.get(inputPathString);
+    private List<Object[]> findStaffImportHashes(List<String> staffIds) {
+        List<Object[]> rows = new ArrayList<>();
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(staffIds));
+        for (int i = 0; i < distinctIds.size(); i += LOOKUP_CHUNK_SIZE) {
+            List<String> chunk = distinctIds.subList(i, Math.min(i + LOOKUP_CHUNK_SIZE, distinctIds.size()));
+            rows.addAll(attendeeRepository.findStaffImportHashes(chunk));
+        }
+        return rows;
+    }
 
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(inputPath, "*.{json}")) {
-            int count = 0;
-            int errors = 0;
-            for (Path path : stream) {
-                count += 1;
-                if (staffBadge == null) {
-                    log.warn("Warning, badge type Staff not found, aborting import");
-                    return;
-                }
+    private List<Attendee> findByStaffIds(List<String> staffIds) {
+        List<Attendee> attendees = new ArrayList<>();
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(staffIds));
+        for (int i = 0; i < distinctIds.size(); i += LOOKUP_CHUNK_SIZE) {
+            List<String> chunk = distinctIds.subList(i, Math.min(i + LOOKUP_CHUNK_SIZE, distinctIds.size()));
+            attendees.addAll(attendeeRepository.findByStaffIdInWithHistory(chunk));
+        }
+        return attendees;
+    }
+
+    /**
+     * Every staff ID a file adds, updates or deletes
+     */
+    private static Set<String> getStaffIds(ImportFile file) {
+        Set<String> staffIds = new HashSet<>();
+        if (file.persons != null) {
+            for (Person person : file.persons) {
+                staffIds.add(String.format("%s", person.id));
+            }
+        }
+        if (file.actions != null) {
+            for (Action action : file.actions) {
+                staffIds.addAll(Arrays.asList(action.deleted));
+            }
+        }
+        return staffIds;
+    }
+
+    /**
+     * Imports every file in the input directory that hasn't changed for stableMillis, oldest first. Files are loaded and imported in
+     * parallel, each in its own transaction; a file that changes the same staff ID as an older
+     * file waits for the older file to finish. Returns when all files have been moved to the
+     * finished or dead letter queue directory.
+     * @return True if some files were skipped because they were still changing
+     */
+    private boolean processInputFiles() {
+        List<Path> paths = new ArrayList<>();
+        boolean filesPending;
+        try {
+            filesPending = schedule.findStableFiles(Paths.get(inputPathString), System.currentTimeMillis(), paths);
+        } catch (IOException ex) {
+            log.error("Error processing staff import file(s):", ex);
+            return false;
+        }
+        if (paths.isEmpty()) { return filesPending; }
+        if (staffBadge == null) {
+            log.warn("Warning, badge type Staff not found, aborting import");
+            return false;
+        }
+        paths.sort(Comparator.comparing(StaffImport::getLastModified).thenComparing(Path::toString));
+
+        List<CompletableFuture<ImportFile>> loaded = new ArrayList<>();
+        for (Path path : paths) {
+            loaded.add(CompletableFuture.supplyAsync(() -> {
                 try {
-                    ImportFile file = loadFile(path);
-                    importData(file);
-                    Path output = Paths.get(finishedPathString, getTimestamp() + "-" + path.getFileName().toString());
-                    Files.move(path, output);
+                    return loadFile(path);
                 } catch (Exception ex) {
-                    log.error("Error processing file {}, moving to {}", path, dlqPathString, ex);
-                    errors += 1;
-                    Path output = Paths.get(dlqPathString, getTimestamp() + "-" + path.getFileName().toString());
-                    Files.move(path, output);
+                    throw new CompletionException(ex);
                 }
+            }, executor));
+        }
+
+        OrderedTaskRunner runner = new OrderedTaskRunner(executor);
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i++) {
+            Path path = paths.get(i);
+            try {
+                ImportFile file = loaded.get(i).join();
+                results.add(runner.submit(getStaffIds(file), () -> importFile(path, file)));
+            } catch (CompletionException ex) {
+                moveToDeadLetterQueue(path, ex.getCause());
+                results.add(CompletableFuture.completedFuture(false));
             }
-            if (count > 0 || errors > 0) {
-                log.info("Processed {} staff import file(s) with {} error(s)", count, errors);
-            }
+        }
+
+        int errors = 0;
+        for (CompletableFuture<Boolean> result : results) {
+            if (!result.join()) { errors += 1; }
+        }
+        log.info("Processed {} staff import file(s) with {} error(s)", paths.size(), errors);
+        return filesPending;
+    }
+
+    /**
+     * Imports one file in a transaction, then moves it to the finished directory
+     * @return True if the file was imported, false if it was moved to the dead letter queue
+     */
+    private boolean importFile(Path path, ImportFile file) {
+        try {
+            StaffImportMetrics.FileCounts counts = new StaffImportMetrics.FileCounts(path.getFileName().toString());
+            transactionTemplate.execute(status -> {
+                importData(file, counts);
+                return null;
+            });
+            Path output = Paths.get(finishedPathString, getTimestamp() + "-" + path.getFileName().toString());
+            Files.move(path, output);
+            staffImportMetrics.record(counts);
+            log.info("Imported {}", counts);
+            return true;
+        } catch (Exception ex) {
+            moveToDeadLetterQueue(path, ex);
+            return false;
+        }
+    }
+
+    private void moveToDeadLetterQueue(Path path, Throwable cause) {
+        log.error("Error processing file {}, moving to {}", path, dlqPathString, cause);
+        try {
+            Path output = Paths.get(dlqPathString, getTimestamp() + "-" + path.getFileName().toString());
+            Files.move(path, output);
         } catch (IOException ex) {
-            log.error("Error processing staff import file(s):", ex);
+            log.error("Error moving {} to {}", path, dlqPathString, ex);
+        }
+    }
+
+    private static FileTime getLastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException ex) {
+            return FileTime.fromMillis(0);
         }
     }
 
@@ -172,6 +436,7 @@ public class StaffImport {
         } catch (IOException ex) {
             log.error("Staff import disabled. Error creating staff import paths: {}", ex.getMessage());
             importEnabled = false;
+            return;
         }
 
         importEnabled = true;
@@ -0,0 +1,99 @@
+package org.kumoricon.scheduledtasks.staffimport;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Decides when the staff import directory is checked. After a change notification the watcher
+ * waits stableMillis for the directory to go quiet, then imports files that haven't changed for
+ * stableMillis. Files that are still changing are checked again after another stableMillis;
+ * otherwise the next check is pollMillis later, in case a notification was missed.
+ *
+ * Not thread safe; used only by the watcher thread.
+ */
+public class ImportSchedule {
+    private final long stableMillis;
+    private final long pollMillis;
+    private long timeout = 0;           // Import anything already waiting
+    private boolean polled = true;
+
+    /**
+     * @param stableMillis Time a file must go unchanged before it is imported
+     * @param pollMillis Time between checks when nothing has changed
+     */
+    public ImportSchedule(long stableMillis, long pollMillis) {
+        this.stableMillis = stableMillis;
+        this.pollMillis = pollMillis;
+    }
+
+    /**
+     * @return Milliseconds to wait for a change notification before checking the directory
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @return True if the next check is a periodic one rather than a response to a change
+     */
+    public boolean isPolled() {
+        return polled;
+    }
+
+    /**
+     * An import file was created or changed; check the directory once it has been quiet for stableMillis
+     */
+    public void fileChanged() {
+        timeout = stableMillis;
+        polled = false;
+    }
+
+    /**
+     * The directory was checked
+     * @param filesPending True if some files were still changing
+     */
+    public void checked(boolean filesPending) {
+        polled = !filesPending;
+        timeout = filesPending ? stableMillis : pollMillis;
+    }
+
+    /**
+     * @param lastModifiedMillis When the file was last changed
+     * @param nowMillis Current time
+     * @return True if the file hasn't changed for stableMillis
+     */
+    public boolean isStable(long lastModifiedMillis, long nowMillis) {
+        return lastModifiedMillis <= nowMillis - stableMillis;
+    }
+
+    /**
+     * Finds the JSON files in a directory that are ready to import
+     * @param directory Input directory
+     * @param nowMillis Current time
+     * @param stable Files that haven't changed for stableMillis are added to this list
+     * @return True if some files were skipped because they were still changing
+     * @throws IOException Error reading the directory
+     */
+    public boolean findStableFiles(Path directory, long nowMillis, List<Path> stable) throws IOException {
+        boolean filesPending = false;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.{json}")) {
+            for (Path path : stream) {
+                long lastModified;
+                try {
+                    lastModified = Files.getLastModifiedTime(path).toMillis();
+                } catch (IOException ex) {
+                    continue;       // Deleted or moved since it was listed
+                }
+                if (isStable(lastModified, nowMillis)) {
+                    stable.add(path);
+                } else {
+                    filesPending = true;
+                }
+            }
+        }
+        return filesPending;
+    }
+}
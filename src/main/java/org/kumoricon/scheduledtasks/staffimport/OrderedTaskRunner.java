@@ -0,0 +1,44 @@
+package org.kumoricon.scheduledtasks.staffimport;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Runs tasks concurrently on an executor, except that a task starts only after every earlier
+ * task that shares one of its keys has finished (successfully or not). Staff import uses staff
+ * IDs as keys, so files that change the same person are applied in the order they were
+ * submitted while unrelated files run in parallel.
+ *
+ * Not thread safe; submit all tasks from one thread.
+ */
+public class OrderedTaskRunner {
+    private final Executor executor;
+    private final Map<String, CompletableFuture<?>> lastTaskForKey = new HashMap<>();
+
+    public OrderedTaskRunner(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param keys Keys the task touches
+     * @param task Task
+     * @param <T> Task result type
+     * @return Future for the task's result
+     */
+    public <T> CompletableFuture<T> submit(Collection<String> keys, Supplier<T> task) {
+        Set<CompletableFuture<?>> earlier = new LinkedHashSet<>();
+        for (String key : keys) {
+            CompletableFuture<?> previous = lastTaskForKey.get(key);
+            if (previous != null) { earlier.add(previous); }
+        }
+        CompletableFuture<T> future = CompletableFuture.allOf(earlier.toArray(new CompletableFuture<?>[0]))
+                .handle((ignored, ex) -> null)      // Run even if an earlier task failed
+                .thenApplyAsync(ignored -> task.get(), executor);
+        for (String key : keys) {
+            lastTaskForKey.put(key, future);
+        }
+        return future;
+    }
+}
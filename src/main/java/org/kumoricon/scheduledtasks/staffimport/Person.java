@@ -2,6 +2,7 @@ package org.kumoricon.scheduledtasks.staffimport;
 
 import org.kumoricon.model.attendee.Attendee;
 import org.kumoricon.model.attendee.AttendeeHistory;
+import org.kumoricon.service.ContentHash;
 import org.kumoricon.service.print.formatter.BadgeLib;
 
 import java.math.BigDecimal;
@@ -9,7 +10,12 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.kumoricon.service.ContentHash.append;
+
 public class Person {
+    // Change when updateAttendee() changes, so every attendee is updated by the next import
+    private static final String HASH_VERSION = "1";
+
     public int id;
     public String namePreferred;
     public String namePreferredFirst;
@@ -183,6 +189,48 @@ public class Person {
         return updated;
     }
 
+    /**
+     * Hash of every imported field, stored on the attendee as staffImportHash. If it matches the
+     * stored hash, updateAttendee() has nothing to change and the attendee doesn't need to be loaded.
+     * @return SHA-256 hash as 64 hex characters
+     */
+    public String contentHash() {
+        StringBuilder content = new StringBuilder(HASH_VERSION);
+        append(content, id);
+        append(content, namePreferred);
+        append(content, namePreferredFirst);
+        append(content, namePreferredLast);
+        append(content, nameOnId);
+        append(content, nameOnIdFirst);
+        append(content, nameOnIdLast);
+        append(content, namePrivacy);
+        append(content, namePrivacyFirst);
+        append(content, namePrivacyLast);
+        append(content, birthdate);
+        append(content, ageCategoryConCurrentTerm);
+        append(content, badgeImpactingLastModified);
+        if (positions != null) {
+            append(content, positions.size());
+            for (Position position : positions) {
+                append(content, position.term);
+                append(content, position.title);
+                append(content, position.rank);
+                append(content, position.department);
+                append(content, position.departmentSuppressed);
+            }
+        }
+        if (notes != null) {
+            append(content, notes.size());
+            for (String note : notes) {
+                append(content, note);
+            }
+        }
+        append(content, hasBadgeImage);
+        append(content, badgeImageFileType);
+
+        return ContentHash.sha256Hex(content);
+    }
+
     static boolean isDifferent(String string1, String string2) {
         return (string1 == null ? string2 != null : !string1.equals(string2));
     }
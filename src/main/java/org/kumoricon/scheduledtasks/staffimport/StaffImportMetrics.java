@@ -0,0 +1,78 @@
+package org.kumoricon.scheduledtasks.staffimport;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Counts staff records skipped (unchanged since the last import), updated and inserted by the
+ * staff import. Published as actuator metrics under kumoreg.staffImport, both as totals since
+ * startup and for the most recently imported file.
+ */
+@Component
+public class StaffImportMetrics implements PublicMetrics {
+    private long files = 0;
+    private long skipped = 0;
+    private long updated = 0;
+    private long inserted = 0;
+    private FileCounts lastFile;
+
+    /**
+     * Records the result of importing one file. Files may be imported in parallel.
+     * @param counts Counts for the file
+     */
+    public synchronized void record(FileCounts counts) {
+        files += 1;
+        skipped += counts.skipped;
+        updated += counts.updated;
+        inserted += counts.inserted;
+        lastFile = counts;
+    }
+
+    @Override
+    public synchronized Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("kumoreg.staffImport.files", files));
+        metrics.add(new Metric<>("kumoreg.staffImport.skipped", skipped));
+        metrics.add(new Metric<>("kumoreg.staffImport.updated", updated));
+        metrics.add(new Metric<>("kumoreg.staffImport.inserted", inserted));
+        if (lastFile != null) {
+            metrics.add(new Metric<>("kumoreg.staffImport.lastFile.skipped", lastFile.skipped));
+            metrics.add(new Metric<>("kumoreg.staffImport.lastFile.updated", lastFile.updated));
+            metrics.add(new Metric<>("kumoreg.staffImport.lastFile.inserted", lastFile.inserted));
+        }
+        return metrics;
+    }
+
+    /**
+     * Staff records in one import file, by what the import did with them
+     */
+    public static class FileCounts {
+        private final String filename;
+        private int skipped = 0;
+        private int updated = 0;
+        private int inserted = 0;
+
+        public FileCounts(String filename) {
+            this.filename = filename;
+        }
+
+        public void skipped() { skipped += 1; }
+        public void updated() { updated += 1; }
+        public void inserted() { inserted += 1; }
+
+        public String getFilename() { return filename; }
+        public int getSkipped() { return skipped; }
+        public int getUpdated() { return updated; }
+        public int getInserted() { return inserted; }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %s skipped, %s updated, %s inserted", filename, skipped, updated, inserted);
+        }
+    }
+}
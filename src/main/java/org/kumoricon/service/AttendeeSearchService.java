@@ -3,21 +3,30 @@ package org.kumoricon.service;
 import org.kumoricon.model.attendee.Attendee;
 import org.kumoricon.model.attendee.AttendeeRepository;
 import org.kumoricon.model.attendee.AttendeeSearchRepository;
+import org.kumoricon.model.attendee.AttendeeSummary;
+import org.kumoricon.service.search.AttendeeSearchIndex;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 
 @Service
 public class AttendeeSearchService {
     private final AttendeeRepository attendeeRepository;
     private final AttendeeSearchRepository searchRepository;
+    private final AttendeeSearchIndex searchIndex;
 
     @Autowired
-    public AttendeeSearchService(AttendeeRepository attendeeRepository, AttendeeSearchRepository searchRepository) {
+    public AttendeeSearchService(AttendeeRepository attendeeRepository, AttendeeSearchRepository searchRepository,
+                                 AttendeeSearchIndex searchIndex) {
         this.attendeeRepository = attendeeRepository;
         this.searchRepository = searchRepository;
+        this.searchIndex = searchIndex;
     }
 
     /**
@@ -40,9 +49,81 @@ public class AttendeeSearchService {
             if (!output.isEmpty()) return output;
         }
 
-        // Otherwise search for all the words in the search string across multiple fields
+        // Otherwise search for all the words in the search string across multiple fields. Use the
+        // in-memory index when it can answer the query, and load the matches in one query
+        if (searchIndex.canAnswer(searchWords)) {
+            List<Integer> ids = searchIndex.search(searchWords);
+            if (ids.isEmpty()) return new ArrayList<>();
+            output = new ArrayList<>(attendeeRepository.findAll(ids));
+            output.sort(Comparator.comparing(Attendee::getId));
+            return output;
+        }
+
         output = searchRepository.searchFor(searchWords);
         return output;
     }
 
+    /**
+     * Search for attendees matching the given string, the same as search(), but only load the
+     * fields needed to display one page of results in a grid.
+     * @param searchString Search string, may contain multiple words separated by space
+     * @param pageable Page to return
+     * @return Matching Attendees
+     */
+    public List<AttendeeSummary> searchSummaries(String searchString, Pageable pageable) {
+        if (searchString == null || searchString.trim().equals("")) {
+            return new ArrayList<>();
+        }
+        String searchFor = searchString.trim();
+        String[] searchWords = searchFor.split("\\s+");
+
+        if (searchWords.length == 1 && attendeeRepository.countByBadgeNumberOrOrderId(searchFor) > 0) {
+            return attendeeRepository.findSummariesByBadgeNumberOrOrderId(searchFor, pageable);
+        }
+
+        if (searchIndex.canAnswer(searchWords)) {
+            List<Integer> ids = searchIndex.search(searchWords);
+            if (ids.isEmpty() || pageable.getOffset() >= ids.size()) return new ArrayList<>();
+            if (isSortedById(pageable.getSort())) {
+                // IDs are already in order, so only load the rows for this page
+                int end = Math.min(ids.size(), pageable.getOffset() + pageable.getPageSize());
+                return attendeeRepository.findSummariesByIdIn(ids.subList(pageable.getOffset(), end));
+            }
+            return attendeeRepository.findSummariesByIdIn(ids, pageable);
+        }
+
+        return searchRepository.searchSummariesFor(searchWords, pageable);
+    }
+
+    /**
+     * Counts the attendees that searchSummaries() will return for the given string
+     * @param searchString Search string, may contain multiple words separated by space
+     * @return Number of matching attendees
+     */
+    public int countSummaries(String searchString) {
+        if (searchString == null || searchString.trim().equals("")) {
+            return 0;
+        }
+        String searchFor = searchString.trim();
+        String[] searchWords = searchFor.split("\\s+");
+
+        if (searchWords.length == 1) {
+            long count = attendeeRepository.countByBadgeNumberOrOrderId(searchFor);
+            if (count > 0) return (int) count;
+        }
+
+        if (searchIndex.canAnswer(searchWords)) {
+            return searchIndex.search(searchWords).size();
+        }
+
+        return (int) searchRepository.countFor(searchWords);
+    }
+
+    private static boolean isSortedById(Sort sort) {
+        if (sort == null) return true;
+        Iterator<Sort.Order> orders = sort.iterator();
+        if (!orders.hasNext()) return true;
+        Sort.Order first = orders.next();
+        return "id".equals(first.getProperty()) && first.isAscending();
+    }
 }
@@ -0,0 +1,43 @@
+package org.kumoricon.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Builds hashes of a list of field values, used to tell whether anything in a record changed
+ * without comparing every field. Values are appended to a StringBuilder with append() and the
+ * result hashed with sha256Hex().
+ */
+public class ContentHash {
+    /**
+     * Appends a value with its length, so that values containing the separator can't run together
+     * @param content Content being hashed
+     * @param value Value, may be null
+     */
+    public static void append(StringBuilder content, Object value) {
+        if (value == null) {
+            content.append("|-");
+        } else {
+            String string = value.toString();
+            content.append('|').append(string.length()).append(':').append(string);
+        }
+    }
+
+    /**
+     * @param content Content to hash
+     * @return SHA-256 hash of the content's UTF-8 bytes as 64 hex characters
+     */
+    public static String sha256Hex(CharSequence content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(content.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
+    }
+}
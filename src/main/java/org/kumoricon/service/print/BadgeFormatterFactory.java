@@ -4,25 +4,45 @@ import org.kumoricon.model.attendee.Attendee;
 import org.kumoricon.service.print.formatter.BadgePrintFormatter;
 import org.kumoricon.service.print.formatter.FullBadgePrintFormatter;
 import org.kumoricon.service.print.formatter.LiteBadgePrintFormatter;
+import org.kumoricon.service.print.formatter.VectorBadgePrintFormatter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.util.List;
 
 /**
  * Returns an appropriate BadgeFormatter object based on settings in the configuration file. This is used to
  * easily switch between badge layouts at different events.
+ *
+ * Formatters from getCurrentBadgeFormatter() come from BadgeRenderCache, so previewing and then
+ * printing the same badges generates them once.
  */
 @Component
 public class BadgeFormatterFactory {
     @Value("${kumoreg.printing.badgeFormat}")
     private String currentFormatter;
+    private final BadgeRenderCache renderCache;
 
     private static final Logger log = LoggerFactory.getLogger(BadgeFormatterFactory.class);
 
+    @Autowired
+    public BadgeFormatterFactory(BadgeRenderCache renderCache) {
+        this.renderCache = renderCache;
+    }
+
+    BadgeFormatterFactory(BadgeRenderCache renderCache, String currentFormatter) {
+        this.renderCache = renderCache;
+        this.currentFormatter = currentFormatter;
+    }
+
     /**
      * Returns configured BadgeFormatter
      * @param attendees List of Attendees to generate badges for
@@ -31,26 +51,63 @@ public class BadgeFormatterFactory {
      * @return BadgePrintFormatter
      */
     public BadgePrintFormatter getCurrentBadgeFormatter(List<Attendee> attendees, Integer xOffset, Integer yOffset) {
-        if ("lite".equals(currentFormatter)) {
-            return new LiteBadgePrintFormatter(attendees, xOffset, yOffset);
-        } else if("full".equals(currentFormatter)) {
-            return new FullBadgePrintFormatter(attendees, xOffset, yOffset, LocalDate.now());
-        } else {
-            log.warn("Tried to find badge formatter {}, using FullBadgePrintFormatter instead. " +
-                    "kumoreg.printing.badgeFormat not configured properly?", currentFormatter);
-            return new FullBadgePrintFormatter(attendees, xOffset, yOffset, LocalDate.now());
-        }
+        return getCurrentBadgeFormatter(attendees, xOffset, yOffset, LocalDate.now());
     }
 
+    /**
+     * Returns configured BadgeFormatter
+     * @param attendees List of Attendees to generate badges for
+     * @param xOffset Horizontal print offset in points (1/72 inch)
+     * @param yOffset Vertical print offset in points (1/72 inch)
+     * @param ageAsOfDate Date to calculate attendee ages on
+     * @return BadgePrintFormatter
+     */
     public BadgePrintFormatter getCurrentBadgeFormatter(List<Attendee> attendees, Integer xOffset, Integer yOffset, LocalDate ageAsOfDate) {
+        byte[] document = renderCache.get(currentFormatter, attendees, xOffset, yOffset, ageAsOfDate, () -> {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            writeBadges(attendees, xOffset, yOffset, ageAsOfDate, output);
+            return output.toByteArray();
+        });
+        return new RenderedBadgePrintFormatter(document);
+    }
+
+    /**
+     * Generates badges with the configured BadgeFormatter and writes the PDF to the given stream
+     * instead of keeping it in memory
+     * @param attendees List of Attendees to generate badges for
+     * @param xOffset Horizontal print offset in points (1/72 inch)
+     * @param yOffset Vertical print offset in points (1/72 inch)
+     * @param ageAsOfDate Date to calculate attendee ages on
+     * @param output Stream to write the PDF to. Not closed
+     */
+    public void writeBadges(List<Attendee> attendees, Integer xOffset, Integer yOffset, LocalDate ageAsOfDate,
+                            OutputStream output) {
         if ("lite".equals(currentFormatter)) {
-            return new LiteBadgePrintFormatter(attendees, xOffset, yOffset);
-        } else if("full".equals(currentFormatter)) {
-            return new FullBadgePrintFormatter(attendees, xOffset, yOffset, ageAsOfDate);
+            new LiteBadgePrintFormatter(attendees, xOffset, yOffset, output);
+        } else if ("vector".equals(currentFormatter)) {
+            new VectorBadgePrintFormatter(attendees, xOffset, yOffset, output);
         } else {
-            log.warn("Tried to find badge formatter {}, using FullBadgePrintFormatter instead. " +
-                    "kumoreg.printing.badgeFormat not configured properly?", currentFormatter);
-            return new FullBadgePrintFormatter(attendees, xOffset, yOffset, ageAsOfDate);
+            if (!"full".equals(currentFormatter)) {
+                log.warn("Tried to find badge formatter {}, using FullBadgePrintFormatter instead. " +
+                        "kumoreg.printing.badgeFormat not configured properly?", currentFormatter);
+            }
+            new FullBadgePrintFormatter(attendees, xOffset, yOffset, ageAsOfDate, output);
+        }
+    }
+
+    /**
+     * Badges generated by one of the formatters, from BadgeRenderCache
+     */
+    private static class RenderedBadgePrintFormatter implements BadgePrintFormatter {
+        private final byte[] document;
+
+        RenderedBadgePrintFormatter(byte[] document) {
+            this.document = document;
+        }
+
+        @Override
+        public InputStream getStream() {
+            return new ByteArrayInputStream(document);
         }
     }
 }
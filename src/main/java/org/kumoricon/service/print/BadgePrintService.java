@@ -5,15 +5,23 @@ import org.kumoricon.model.badge.BadgeType;
 import org.kumoricon.model.computer.Computer;
 import org.kumoricon.service.print.formatter.BadgePrintFormatter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.print.PrintException;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.List;
 
 @Service
 public class BadgePrintService extends PrintService {
     private final BadgeFormatterFactory badgeFormatterFactory;
+    @Value("${kumoreg.printing.chunkSize:500}")
+    private int chunkSize;
 
     @Autowired
     public BadgePrintService(BadgeFormatterFactory badgeFormatterFactory) {
@@ -34,6 +42,9 @@ public class BadgePrintService extends PrintService {
         if (enablePrintingFromServer != null && !enablePrintingFromServer) {
             return("Printing from server not enabled");
         }
+        if (attendees.size() > chunkSize) {
+            return printBadgesInChunks(attendees, clientIPAddress, xOffset, yOffset, ageAsOfDate);
+        }
         if (attendees.size() > 0) {
             Computer client = computerService.findComputerByIP(clientIPAddress);
             BadgePrintFormatter badgePrintFormatter =
@@ -48,16 +59,77 @@ public class BadgePrintService extends PrintService {
             if (BadgeType.STAFF.equals(attendees.get(0).getBadge().getBadgeType())) {
                 setDuplexOn = true;
             }
-            printDocument(badgePrintFormatter.getStream(), printerName, setDuplexOn);
-            return String.format("Printed %s badges to %s.",
+            PrintJob job = printDocument(badgePrintFormatter.getStream(), printerName,
+                    String.format("%s badges", attendees.size()), setDuplexOn);
+            return String.format("Sent %s badges to %s (print job %s).",
                     attendees.size(),
-                    printerName);
+                    printerName,
+                    job.getId());
         } else {
             return "No badges to print. Pre-printed badges ready for pickup.";
         }
     }
 
 
+    /**
+     * Prints badges as one print job per chunkSize attendees. Each chunk is written to a
+     * temporary file and printed from there, so memory use doesn't grow with the number of badges.
+     * Waits for room in the printer's queue before generating each chunk; the print queue deletes
+     * the file once the chunk is printed.
+     * @param attendees List of attendees
+     * @param clientIPAddress Client computer's IP address
+     * @return String Result message
+     * @throws PrintException Printer error, or error generating badges or writing a temporary file
+     */
+    private String printBadgesInChunks(List<Attendee> attendees, String clientIPAddress, Integer xOffset,
+                                       Integer yOffset, LocalDate ageAsOfDate) throws PrintException {
+        Computer client = computerService.findComputerByIP(clientIPAddress);
+        String printerName = client.getPrinterName();
+        // Fail before generating the first chunk if the printer isn't installed
+        printerRegistry.find(printerName);
+        // See printBadgesForAttendees() about duplexing
+        boolean setDuplexOn = BadgeType.STAFF.equals(attendees.get(0).getBadge().getBadgeType());
+
+        int size = Math.max(chunkSize, 1);
+        int jobs = 0;
+        for (int i = 0; i < attendees.size(); i += size) {
+            List<Attendee> chunk = attendees.subList(i, Math.min(i + size, attendees.size()));
+            String description = String.format("Badges %s-%s of %s",
+                    i + 1, i + chunk.size(), attendees.size());
+            Path file = null;
+            try {
+                file = Files.createTempFile("badges", ".pdf");
+                try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(file))) {
+                    badgeFormatterFactory.writeBadges(chunk, xOffset, yOffset, ageAsOfDate, output);
+                }
+                printQueueService.submitAndWait(printerName, description, file, setDuplexOn);
+                file = null;
+                jobs++;
+            } catch (IOException | RuntimeException ex) {
+                log.error("Error writing badges to {}", file, ex);
+                throw new PrintException(String.format("Error printing badges after %s of %s: %s",
+                        i, attendees.size(), ex.getMessage()));
+            } finally {
+                deleteFile(file);
+            }
+        }
+        return String.format("Sent %s badges to %s in %s print jobs.", attendees.size(), printerName, jobs);
+    }
+
+    private static void deleteFile(Path file) {
+        if (file == null) { return; }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            log.error("Error deleting {}", file, ex);
+        }
+    }
+
+    /**
+     * @return Maximum number of badges generated and printed as one document
+     */
+    public int getChunkSize() { return chunkSize; }
+
     /**
      * Prints badges for a given list of attendees to either the appropriate printer name (from
      * the computers table), or the default printer on the server.
@@ -0,0 +1,202 @@
+package org.kumoricon.service.print;
+
+import org.kumoricon.model.attendee.Attendee;
+import org.kumoricon.model.badge.AgeRange;
+import org.kumoricon.model.badge.Badge;
+import org.kumoricon.service.ContentHash;
+import org.kumoricon.service.print.formatter.BadgeLib;
+import org.kumoricon.service.print.formatter.BadgeResourceCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.kumoricon.service.ContentHash.append;
+
+/**
+ * Recently generated badge documents, by a hash of everything drawn on the badges: the badge
+ * format, offsets, date ages are calculated on, the attendee fields the formatters read, and
+ * the version of the badge resources (fonts, backgrounds, images). Staff photos aren't kept in
+ * BadgeResourceCache, so the size and modification time of each photo are part of the hash
+ * instead. Previewing badges and then
+ * printing them, or printing the same badge again, uses the same document instead of
+ * generating it again. A document that is being generated when it is asked for again is
+ * waited for instead of generated twice.
+ *
+ * Holds up to kumoreg.printing.renderCacheMegabytes (default 32, 0 to disable) of documents,
+ * dropping the least recently used. Documents larger than a quarter of that aren't kept.
+ *
+ * Published as actuator metrics under kumoreg.badgeRenderCache.
+ */
+@Component
+public class BadgeRenderCache implements PublicMetrics {
+    private final long maxBytes;
+    private final Function<Attendee, File> staffPhoto;
+    private final LinkedHashMap<String, byte[]> documents = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, FutureTask<byte[]>> rendering = new ConcurrentHashMap<>();
+    private long bytes = 0;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Autowired
+    public BadgeRenderCache(@Value("${kumoreg.printing.renderCacheMegabytes:32}") long megabytes) {
+        this(megabytes, attendee -> {
+            String filename = BadgeLib.getStaffImageFilename(attendee);
+            return filename == null ? null : new File(filename);
+        });
+    }
+
+    BadgeRenderCache(long megabytes, Function<Attendee, File> staffPhoto) {
+        this.maxBytes = megabytes * 1024 * 1024;
+        this.staffPhoto = staffPhoto;
+    }
+
+    /**
+     * Returns the document for the given badges, generating it if it isn't cached
+     * @param format Badge format
+     * @param attendees Attendees the document has badges for
+     * @param xOffset Horizontal print offset in points (1/72 inch)
+     * @param yOffset Vertical print offset in points (1/72 inch)
+     * @param ageAsOfDate Date to calculate attendee ages on
+     * @param render Generates the document
+     * @return PDF document. Must not be modified
+     */
+    public byte[] get(String format, List<Attendee> attendees, Integer xOffset, Integer yOffset,
+                      LocalDate ageAsOfDate, Supplier<byte[]> render) {
+        if (maxBytes <= 0) { return render.get(); }
+
+        String key = key(format, attendees, xOffset, yOffset, ageAsOfDate, BadgeResourceCache.getGeneration());
+        byte[] document = lookup(key);
+        if (document != null) {
+            hits.incrementAndGet();
+            return document;
+        }
+
+        FutureTask<byte[]> task = new FutureTask<>(render::get);
+        FutureTask<byte[]> existing = rendering.putIfAbsent(key, task);
+        if (existing != null) {
+            hits.incrementAndGet();
+            return await(existing);
+        }
+
+        misses.incrementAndGet();
+        try {
+            task.run();
+            document = await(task);
+            store(key, document);
+            return document;
+        } finally {
+            rendering.remove(key, task);
+        }
+    }
+
+    /**
+     * Drops all documents
+     */
+    public synchronized void clear() {
+        documents.clear();
+        bytes = 0;
+    }
+
+    private synchronized byte[] lookup(String key) {
+        return documents.get(key);
+    }
+
+    private synchronized void store(String key, byte[] document) {
+        if (document.length > maxBytes / 4) { return; }
+        byte[] previous = documents.put(key, document);
+        if (previous != null) { bytes -= previous.length; }
+        bytes += document.length;
+
+        Iterator<byte[]> eldest = documents.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    private static byte[] await(FutureTask<byte[]> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for badges", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) { throw (RuntimeException) ex.getCause(); }
+            if (ex.getCause() instanceof Error) { throw (Error) ex.getCause(); }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    @Override
+    public synchronized Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("kumoreg.badgeRenderCache.documents", documents.size()));
+        metrics.add(new Metric<>("kumoreg.badgeRenderCache.bytes", bytes));
+        metrics.add(new Metric<>("kumoreg.badgeRenderCache.hits", hits.get()));
+        metrics.add(new Metric<>("kumoreg.badgeRenderCache.misses", misses.get()));
+        return metrics;
+    }
+
+    /**
+     * Hashes everything that is drawn on the badges. Two documents with the same key are the same
+     * @return SHA-256 hash as a hex string
+     */
+    private String key(String format, List<Attendee> attendees, Integer xOffset, Integer yOffset,
+                      LocalDate ageAsOfDate, long resourceGeneration) {
+        StringBuilder content = new StringBuilder();
+        append(content, format);
+        append(content, xOffset);
+        append(content, yOffset);
+        append(content, ageAsOfDate);
+        append(content, resourceGeneration);
+        append(content, attendees.size());
+        for (Attendee attendee : attendees) {
+            append(content, attendee.getFirstName());
+            append(content, attendee.getLastName());
+            append(content, attendee.getFanName());
+            append(content, attendee.getBadgeNumber());
+            append(content, attendee.getBirthDate());
+            Badge badge = attendee.getBadge();
+            append(content, badge == null ? null : badge.getBadgeType());
+            append(content, badge == null ? null : badge.getBadgeTypeText());
+            append(content, badge == null ? null : badge.getBadgeTypeBackgroundColor());
+            AgeRange ageRange = attendee.getCurrentAgeRange();
+            append(content, ageRange == null ? null : ageRange.getStripeText());
+            append(content, ageRange == null ? null : ageRange.getStripeColor());
+            append(content, attendee.getStaffDepartment());
+            append(content, attendee.getStaffDepartmentColor());
+            append(content, attendee.getStaffImageFilename());
+            File photo = staffPhoto.apply(attendee);
+            if (photo == null) {
+                append(content, null);
+            } else {
+                // Both are 0 if the photo doesn't exist yet
+                append(content, photo.length());
+                append(content, photo.lastModified());
+            }
+            List<String> positions = attendee.getStaffPositions();
+            if (positions == null) {
+                append(content, null);
+            } else {
+                append(content, positions.size());
+                for (String position : positions) {
+                    append(content, position);
+                }
+            }
+        }
+
+        return ContentHash.sha256Hex(content);
+    }
+}
@@ -0,0 +1,102 @@
+package org.kumoricon.service.print;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+/**
+ * A document waiting to be printed, or printed, by PrintQueueService. Updated by the printer's
+ * worker thread and read by views, so state is volatile.
+ */
+public class PrintJob {
+    public enum State {
+        QUEUED, PRINTING, RETRYING, DONE, FAILED;
+
+        public boolean isFinished() { return this == DONE || this == FAILED; }
+    }
+
+    private final int id;
+    private final String printerName;
+    private final String description;
+    private final boolean duplex;
+    private volatile byte[] data;
+    private final Path file;
+    private final LocalDateTime submittedAt = LocalDateTime.now();
+    private volatile State state = State.QUEUED;
+    private volatile int attempts = 0;
+    private volatile String message = "";
+
+    /**
+     * @param id Job ID
+     * @param printerName Printer name
+     * @param description What is being printed, for display
+     * @param duplex Print double-sided
+     * @param data Document contents, or null if file is set
+     * @param file File with the document contents, deleted when the job finishes. Null if data is set
+     */
+    PrintJob(int id, String printerName, String description, boolean duplex, byte[] data, Path file) {
+        this.id = id;
+        this.printerName = printerName;
+        this.description = description;
+        this.duplex = duplex;
+        this.data = data;
+        this.file = file;
+    }
+
+    public int getId() { return id; }
+    public String getPrinterName() { return printerName; }
+    public String getDescription() { return description; }
+    public LocalDateTime getSubmittedAt() { return submittedAt; }
+    public State getState() { return state; }
+    public int getAttempts() { return attempts; }
+    public String getMessage() { return message; }
+
+    boolean isDuplex() { return duplex; }
+
+    /**
+     * @return New stream over the document contents
+     * @throws IOException Error opening file
+     */
+    InputStream open() throws IOException {
+        if (file != null) {
+            return new BufferedInputStream(Files.newInputStream(file));
+        }
+        return new ByteArrayInputStream(data);
+    }
+
+    void printing() {
+        attempts++;
+        state = State.PRINTING;
+    }
+
+    void retrying(String message) {
+        this.message = message;
+        state = State.RETRYING;
+    }
+
+    void finished(State state, String message) {
+        this.message = message;
+        this.state = state;
+    }
+
+    /**
+     * Drops the job's document, so finished jobs kept for display don't hold on to it, and
+     * deletes the job's file if it has one
+     * @throws IOException Error deleting file
+     */
+    void release() throws IOException {
+        data = null;
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[Print job %s: %s on %s]", id, description, printerName);
+    }
+}
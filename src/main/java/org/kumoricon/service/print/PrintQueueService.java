@@ -0,0 +1,279 @@
+package org.kumoricon.service.print;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.print.*;
+import javax.print.attribute.HashPrintRequestAttributeSet;
+import javax.print.attribute.PrintRequestAttributeSet;
+import javax.print.attribute.standard.Sides;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends documents to printers in the background, so the user gets control back as soon as a
+ * document is queued. Each installed printer has its own queue of up to kumoreg.printing.queueSize
+ * jobs (default 20) and its own worker thread, so a slow or jammed printer only holds up its own
+ * jobs. Documents for printers that aren't installed are refused when they are submitted.
+ *
+ * A job that fails is tried again up to kumoreg.printing.retries times (default 3), waiting
+ * kumoreg.printing.retryDelayMillis (default 2000) before the first retry and twice as long
+ * before each one after that. A job whose printer has been removed fails without retrying.
+ *
+ * Keeps the last MAX_FINISHED_JOBS finished jobs along with queued ones, so views can show them.
+ */
+@Service
+public class PrintQueueService {
+    private static final int MAX_FINISHED_JOBS = 100;
+    private static final Logger log = LoggerFactory.getLogger(PrintQueueService.class);
+
+    private final int queueSize;
+    private final int retries;
+    private final long retryDelayMillis;
+    private final PrinterRegistry printerRegistry;
+    private final DocumentPrinter printer;
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final ConcurrentMap<String, PrinterQueue> queues = new ConcurrentHashMap<>();
+    private final Map<Integer, PrintJob> jobs = new LinkedHashMap<>();
+    private volatile boolean stopped = false;
+
+    /**
+     * Prints a job's document. Must throw if the document wasn't sent to the printer.
+     */
+    interface DocumentPrinter {
+        void print(javax.print.PrintService printService, PrintJob job) throws PrintException, IOException;
+    }
+
+    @Autowired
+    public PrintQueueService(@Value("${kumoreg.printing.queueSize:20}") int queueSize,
+                             @Value("${kumoreg.printing.retries:3}") int retries,
+                             @Value("${kumoreg.printing.retryDelayMillis:2000}") long retryDelayMillis,
+                             PrinterRegistry printerRegistry) {
+        this(queueSize, retries, retryDelayMillis, printerRegistry, PrintQueueService::printWithJavaxPrint);
+    }
+
+    PrintQueueService(int queueSize, int retries, long retryDelayMillis, PrinterRegistry printerRegistry,
+                      DocumentPrinter printer) {
+        this.queueSize = Math.max(queueSize, 1);
+        this.retries = Math.max(retries, 0);
+        this.retryDelayMillis = retryDelayMillis;
+        this.printerRegistry = printerRegistry;
+        this.printer = printer;
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        for (PrinterQueue queue : queues.values()) {
+            queue.worker.interrupt();
+        }
+    }
+
+    /**
+     * Queues a document for printing and returns right away
+     * @param printerName Printer name (case insensitive)
+     * @param description What is being printed, for display
+     * @param data Document contents (usually PDF)
+     * @param duplex Print double-sided
+     * @return Job
+     * @throws PrintException Printer not found, or the printer's queue is full
+     */
+    public PrintJob submit(String printerName, String description, byte[] data, boolean duplex) throws PrintException {
+        PrinterQueue queue = getQueue(printerName);
+        PrintJob job = new PrintJob(nextId.getAndIncrement(), printerName, description, duplex, data, null);
+        addJob(job);
+        if (!queue.jobs.offer(job)) {
+            removeJob(job);
+            log.warn("{} refused, {} jobs already waiting for {}", job, queue.jobs.size(), printerName);
+            throw new PrintException(String.format("Printer %s has %s jobs waiting. Try again later.",
+                    printerName, queue.jobs.size()));
+        }
+        log.info("Queued {}", job);
+        return job;
+    }
+
+    /**
+     * Queues a document for printing, waiting for room in the printer's queue if it is full.
+     * For large jobs that are printed in several parts.
+     * @param printerName Printer name (case insensitive)
+     * @param description What is being printed, for display
+     * @param file File with the document contents (usually PDF). Deleted when the job finishes
+     * @param duplex Print double-sided
+     * @return Job
+     * @throws PrintException Printer not found, or interrupted while waiting
+     */
+    public PrintJob submitAndWait(String printerName, String description, Path file, boolean duplex) throws PrintException {
+        PrinterQueue queue = getQueue(printerName);
+        PrintJob job = new PrintJob(nextId.getAndIncrement(), printerName, description, duplex, null, file);
+        addJob(job);
+        try {
+            queue.jobs.put(job);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            removeJob(job);
+            throw new PrintException("Interrupted while waiting for printer " + printerName);
+        }
+        log.info("Queued {}", job);
+        return job;
+    }
+
+    /**
+     * @param id Job ID
+     * @return Job, or null if it isn't known
+     */
+    public PrintJob getJob(int id) {
+        synchronized (jobs) {
+            return jobs.get(id);
+        }
+    }
+
+    /**
+     * @return Queued, printing and recently finished jobs, oldest first
+     */
+    public List<PrintJob> getJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    /**
+     * @param printerName Printer name (case insensitive)
+     * @return Number of jobs waiting for the printer, not counting one being printed
+     */
+    public int getQueueLength(String printerName) {
+        PrinterQueue queue = queues.get(normalize(printerName));
+        return queue == null ? 0 : queue.jobs.size();
+    }
+
+    private PrinterQueue getQueue(String printerName) throws PrintException {
+        if (printerName == null || printerName.trim().isEmpty()) {
+            throw new PrintException("Error: No printer set for this computer");
+        }
+        if (stopped) { throw new PrintException("Error: Print queue is shutting down"); }
+        // Only installed printers get a queue and worker thread
+        javax.print.PrintService printService = printerRegistry.find(printerName);
+        return queues.computeIfAbsent(normalize(printService.getName()), PrinterQueue::new);
+    }
+
+    private static String normalize(String printerName) {
+        return printerName == null ? "" : printerName.toLowerCase().trim();
+    }
+
+    private void addJob(PrintJob job) {
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+        }
+    }
+
+    private void removeJob(PrintJob job) {
+        synchronized (jobs) {
+            jobs.remove(job.getId());
+        }
+    }
+
+    private void finish(PrintJob job, PrintJob.State state, String message) {
+        job.finished(state, message);
+        try {
+            job.release();
+        } catch (IOException ex) {
+            log.error("Error deleting file for {}", job, ex);
+        }
+        synchronized (jobs) {
+            int finished = 0;
+            for (PrintJob j : jobs.values()) {
+                if (j.getState().isFinished()) { finished++; }
+            }
+            // Oldest jobs come first
+            for (Iterator<PrintJob> it = jobs.values().iterator();
+                 it.hasNext() && finished > MAX_FINISHED_JOBS; ) {
+                if (it.next().getState().isFinished()) {
+                    it.remove();
+                    finished--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Prints the job, trying again with backoff if it fails
+     * @param job Job
+     * @throws InterruptedException Interrupted while waiting to retry
+     */
+    private void print(PrintJob job) throws InterruptedException {
+        long delay = retryDelayMillis;
+        while (true) {
+            javax.print.PrintService printService;
+            try {
+                printService = printerRegistry.find(job.getPrinterName());
+            } catch (PrintException ex) {
+                log.error("Error printing {}: {}", job, ex.getMessage());
+                finish(job, PrintJob.State.FAILED, ex.getMessage());
+                return;
+            }
+            job.printing();
+            try {
+                printer.print(printService, job);
+                finish(job, PrintJob.State.DONE, "Printed");
+                log.info("Printed {}", job);
+                return;
+            } catch (PrintException | IOException | RuntimeException ex) {
+                if (job.getAttempts() > retries) {
+                    log.error("Error printing {}, giving up after {} attempts", job, job.getAttempts(), ex);
+                    finish(job, PrintJob.State.FAILED, ex.getMessage());
+                    return;
+                }
+                log.warn("Error printing {}, trying again in {} ms: {}", job, delay, ex.getMessage());
+                job.retrying(ex.getMessage());
+                Thread.sleep(delay);
+                delay *= 2;
+            }
+        }
+    }
+
+    private static void printWithJavaxPrint(javax.print.PrintService printService, PrintJob printJob)
+            throws PrintException, IOException {
+        DocFlavor flavor = DocFlavor.INPUT_STREAM.AUTOSENSE;
+        DocPrintJob job = printService.createPrintJob();
+        PrintRequestAttributeSet printRequestSet = new HashPrintRequestAttributeSet();
+        if (printJob.isDuplex()) {
+            printRequestSet.add(Sides.DUPLEX);
+        }
+
+        try (InputStream inputStream = printJob.open()) {
+            Doc doc = new SimpleDoc(inputStream, flavor, null);
+            job.print(doc, printRequestSet);
+        }
+    }
+
+    /**
+     * Jobs for one printer, printed in order by one worker thread
+     */
+    private class PrinterQueue {
+        private final BlockingQueue<PrintJob> jobs = new ArrayBlockingQueue<>(queueSize);
+        private final Thread worker;
+
+        PrinterQueue(String printerName) {
+            worker = new Thread(this::run, "print-" + printerName);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        private void run() {
+            try {
+                while (!stopped) {
+                    print(jobs.take());
+                }
+            } catch (InterruptedException ex) {
+                log.info("Stopped {}", Thread.currentThread().getName());
+            }
+        }
+    }
+}
@@ -5,13 +5,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.util.StreamUtils;
 
-import javax.print.*;
-import javax.print.attribute.HashPrintRequestAttributeSet;
-import javax.print.attribute.PrintRequestAttributeSet;
-import javax.print.attribute.standard.Sides;
+import javax.print.PrintException;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -23,60 +21,37 @@ public abstract class PrintService {
     protected Boolean enablePrintingFromServer;
     @Autowired
     ComputerService computerService;
+    @Autowired
+    PrintQueueService printQueueService;
+    @Autowired
+    PrinterRegistry printerRegistry;
 
     /**
-     * Prints the given inputStream to the printer with the given name, or the default printer
-     * if a printer with that name isn't found.
+     * Queues the given inputStream for printing on the printer with the given name. The stream is
+     * read before returning; the job is printed in the background by PrintQueueService.
      *
      * @param inputStream Data stream (Usually PDF formatted)
      * @param printerName Destination printer name (case insensitive)
+     * @param description What is being printed, for display
      * @param duplex Print the job double-sided
+     * @return Queued print job
+     * @throws PrintException Error reading the stream, printer not found, or the printer's queue is full
      */
-    void printDocument(InputStream inputStream, String printerName, boolean duplex) throws PrintException {
-        javax.print.PrintService printService = findPrinter(printerName);
-
-        DocFlavor flavor = DocFlavor.INPUT_STREAM.AUTOSENSE;
-        DocPrintJob job = printService.createPrintJob();
-        PrintRequestAttributeSet printRequestSet = new HashPrintRequestAttributeSet();
-        if (duplex) {
-            printRequestSet.add(Sides.DUPLEX);
-        }
-
-        Doc doc = new SimpleDoc(inputStream, flavor, null);
-        job.print(doc, printRequestSet);
-    }
-
-    /**
-     * Returns a PrintService object for the printer with the given name, or the default printer if
-     * no match is found.
-     * @param name Printer name (case insensitive)
-     * @return PrintService
-     * @throws PrintException Exception if printer not found and default printer isn't set
-     */
-    private javax.print.PrintService findPrinter(String name) throws PrintException {
-        name = name.toLowerCase().trim();
-        javax.print.PrintService[] printServices = PrintServiceLookup.lookupPrintServices(null, null);
-
-        for (javax.print.PrintService printer : printServices) {
-            String thisPrinterName = printer.getName().trim().toLowerCase();
-            if (name.equals(thisPrinterName)) { return printer; }
+    PrintJob printDocument(InputStream inputStream, String printerName, String description, boolean duplex) throws PrintException {
+        byte[] data;
+        try {
+            data = StreamUtils.copyToByteArray(inputStream);
+        } catch (IOException ex) {
+            throw new PrintException("Error reading document: " + ex.getMessage());
         }
-
-//        javax.print.PrintService printer = PrintServiceLookup.lookupDefaultPrintService();
-//        if (printer != null) {
-//            log.warn("Printer \"{}\" not found, using default printer \"{}\"", name, printer.getName());
-//            return printer;
-//        }
-
-        log.error("Printer \"{}\" not found, no default printer found.", name);
-        throw new PrintException("Error: Printer named '" + name + "' does not exist and no default printer set");
+        return printQueueService.submit(printerName, description, data, duplex);
     }
 
     /**
-     * Gets list of installed printers from system
+     * Gets list of installed printers, as of the last time they were loaded from the system
      * @return List of PrintService objects
      */
     public List<javax.print.PrintService> getAvailablePrinters() {
-        return Arrays.asList(PrintServiceLookup.lookupPrintServices(null, null));
+        return printerRegistry.getPrinters();
     }
 }
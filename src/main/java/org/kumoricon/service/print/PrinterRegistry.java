@@ -0,0 +1,191 @@
+package org.kumoricon.service.print;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.print.PrintException;
+import javax.print.PrintServiceLookup;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Printers installed on the server, by name. Looking up the printers from the system (CUPS)
+ * takes longer the more printers are installed, so it is done in the background every
+ * kumoreg.printing.printerRefreshSeconds (default 60) and when an administrator changes printers,
+ * and finding a printer to print to is a map lookup.
+ *
+ * Java keeps its own list of printers and doesn't always notice new ones. That list is only
+ * thrown away when an administrator changes printers (see reload()), since rebuilding it is
+ * the slow part of a lookup.
+ *
+ * If a printer isn't found, the list is refreshed right away in case it was just installed, but
+ * not more often than every MIN_REFRESH_MILLIS.
+ *
+ * Published as actuator metrics under kumoreg.printers.
+ */
+@Service
+public class PrinterRegistry implements PublicMetrics {
+    private static final long MIN_REFRESH_MILLIS = 5000;
+    private static final Logger log = LoggerFactory.getLogger(PrinterRegistry.class);
+
+    private final long refreshSeconds;
+    private final Supplier<javax.print.PrintService[]> lookup;
+    private final Runnable clearSystemCache;
+    private volatile Map<String, javax.print.PrintService> printers = Collections.emptyMap();
+    private volatile long lastRefreshMillis = 0;
+    private volatile long lastRefreshDurationMillis = 0;
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong lookupNanos = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private ScheduledExecutorService executor;
+
+    @Autowired
+    public PrinterRegistry(@Value("${kumoreg.printing.printerRefreshSeconds:60}") long refreshSeconds) {
+        this(refreshSeconds, () -> PrintServiceLookup.lookupPrintServices(null, null),
+                PrinterRegistry::clearPrintServiceCache);
+    }
+
+    PrinterRegistry(long refreshSeconds, Supplier<javax.print.PrintService[]> lookup) {
+        this(refreshSeconds, lookup, () -> {});
+    }
+
+    PrinterRegistry(long refreshSeconds, Supplier<javax.print.PrintService[]> lookup, Runnable clearSystemCache) {
+        this.refreshSeconds = refreshSeconds;
+        this.lookup = lookup;
+        this.clearSystemCache = clearSystemCache;
+    }
+
+    @PostConstruct
+    public void start() {
+        refresh();
+        if (refreshSeconds > 0) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "printer-registry");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(this::refreshQuietly, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reloads the list of printers from the system, after throwing away Java's list of printers
+     * so that printers that were just installed or removed are noticed. Slower than refresh();
+     * use it after an administrator changes printers.
+     */
+    public synchronized void reload() {
+        clearSystemCache.run();
+        refresh();
+    }
+
+    /**
+     * Reloads the list of printers from the system
+     */
+    public synchronized void refresh() {
+        long start = System.currentTimeMillis();
+        Map<String, javax.print.PrintService> found = new LinkedHashMap<>();
+        for (javax.print.PrintService printer : lookup.get()) {
+            found.putIfAbsent(normalize(printer.getName()), printer);
+        }
+        printers = Collections.unmodifiableMap(found);
+        lastRefreshMillis = System.currentTimeMillis();
+        lastRefreshDurationMillis = lastRefreshMillis - start;
+        refreshes.incrementAndGet();
+        log.debug("Found {} printers in {} ms", found.size(), lastRefreshDurationMillis);
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException ex) {
+            log.error("Error refreshing printer list", ex);
+        }
+    }
+
+    /**
+     * Returns the printer with the given name
+     * @param name Printer name (case insensitive)
+     * @return Printer
+     * @throws PrintException Printer not found
+     */
+    public javax.print.PrintService find(String name) throws PrintException {
+        long start = System.nanoTime();
+        String key = normalize(name);
+        javax.print.PrintService printer = printers.get(key);
+        if (printer == null) {
+            misses.incrementAndGet();
+            synchronized (this) {
+                if (System.currentTimeMillis() - lastRefreshMillis >= MIN_REFRESH_MILLIS) {
+                    refresh();
+                }
+            }
+            printer = printers.get(key);
+        }
+        lookups.incrementAndGet();
+        lookupNanos.addAndGet(System.nanoTime() - start);
+
+        if (printer == null) {
+            log.error("Printer \"{}\" not found, no default printer found.", key);
+            throw new PrintException("Error: Printer named '" + key + "' does not exist and no default printer set");
+        }
+        return printer;
+    }
+
+    /**
+     * @return Installed printers, as of the last refresh
+     */
+    public List<javax.print.PrintService> getPrinters() {
+        return new ArrayList<>(printers.values());
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        long count = lookups.get();
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>("kumoreg.printers.count", printers.size()));
+        metrics.add(new Metric<>("kumoreg.printers.lookups", count));
+        metrics.add(new Metric<>("kumoreg.printers.lookupMisses", misses.get()));
+        metrics.add(new Metric<>("kumoreg.printers.lookupMeanMicros",
+                count == 0 ? 0.0 : lookupNanos.get() / 1000.0 / count));
+        metrics.add(new Metric<>("kumoreg.printers.refreshes", refreshes.get()));
+        metrics.add(new Metric<>("kumoreg.printers.lastRefreshMillis", lastRefreshDurationMillis));
+        return metrics;
+    }
+
+    private static String normalize(String name) {
+        return name == null ? "" : name.trim().toLowerCase();
+    }
+
+    /**
+     * Removes the list of printers Java caches in the AppContext, so the next lookup does a
+     * full rebuild
+     */
+    private static void clearPrintServiceCache() {
+        Class<?>[] classes = PrintServiceLookup.class.getDeclaredClasses();
+        for (Class<?> c : classes) {
+            if ("javax.print.PrintServiceLookup$Services".equals(c.getName())) {
+                sun.awt.AppContext.getAppContext().remove(c);
+                break;
+            }
+        }
+    }
+}
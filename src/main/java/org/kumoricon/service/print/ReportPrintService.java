@@ -21,12 +21,12 @@ public class ReportPrintService extends PrintService {
             ReportPrintFormatter formatter =
                     new ReportPrintFormatter(reportText, client.getxOffset(), client.getyOffset());
             try {
-                printDocument(formatter.getStream(), client.getPrinterName(), false);
-                return "Printed to " + client.getPrinterName();
+                PrintJob job = printDocument(formatter.getStream(), client.getPrinterName(), "Report", false);
+                return String.format("Sent to %s (print job %s)", client.getPrinterName(), job.getId());
             } catch (PrintException e) {
                 log.error(String.format("Error printing report for %s: %s",
                         clientIPAddress, e.getMessage()), e);
-                return("Error printing. No printers found? More information in server logs");
+                return("Error printing: " + e.getMessage());
             }
         } else {
             return("Printing from server not enabled.");
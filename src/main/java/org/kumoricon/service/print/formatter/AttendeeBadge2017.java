@@ -76,13 +76,13 @@ public class AttendeeBadge2017 extends FormatterBase  {
         int fontSize = BadgeLib.findMaxFontSize(font, badgeNumberParts,boundingBox);
         stream.setFont(font, fontSize);
 
-        float textWidth = font.getStringWidth(badgeNumberParts.get(0));
+        float textWidth = TextWidths.getStringWidth(font, badgeNumberParts.get(0));
         Float offset = textWidth * (fontSize/(2*1000.0f));
         stream.newLineAtOffset(185-offset, 105+fontSize);   // First character position
         stream.showText(badgeNumberParts.get(0));
 
         if (badgeNumberParts.size() > 1) {
-            textWidth = font.getStringWidth(badgeNumberParts.get(1));
+            textWidth = TextWidths.getStringWidth(font, badgeNumberParts.get(1));
             Float newOffset = textWidth * (fontSize/(2*1000.0f));
             stream.newLineAtOffset(offset-newOffset, -1*fontSize);   // First character position
             stream.showText(badgeNumberParts.get(1));
@@ -159,7 +159,7 @@ public class AttendeeBadge2017 extends FormatterBase  {
 
         }
 
-        float textWidth = font.getStringWidth(badgeTypeText);
+        float textWidth = TextWidths.getStringWidth(font, badgeTypeText);
         Float offset = textWidth * (fontSize/(2*1000.0f));
         stream.newLineAtOffset(330-offset, 100);   // First character position
         stream.showText(badgeTypeText);
@@ -1,5 +1,6 @@
 package org.kumoricon.service.print.formatter;
 
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
@@ -7,6 +8,9 @@ import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDType0Font;
 import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.apache.pdfbox.util.Matrix;
 import org.kumoricon.model.attendee.Attendee;
 import org.slf4j.Logger;
@@ -32,6 +36,17 @@ public class BadgeLib {
     private static String badgeResourcePath = "/usr/local/kumoreg/badgeResources";
     private static final Logger log = LoggerFactory.getLogger(BadgeLib.class);
     private static final Pattern badgeNumberPattern = Pattern.compile("([A-Za-z]+)(\\d+)");
+    // Document data past this size is kept in a scratch file instead of on the heap
+    private static final long MAX_DOCUMENT_MEMORY_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * Creates an empty document for badges. Large documents (pre-printing many badges) spill
+     * to a temporary scratch file instead of being held in memory.
+     * @return PDDocument
+     */
+    static PDDocument createDocument() {
+        return new PDDocument(MemoryUsageSetting.setupMixed(MAX_DOCUMENT_MEMORY_BYTES));
+    }
 
     /**
      * Loads BankGothic Md BT Medium.ttf in to a given document or falls back to Helvetica Bold
@@ -41,7 +56,7 @@ public class BadgeLib {
     static PDFont loadFont(PDDocument document) {
         Path fontPath = Paths.get(badgeResourcePath, "/Bitstream - BankGothic Md BT Medium.ttf");
 
-        try (InputStream stream = new FileInputStream(fontPath.toFile())) {
+        try (InputStream stream = new ByteArrayInputStream(BadgeResourceCache.getBytes(fontPath))) {
             return PDType0Font.load(document, stream);
         } catch (IOException ex) {
             log.warn("Error, couldn't load font '{}'", fontPath.toAbsolutePath());
@@ -57,8 +72,8 @@ public class BadgeLib {
     static PDDocument loadBackground(String filename) {
         Path filePath = Paths.get(badgeResourcePath, filename);
         PDDocument background;
-        try (InputStream stream = new FileInputStream(filePath.toFile())) {
-            background = PDDocument.load(stream);
+        try {
+            background = PDDocument.load(BadgeResourceCache.getBytes(filePath));
             return background;
         } catch (IOException ex) {
             log.warn("Couldn't load PDF {}, falling back to blank page", filename);
@@ -68,13 +83,32 @@ public class BadgeLib {
         return background;
     }
 
+    /**
+     * Loads an image from the resource path in to a given document. The file is only read and
+     * decoded the first time it is used.
+     * @param document Open PDDocument (PDF)
+     * @param filename Absolute path of an image in the resource path
+     * @return Image
+     * @throws IOException Error reading image
+     */
+    static PDImageXObject loadImage(PDDocument document, String filename) throws IOException {
+        Path filePath = Paths.get(filename);
+        String lowerCaseName = filename.toLowerCase();
+        if (lowerCaseName.endsWith(".jpg") || lowerCaseName.endsWith(".jpeg")) {
+            // JPEG data is embedded as is, without decoding
+            return JPEGFactory.createFromByteArray(document, BadgeResourceCache.getBytes(filePath));
+        } else {
+            return LosslessFactory.createFromImage(document, BadgeResourceCache.getImage(filePath));
+        }
+    }
+
     /**
      * Get the absolute path on disk of the staff image from an Attendee record. Returns null if
      * the Attendee has no image
      * @param attendee Attendee
      * @return File path
      */
-    static String getStaffImageFilename(Attendee attendee) {
+    public static String getStaffImageFilename(Attendee attendee) {
         if (attendee.getStaffImageFilename() != null) {
             Path filePath = Paths.get(badgeResourcePath, "/badgeImage/", attendee.getStaffImageFilename());
             return filePath.toAbsolutePath().toString();
@@ -151,13 +185,18 @@ public class BadgeLib {
         return  maxLineSize.intValue();
     }
 
+    /**
+     * Calculates the largest font size (up to maxTextHeight) that fits the text on one line in
+     * maxTextWidth. See TextWidths.findMaxLineSize()
+     * @param font Font text will be drawn in
+     * @param text Text
+     * @param maxTextWidth Maximum width in points
+     * @param maxTextHeight Maximum height (font size) in points
+     * @return font size
+     * @throws IOException Error working with font bubbled up from PDFBox
+     */
     static int findMaxLineSize(PDFont font, String text, float maxTextWidth, float maxTextHeight) throws IOException {
-        float textWidth = font.getStringWidth(text);
-        Float size = maxTextHeight;
-        if (textWidth * (size/1000.0f) > maxTextWidth) {
-            size = maxTextWidth * 1000.0f / textWidth;
-        }
-        return size.intValue();
+        return TextWidths.findMaxLineSize(font, text, maxTextWidth, maxTextHeight);
     }
 
     /**
@@ -401,7 +440,7 @@ public class BadgeLib {
         // Get the widths of each line
         float[] lineWidths = new float[lines.length];
         for (int i = 0; i < (lines.length); i++) {
-            lineWidths[i] = font.getStringWidth(lines[i])/1000f*fontSize;
+            lineWidths[i] = TextWidths.getStringWidth(font, lines[i])/1000f*fontSize;
         }
 
         // Get the width of the longest line
@@ -490,16 +529,16 @@ public class BadgeLib {
 
             if (alignment == ALIGNMENT.CENTER) {
                 if (rotation == ROTATION.RIGHT || rotation == ROTATION.LEFT)
-                    lineOffset = (boundaryHeight / autoScaleFactor / 2) - (font.getStringWidth(lines[i]) / 1000f * fontSize / 2);
+                    lineOffset = (boundaryHeight / autoScaleFactor / 2) - (TextWidths.getStringWidth(font, lines[i]) / 1000f * fontSize / 2);
                 if (rotation == ROTATION.NONE)
-                    lineOffset = (boundaryWidth / autoScaleFactor / 2) - (font.getStringWidth(lines[i]) / 1000f * fontSize / 2);
+                    lineOffset = (boundaryWidth / autoScaleFactor / 2) - (TextWidths.getStringWidth(font, lines[i]) / 1000f * fontSize / 2);
             }
 
             if (alignment == ALIGNMENT.RIGHT) {
                 if (rotation == ROTATION.RIGHT || rotation == ROTATION.LEFT)
-                    lineOffset = (boundaryHeight / autoScaleFactor) - (font.getStringWidth(lines[i]) / 1000f * fontSize);
+                    lineOffset = (boundaryHeight / autoScaleFactor) - (TextWidths.getStringWidth(font, lines[i]) / 1000f * fontSize);
                 if (rotation == ROTATION.NONE)
-                    lineOffset = (boundaryWidth / autoScaleFactor) - (font.getStringWidth(lines[i]) / 1000f * fontSize);
+                    lineOffset = (boundaryWidth / autoScaleFactor) - (TextWidths.getStringWidth(font, lines[i]) / 1000f * fontSize);
             }
 
             // Move the cursor to the appropriate new location relative to its current old location
@@ -0,0 +1,64 @@
+package org.kumoricon.service.print.formatter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Function;
+
+/**
+ * Fork/join pool for rendering badges in parallel, with one thread per core. Kept separate from
+ * the common pool so that a large pre-print job doesn't hold up other parallel work.
+ */
+final class BadgeRenderPool {
+    private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+            Worker::new, null, false);
+
+    private BadgeRenderPool() {}
+
+    /**
+     * Applies the function to every item in parallel
+     * @param items Items
+     * @param function Function to apply. Must be safe to call from several threads at once
+     * @param <T> Item type
+     * @param <R> Result type
+     * @return Results, in the same order as the items
+     */
+    static <T, R> List<R> map(List<T> items, Function<T, R> function) {
+        List<ForkJoinTask<R>> tasks = new ArrayList<>(items.size());
+        for (T item : items) {
+            tasks.add(pool.submit(() -> function.apply(item)));
+        }
+        List<R> results = new ArrayList<>(items.size());
+        try {
+            for (ForkJoinTask<R> task : tasks) {
+                results.add(task.get());
+            }
+        } catch (InterruptedException ex) {
+            for (ForkJoinTask<R> task : tasks) { task.cancel(false); }
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while rendering badges", ex);
+        } catch (ExecutionException ex) {
+            for (ForkJoinTask<R> task : tasks) { task.cancel(false); }
+            if (ex.getCause() instanceof RuntimeException) { throw (RuntimeException) ex.getCause(); }
+            throw new RuntimeException(ex.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * @return Number of threads in the pool
+     */
+    static int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    private static class Worker extends ForkJoinWorkerThread {
+        Worker(ForkJoinPool pool) {
+            super(pool);
+            setName("badge-render-" + getPoolIndex());
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package org.kumoricon.service.print.formatter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Keeps badge resources (fonts, background PDFs, images) in memory after they are first read,
+ * so printing a badge doesn't read and decode them from disk again. Files are held as bytes,
+ * and images also as decoded BufferedImages; both can be shared between threads and documents.
+ *
+ * The directory of every cached file is watched for changes, and changed or deleted files are
+ * dropped from the cache and read again the next time they are used. If a directory can't be
+ * watched, its files are read from disk every time.
+ *
+ * Optional files that don't exist are remembered too, until they are created.
+ */
+public final class BadgeResourceCache {
+    private static final Logger log = LoggerFactory.getLogger(BadgeResourceCache.class);
+
+    private static final Map<Path, byte[]> files = new ConcurrentHashMap<>();
+    private static final Map<Path, BufferedImage> images = new ConcurrentHashMap<>();
+    private static final Set<Path> missing = ConcurrentHashMap.newKeySet();
+    private static final Set<Path> watchedDirectories = new HashSet<>();
+    // Incremented whenever a file changes, before it is dropped from the cache, so a read that
+    // raced with a change isn't cached
+    private static final AtomicLong generation = new AtomicLong();
+    private static WatchService watchService;
+
+    private BadgeResourceCache() {}
+
+    /**
+     * @param file Path to file
+     * @return File contents. Must not be modified
+     * @throws IOException Error reading file
+     */
+    static byte[] getBytes(Path file) throws IOException {
+        Path path = file.toAbsolutePath().normalize();
+        byte[] bytes = files.get(path);
+        if (bytes != null) { return bytes; }
+
+        long readGeneration = generation.get();
+        boolean watched = watch(path.getParent());
+        bytes = Files.readAllBytes(path);
+        if (watched) { put(files, path, bytes, readGeneration); }
+        return bytes;
+    }
+
+    /**
+     * @param file Path to image file
+     * @return Decoded image. Must not be modified
+     * @throws IOException Error reading or decoding file
+     */
+    static BufferedImage getImage(Path file) throws IOException {
+        Path path = file.toAbsolutePath().normalize();
+        BufferedImage image = images.get(path);
+        if (image != null) { return image; }
+
+        long readGeneration = generation.get();
+        boolean watched = watch(path.getParent());
+        image = ImageIO.read(new ByteArrayInputStream(getBytes(path)));
+        if (image == null) { throw new IOException("Unsupported image format: " + path); }
+        if (watched) { put(images, path, image, readGeneration); }
+        return image;
+    }
+
+    /**
+     * Like getImage(), for a file that may not exist
+     * @param file Path to image file
+     * @return Decoded image, or null if the file doesn't exist. Must not be modified
+     * @throws IOException Error reading or decoding file
+     */
+    public static BufferedImage getOptionalImage(Path file) throws IOException {
+        Path path = file.toAbsolutePath().normalize();
+        if (missing.contains(path)) { return null; }
+
+        long readGeneration = generation.get();
+        boolean watched = watch(path.getParent());
+        try {
+            return getImage(path);
+        } catch (NoSuchFileException ex) {
+            if (watched && readGeneration == generation.get()) {
+                missing.add(path);
+                // Created while we were looking for it
+                if (readGeneration != generation.get()) { missing.remove(path); }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Caches a value that was read when the generation was readGeneration. If a file changed
+     * after the read, the value is not cached, or is dropped again if the change was processed
+     * while it was being stored.
+     * @param cache Cache
+     * @param path Path the value was read from
+     * @param value Value
+     * @param readGeneration Generation before the value was read
+     * @param <T> Value type
+     * @return True if the value is cached
+     */
+    static <T> boolean put(Map<Path, T> cache, Path path, T value, long readGeneration) {
+        if (readGeneration != generation.get()) { return false; }
+        cache.put(path, value);
+        if (readGeneration != generation.get()) {
+            cache.remove(path, value);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Number that changes whenever a cached file changes, so documents drawn from these
+     * resources can be cached with it
+     */
+    public static long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Drops everything from the cache
+     */
+    static void clear() {
+        generation.incrementAndGet();
+        files.clear();
+        images.clear();
+        missing.clear();
+        TextWidths.clear();
+    }
+
+    /**
+     * Starts watching the directory if it isn't already watched
+     * @param directory Directory
+     * @return True if the directory is watched
+     */
+    private static synchronized boolean watch(Path directory) {
+        if (watchedDirectories.contains(directory)) { return true; }
+        try {
+            if (watchService == null) {
+                watchService = directory.getFileSystem().newWatchService();
+                Thread thread = new Thread(BadgeResourceCache::processEvents, "badge-resource-watcher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            watchedDirectories.add(directory);
+            log.info("Caching badge resources from {}", directory);
+            return true;
+        } catch (IOException ex) {
+            log.warn("Can't watch {} for changes, badge resources will be read from disk: {}", directory, ex.getMessage());
+            return false;
+        }
+    }
+
+    private static void processEvents() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        clear();
+                    } else {
+                        Path path = directory.resolve((Path) event.context());
+                        generation.incrementAndGet();
+                        files.remove(path);
+                        images.remove(path);
+                        missing.remove(path);
+                        if (path.toString().toLowerCase().endsWith(".ttf")) {
+                            // A replaced font may have the same name but different glyph widths
+                            TextWidths.clear();
+                        }
+                        log.info("Badge resource {} changed", path);
+                    }
+                }
+                if (!key.reset()) {
+                    // Directory was deleted; stop caching its files until it is watched again
+                    synchronized (BadgeResourceCache.class) {
+                        watchedDirectories.remove(directory);
+                    }
+                    generation.incrementAndGet();
+                    files.keySet().removeIf(path -> directory.equals(path.getParent()));
+                    images.keySet().removeIf(path -> directory.equals(path.getParent()));
+                    missing.removeIf(path -> directory.equals(path.getParent()));
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            log.info("Stopped watching badge resources");
+        }
+    }
+}
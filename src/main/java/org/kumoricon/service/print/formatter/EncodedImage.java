@@ -0,0 +1,89 @@
+package org.kumoricon.service.print.formatter;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * An image already compressed the way PDF stores it (8 bit RGB plus an optional 8 bit alpha mask,
+ * both Flate encoded), like LosslessFactory does. Encoding doesn't touch a PDDocument, so it can
+ * run on any thread; adding the result to a document is then just a copy.
+ */
+class EncodedImage {
+    private final int width;
+    private final int height;
+    private final byte[] rgb;
+    private final byte[] alpha;       // Null if the image is opaque
+
+    private EncodedImage(int width, int height, byte[] rgb, byte[] alpha) {
+        this.width = width;
+        this.height = height;
+        this.rgb = rgb;
+        this.alpha = alpha;
+    }
+
+    /**
+     * @param image Image
+     * @return Encoded image
+     */
+    static EncodedImage encode(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean hasAlpha = image.getColorModel().hasAlpha();
+        boolean opaque = true;
+        byte[] rgb = new byte[width * height * 3];
+        byte[] alpha = hasAlpha ? new byte[width * height] : null;
+        int[] row = new int[width];
+        int rgbIndex = 0;
+        int alphaIndex = 0;
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int pixel : row) {
+                rgb[rgbIndex++] = (byte) (pixel >> 16);
+                rgb[rgbIndex++] = (byte) (pixel >> 8);
+                rgb[rgbIndex++] = (byte) pixel;
+                if (hasAlpha) {
+                    alpha[alphaIndex++] = (byte) (pixel >>> 24);
+                    opaque &= (pixel >>> 24) == 0xFF;
+                }
+            }
+        }
+        return new EncodedImage(width, height, deflate(rgb), hasAlpha && !opaque ? deflate(alpha) : null);
+    }
+
+    /**
+     * Adds the image to a document
+     * @param document Document
+     * @return Image
+     * @throws IOException Error writing to the document
+     */
+    PDImageXObject toXObject(PDDocument document) throws IOException {
+        PDImageXObject image = new PDImageXObject(document, new ByteArrayInputStream(rgb),
+                COSName.FLATE_DECODE, width, height, 8, PDDeviceRGB.INSTANCE);
+        if (alpha != null) {
+            PDImageXObject mask = new PDImageXObject(document, new ByteArrayInputStream(alpha),
+                    COSName.FLATE_DECODE, width, height, 8, PDDeviceGray.INSTANCE);
+            image.getCOSObject().setItem(COSName.SMASK, mask);
+        }
+        return image;
+    }
+
+    private static byte[] deflate(byte[] data) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 4);
+        try (DeflaterOutputStream stream = new DeflaterOutputStream(output)) {
+            stream.write(data);
+        } catch (IOException ex) {
+            // ByteArrayOutputStream doesn't throw
+            throw new IllegalStateException(ex);
+        }
+        return output.toByteArray();
+    }
+}
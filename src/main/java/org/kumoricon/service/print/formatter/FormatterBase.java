@@ -25,7 +25,7 @@ class FormatterBase {
      */
     void drawStringWithResizing(PDPageContentStream stream, float x, float y, String text, ResizeOptions optOrig) throws IOException {
         ResizeOptions opt = new ResizeOptions(optOrig);
-        float textSize = opt.font.getStringWidth(text); // in thousandths of font pt size.
+        float textSize = TextWidths.getStringWidth(opt.font, text); // in thousandths of font pt size.
         float size = opt.size;
 
         // If text size is greater than maximum width, recalculate the correct font size, based on our restrictions
@@ -66,11 +66,11 @@ class FormatterBase {
         stream.fillRect(x, y, width, height);
 
         ResizeOptions opt = new ResizeOptions(optOrig);
-        float textSize = opt.font.getStringWidth(text); // in thousandths of font pt size.
+        float textSize = TextWidths.getStringWidth(opt.font, text); // in thousandths of font pt size.
         float size = opt.size;
 
         float centeredXPosition = x + (boundingBox.getWidth()/2f);
-        float stringWidth = opt.font.getStringWidth( text );
+        float stringWidth = TextWidths.getStringWidth(opt.font, text);
         float centeredYPosition = y + (boundingBox.getHeight() /2f);
 
         stream.setNonStrokingColor(Color.GREEN);
@@ -16,6 +16,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -41,13 +42,43 @@ public class FullBadgePrintFormatter implements BadgePrintFormatter {
      * @param yOffset Vertical offset in points (1/72 inch)
      */
     public FullBadgePrintFormatter(List<Attendee> attendees, Integer xOffset, Integer yOffset, LocalDate ageAsOfDate) {
-        PDDocument document = null;
         this.xOffset = (xOffset == null) ? 0 : xOffset;
         this.yOffset = (yOffset == null) ? 0 : yOffset;
+        try {
+            write(attendees, ageAsOfDate, os);
+        } catch (Exception e) {
+            log.error("Error creating staff badge", e);
+        }
+    }
+
+    /**
+     * Generates a PDF containing badges ready to be printed and writes it to the given stream
+     * instead of keeping it in memory; getStream() will return nothing.
+     * @param attendees Attendees to generate badges for
+     * @param xOffset Horizontal offset in points (1/72 inch)
+     * @param yOffset Vertical offset in points (1/72 inch)
+     * @param ageAsOfDate Date to calculate attendee ages on
+     * @param output Stream the PDF is written to. Not closed
+     * @throws RuntimeException Error generating the PDF; output may hold part of it
+     */
+    public FullBadgePrintFormatter(List<Attendee> attendees, Integer xOffset, Integer yOffset, LocalDate ageAsOfDate,
+                                   OutputStream output) {
+        this.xOffset = (xOffset == null) ? 0 : xOffset;
+        this.yOffset = (yOffset == null) ? 0 : yOffset;
+        try {
+            write(attendees, ageAsOfDate, output);
+        } catch (IOException e) {
+            log.error("Error creating staff badge", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void write(List<Attendee> attendees, LocalDate ageAsOfDate, OutputStream output) throws IOException {
+        PDDocument document = null;
         StaffBadge2017 sb = null;
         AttendeeBadge2017 ab = null;
         try {
-            document = new PDDocument();
+            document = BadgeLib.createDocument();
             sb = new StaffBadge2017(document, ageAsOfDate);
             ab = new AttendeeBadge2017(document, ageAsOfDate);
 
@@ -65,9 +96,7 @@ public class FullBadgePrintFormatter implements BadgePrintFormatter {
                 }
             }
 
-            document.save(os);
-        } catch (Exception e) {
-            log.error("Error creating staff badge", e);
+            document.save(output);
         } finally {
             if (document != null) {
                 try {
@@ -94,7 +123,7 @@ public class FullBadgePrintFormatter implements BadgePrintFormatter {
      */
     private void drawStringWithResizing(PDPageContentStream contentStream, float x, float y, String text, ResizeOptions optOrig) throws IOException {
         ResizeOptions opt = new ResizeOptions(optOrig);
-        float textSize = opt.font.getStringWidth(text); // in thousandths of font pt size.
+        float textSize = TextWidths.getStringWidth(opt.font, text); // in thousandths of font pt size.
         float size = opt.size;
 
         // If text size is greater than maximum width, recalculate the correct font size, based on our restrictions
@@ -169,7 +198,7 @@ public class FullBadgePrintFormatter implements BadgePrintFormatter {
         contentStream.setStrokingColor(Color.black);
         contentStream.moveTextPositionByAmount(438, 105);
         contentStream.appendRawCommands("2 Tr ");       // Set text rendering mode
-        Float ageRangeWidth = ((font.getStringWidth(stripeText) / 1000.0f) * 32);
+        Float ageRangeWidth = ((TextWidths.getStringWidth(font, stripeText) / 1000.0f) * 32);
         contentStream.moveTextPositionByAmount(-ageRangeWidth, 0);
         contentStream.drawString(stripeText);
         contentStream.endText();
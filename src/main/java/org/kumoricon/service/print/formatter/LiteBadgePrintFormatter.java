@@ -13,6 +13,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.List;
 
 
@@ -21,6 +22,7 @@ public class LiteBadgePrintFormatter implements BadgePrintFormatter {
 
     private final BadgeCreator badgeCreator = new BadgeCreatorLite2018();
     private static final Logger LOGGER = LoggerFactory.getLogger(LiteBadgePrintFormatter.class);
+    private static final int IMAGES_PER_THREAD = 8;
     private Integer xOffset = 0;
     private Integer yOffset = 0;
 
@@ -39,37 +41,56 @@ public class LiteBadgePrintFormatter implements BadgePrintFormatter {
      * @param yOffset Vertical offset in points (1/72 inch)
      */
     public LiteBadgePrintFormatter(List<Attendee> attendees, Integer xOffset, Integer yOffset) {
-        PDDocument document;
         this.xOffset = (xOffset == null) ? 0 : xOffset;
         this.yOffset = (yOffset == null) ? 0 : yOffset;
+        write(attendees, os);
+    }
 
-        try {
-            document = new PDDocument();
-            for (Attendee attendee : attendees) {
-                PDPage currentPage = generatePage(attendee, document);
-                document.addPage( currentPage );
-            }
+    /**
+     * Generates a PDF containing badges ready to be printed and writes it to the given stream
+     * instead of keeping it in memory; getStream() will return nothing.
+     * @param attendees Attendees to generate badges for
+     * @param xOffset Horizontal offset in points (1/72 inch)
+     * @param yOffset Vertical offset in points (1/72 inch)
+     * @param output Stream the PDF is written to. Not closed
+     */
+    public LiteBadgePrintFormatter(List<Attendee> attendees, Integer xOffset, Integer yOffset, OutputStream output) {
+        this.xOffset = (xOffset == null) ? 0 : xOffset;
+        this.yOffset = (yOffset == null) ? 0 : yOffset;
+        write(attendees, output);
+    }
 
-            document.save(os);
-            document.close();
+    private void write(List<Attendee> attendees, OutputStream output) {
+        try (PDDocument document = BadgeLib.createDocument()) {
+            // Badge images are drawn and compressed in parallel, a window at a time so that
+            // only part of a large pre-print job is held in memory. Pages are added in order.
+            int window = BadgeRenderPool.getParallelism() * IMAGES_PER_THREAD;
+            for (int i = 0; i < attendees.size(); i += window) {
+                List<AttendeeBadgeDTO> badges = new ArrayList<>();
+                for (Attendee attendee : attendees.subList(i, Math.min(i + window, attendees.size()))) {
+                    // Read the attendee on this thread; it may be attached to a Hibernate session
+                    badges.add(AttendeeBadgeDTO.fromAttendee(attendee));
+                }
+                List<EncodedImage> images = BadgeRenderPool.map(badges,
+                        badge -> badgeCreator.renderBadge(badge, EncodedImage::encode));
+                for (EncodedImage image : images) {
+                    document.addPage(generatePage(image, document));
+                }
+            }
 
+            document.save(output);
         } catch (IOException e) {
             LOGGER.error("Error creating badge", e);
             throw new RuntimeException(e);
         }
-
     }
 
 
-    private PDPage generatePage(Attendee attendee, PDDocument document) throws IOException {
+    private PDPage generatePage(EncodedImage badgeImage, PDDocument document) throws IOException {
         PDPage page = new PDPage(new PDRectangle(612f, 396f));
 
-        final AttendeeBadgeDTO badgeDTO = AttendeeBadgeDTO.fromAttendee(attendee);
-
-        byte[] badgeImage = badgeCreator.createBadge(badgeDTO);
-
         PDPageContentStream contentStream = new PDPageContentStream(document, page, PDPageContentStream.AppendMode.OVERWRITE, true, false);
-        PDImageXObject pdi = PDImageXObject.createFromByteArray(document, badgeImage, attendee.getId() + ".png");
+        PDImageXObject pdi = badgeImage.toXObject(document);
         contentStream.drawImage(pdi,126+xOffset,54+yOffset, 360, 288);
         contentStream.close();
 
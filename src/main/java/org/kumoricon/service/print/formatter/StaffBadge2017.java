@@ -1,20 +1,23 @@
 package org.kumoricon.service.print.formatter;
 
-import org.apache.pdfbox.cos.COSDictionary;
-import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.multipdf.LayerUtility;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.kumoricon.model.attendee.Attendee;
 
 import javax.imageio.IIOException;
 import java.awt.*;
+import java.awt.geom.AffineTransform;
 import java.io.*;
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class StaffBadge2017 extends FormatterBase  {
 
@@ -23,6 +26,11 @@ public class StaffBadge2017 extends FormatterBase  {
     private PDFont bankGothic;
     private static final boolean DRAW_BOUNDING_BOX = false;
     private LocalDate currentDateForAgeCalculation;
+    // Images shared by many badges are added to the document once
+    private final Map<String, PDImageXObject> sharedImages = new HashMap<>();
+    // So are the backgrounds, as Form XObjects that every badge page draws
+    private PageTemplate frontTemplate;
+    private PageTemplate backTemplate;
 
     StaffBadge2017(PDDocument document) {
         super(document);
@@ -43,13 +51,11 @@ public class StaffBadge2017 extends FormatterBase  {
 
 
     void addBadge(Attendee attendee, Integer xOffset, Integer yOffset) throws IOException {
-        PDPage templatePage = frontBackground.getDocumentCatalog().getPages().get(0);
-        COSDictionary pageDict = templatePage.getCOSObject();
-        COSDictionary newPageDict = new COSDictionary(pageDict);
-        newPageDict.removeItem(COSName.ANNOTS);
-        newPageDict.removeItem(COSName.ACTUAL_TEXT);
-
-        PDPage page = document.importPage(new PDPage(newPageDict));
+        if (frontTemplate == null) {
+            frontTemplate = new PageTemplate(document, frontBackground);
+            backTemplate = new PageTemplate(document, backBackground);
+        }
+        PDPage page = frontTemplate.addPage(document);
 
         // Positions are measured from the bottom left corner of the page at 72 DPI
         drawDepartmentBackgroundColorFront(page, attendee);
@@ -60,13 +66,7 @@ public class StaffBadge2017 extends FormatterBase  {
         drawAgeImageFront(page, attendee);
 
         // Badge back
-        PDPage templateBack = backBackground.getDocumentCatalog().getPages().get(0);
-        COSDictionary backPageDict = templateBack.getCOSObject();
-        COSDictionary newBackPageDict = new COSDictionary(backPageDict);
-        newBackPageDict.removeItem(COSName.ANNOTS);
-        newBackPageDict.removeItem(COSName.ACTUAL_TEXT);
-
-        PDPage pageBack = document.importPage(new PDPage(newBackPageDict));
+        PDPage pageBack = backTemplate.addPage(document);
         drawDepartmentBackgroundColorBack(pageBack, attendee);
         //drawDepartmentNameBack(pageBack, attendee);
         drawPositionsBack(pageBack, attendee);
@@ -81,7 +81,7 @@ public class StaffBadge2017 extends FormatterBase  {
 
         PDPageContentStream stream = new PDPageContentStream(document, page, PDPageContentStream.AppendMode.APPEND, true, false);
 
-        PDImageXObject xImage = PDImageXObject.createFromFile(imageFilename, document);
+        PDImageXObject xImage = getSharedImage(imageFilename);
         Dimension scaledDim = getScaledDimension(
                 new Dimension(xImage.getWidth(),  xImage.getHeight()),
                 new Dimension(149, 130));
@@ -98,7 +98,7 @@ public class StaffBadge2017 extends FormatterBase  {
 
         PDPageContentStream stream = new PDPageContentStream(document, page, PDPageContentStream.AppendMode.APPEND, true, DRAW_BOUNDING_BOX);
 
-        PDImageXObject xImage = PDImageXObject.createFromFile(imageFilename, document);
+        PDImageXObject xImage = getSharedImage(imageFilename);
         Dimension scaledDim = getScaledDimension(
                 new Dimension(xImage.getWidth(),  xImage.getHeight()),
                 new Dimension(149, 115));
@@ -227,13 +227,16 @@ public class StaffBadge2017 extends FormatterBase  {
 
     private void drawImage(PDPage page, Attendee attendee) throws IOException {
         String imageFilename = BadgeLib.getStaffImageFilename(attendee);
-        if (imageFilename == null) {
-            imageFilename = BadgeLib.getMascotImageFilename();
-        }
 
         PDImageXObject xImage;
         try (PDPageContentStream stream = new PDPageContentStream(document, page, PDPageContentStream.AppendMode.APPEND, true, false)) {
-            xImage = PDImageXObject.createFromFile(imageFilename, document);
+            if (imageFilename == null) {
+                imageFilename = BadgeLib.getMascotImageFilename();
+                xImage = getSharedImage(imageFilename);
+            } else {
+                // Each staff image is only used once, so it isn't cached
+                xImage = PDImageXObject.createFromFile(imageFilename, document);
+            }
             Dimension scaledDim = getScaledDimension(
                     new Dimension(xImage.getWidth(),  xImage.getHeight()),
                     new Dimension(149, 158));
@@ -248,6 +251,15 @@ public class StaffBadge2017 extends FormatterBase  {
         }
     }
 
+    private PDImageXObject getSharedImage(String filename) throws IOException {
+        PDImageXObject image = sharedImages.get(filename);
+        if (image == null) {
+            image = BadgeLib.loadImage(document, filename);
+            sharedImages.put(filename, image);
+        }
+        return image;
+    }
+
     private static Dimension getScaledDimension(Dimension imgSize, Dimension boundary) {
         int original_width = imgSize.width;
         int original_height = imgSize.height;
@@ -271,6 +283,41 @@ public class StaffBadge2017 extends FormatterBase  {
         return new Dimension(new_width, new_height);
     }
 
+    /**
+     * A background page, added to the document once as a Form XObject. Each badge page is a new
+     * empty page the same size as the background page that draws the form, instead of a copy of
+     * the background page with its own copy of the background's contents.
+     */
+    private static class PageTemplate {
+        private final PDFormXObject form;
+        private final PDRectangle mediaBox;
+        private final PDRectangle cropBox;
+        private final int rotation;
+
+        PageTemplate(PDDocument document, PDDocument background) throws IOException {
+            PDPage templatePage = background.getPage(0);
+            mediaBox = templatePage.getMediaBox();
+            cropBox = templatePage.getCropBox();
+            rotation = templatePage.getRotation();
+            form = new LayerUtility(document).importPageAsForm(background, templatePage);
+            // Badge pages keep the template page's boxes and rotation, so the form is drawn in
+            // the page's own coordinates rather than transformed for the rotation and crop box
+            form.setMatrix(new AffineTransform());
+            form.setBBox(mediaBox);
+        }
+
+        PDPage addPage(PDDocument document) throws IOException {
+            PDPage page = new PDPage(mediaBox);
+            page.setCropBox(cropBox);
+            page.setRotation(rotation);
+            document.addPage(page);
+            try (PDPageContentStream stream = new PDPageContentStream(document, page)) {
+                stream.drawForm(form);
+            }
+            return page;
+        }
+    }
+
     void closeTemplates() {
         if (frontBackground != null) {
             try {
@@ -0,0 +1,185 @@
+package org.kumoricon.service.print.formatter;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures text in PDF fonts from a table of glyph advances per font, instead of encoding the
+ * whole string on every call like PDFont.getStringWidth() does. The same text (badge types,
+ * age ranges, departments) is measured for every badge, and fonts are loaded again for every
+ * document, so tables are kept by font name and shared across documents.
+ *
+ * Latin-1 characters are looked up in an array, so measuring them doesn't allocate; up to
+ * MAX_OTHER_CHARACTERS other characters are kept per font. Font sizes that fit text in a box are
+ * also kept, for the most recent MAX_LINE_SIZES combinations of font, text and box.
+ * Safe to use from several threads.
+ */
+public final class TextWidths {
+    private static final int MAX_FONTS = 32;
+    private static final int MAX_OTHER_CHARACTERS = 1024;
+    private static final int MAX_LINE_SIZES = 4096;
+    private static final Map<String, Advances> fonts = new ConcurrentHashMap<>();
+    private static final Map<LineSizeKey, Integer> lineSizes = Collections.synchronizedMap(
+            new LinkedHashMap<LineSizeKey, Integer>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<LineSizeKey, Integer> eldest) {
+                    return size() > MAX_LINE_SIZES;
+                }
+            });
+
+    private TextWidths() {}
+
+    /**
+     * Same as PDFont.getStringWidth()
+     * @param font Font
+     * @param text Text
+     * @return Width in thousandths of the font size
+     * @throws IOException Error reading the font
+     * @throws IllegalArgumentException The font has no glyph for a character in the text
+     */
+    public static float getStringWidth(PDFont font, String text) throws IOException {
+        Advances advances = getAdvances(font);
+        if (advances == null) { return font.getStringWidth(text); }
+
+        float width = 0;
+        int i = 0;
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            width += advances.get(font, codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return width;
+    }
+
+    /**
+     * Calculates the largest font size (up to maxTextHeight) that fits the text on one line in
+     * maxTextWidth
+     * @param font Font
+     * @param text Text
+     * @param maxTextWidth Maximum width in points
+     * @param maxTextHeight Maximum height (font size) in points
+     * @return Font size
+     * @throws IOException Error reading the font
+     */
+    static int findMaxLineSize(PDFont font, String text, float maxTextWidth, float maxTextHeight) throws IOException {
+        String name = getKey(font);
+        if (name == null) { return calculateMaxLineSize(font, text, maxTextWidth, maxTextHeight); }
+
+        LineSizeKey key = new LineSizeKey(name, text, maxTextWidth, maxTextHeight);
+        Integer size = lineSizes.get(key);
+        if (size == null) {
+            size = calculateMaxLineSize(font, text, maxTextWidth, maxTextHeight);
+            lineSizes.put(key, size);
+        }
+        return size;
+    }
+
+    private static int calculateMaxLineSize(PDFont font, String text, float maxTextWidth, float maxTextHeight) throws IOException {
+        float textWidth = getStringWidth(font, text);
+        Float size = maxTextHeight;
+        if (textWidth * (size/1000.0f) > maxTextWidth) {
+            size = maxTextWidth * 1000.0f / textWidth;
+        }
+        return size.intValue();
+    }
+
+    /**
+     * Drops all glyph advances and font sizes, for instance after a font file is replaced
+     */
+    static void clear() {
+        fonts.clear();
+        lineSizes.clear();
+    }
+
+    /**
+     * @param font Font
+     * @return Name fonts are kept by, or null if the font has no name
+     */
+    private static String getKey(PDFont font) {
+        String name = font.getName();
+        // Subset fonts are named with a random tag when the document is saved, like ABCDEF+Name
+        if (name != null && name.length() > 7 && name.charAt(6) == '+') { name = name.substring(7); }
+        return name;
+    }
+
+    private static Advances getAdvances(PDFont font) {
+        String name = getKey(font);
+        if (name == null) { return null; }
+
+        Advances advances = fonts.get(name);
+        if (advances == null) {
+            if (fonts.size() >= MAX_FONTS) { return null; }
+            advances = fonts.computeIfAbsent(name, k -> new Advances());
+        }
+        return advances;
+    }
+
+    /**
+     * Glyph advances for one font, in thousandths of the font size. Filled in as characters are
+     * measured; two threads may measure the same character, which is harmless.
+     */
+    private static class Advances {
+        private final float[] latin = new float[256];
+        private final Map<Integer, Float> other = new ConcurrentHashMap<>();
+
+        Advances() {
+            Arrays.fill(latin, Float.NaN);
+        }
+
+        float get(PDFont font, int codePoint) throws IOException {
+            if (codePoint < latin.length) {
+                float advance = latin[codePoint];
+                if (Float.isNaN(advance)) {
+                    advance = measure(font, codePoint);
+                    latin[codePoint] = advance;
+                }
+                return advance;
+            }
+            Float advance = other.get(codePoint);
+            if (advance == null) {
+                advance = measure(font, codePoint);
+                if (other.size() < MAX_OTHER_CHARACTERS) { other.put(codePoint, advance); }
+            }
+            return advance;
+        }
+
+        private static float measure(PDFont font, int codePoint) throws IOException {
+            return font.getStringWidth(new String(Character.toChars(codePoint)));
+        }
+    }
+
+    private static class LineSizeKey {
+        private final String fontName;
+        private final String text;
+        private final float maxTextWidth;
+        private final float maxTextHeight;
+
+        LineSizeKey(String fontName, String text, float maxTextWidth, float maxTextHeight) {
+            this.fontName = fontName;
+            this.text = text;
+            this.maxTextWidth = maxTextWidth;
+            this.maxTextHeight = maxTextHeight;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof LineSizeKey)) return false;
+            LineSizeKey other = (LineSizeKey) o;
+            return maxTextWidth == other.maxTextWidth && maxTextHeight == other.maxTextHeight &&
+                    fontName.equals(other.fontName) && Objects.equals(text, other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fontName, text, maxTextWidth, maxTextHeight);
+        }
+    }
+}
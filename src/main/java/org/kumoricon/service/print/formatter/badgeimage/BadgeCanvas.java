@@ -0,0 +1,18 @@
+package org.kumoricon.service.print.formatter.badgeimage;
+
+import java.awt.*;
+
+/**
+ * Surface a badge layout is drawn on. Coordinates are in pixels from the top left corner of the
+ * badge, so the same layout can be drawn as an image (BadgeImage) or straight in to a PDF page
+ * (PdfBadgeCanvas).
+ */
+interface BadgeCanvas {
+    void fillRect(Rectangle rectangle, Color color);
+
+    void drawStretchedCenteredString(String text, Rectangle rect, Font font, Color color);
+
+    void drawStretchedLeftAlignedString(String text, Rectangle rect, Font font, Color color);
+
+    void drawVerticalCenteredString(String text, Rectangle rect, Font font, Color color);
+}
@@ -1,5 +1,13 @@
 package org.kumoricon.service.print.formatter.badgeimage;
 
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.function.Function;
+
 public interface BadgeCreator {
     /**
      * Creates a badge image from the given information and returns a byte array
@@ -8,4 +16,34 @@ public interface BadgeCreator {
      * @return PNG byte array
      */
     byte[] createBadge(AttendeeBadgeDTO attendee);
+
+    /**
+     * Creates a badge image from the given information without encoding it. Must be safe to
+     * call from several threads at once.
+     * @param attendee Attendee data
+     * @return Image
+     */
+    BufferedImage createBadgeImage(AttendeeBadgeDTO attendee);
+
+    /**
+     * Same as createBadgeImage(), but the image may be reused for later badges after the function
+     * returns, so it must not be kept. Must be safe to call from several threads at once.
+     * @param attendee Attendee data
+     * @param function Function to call with the image, such as encoding it
+     * @param <T> Result type
+     * @return Result of the function
+     */
+    <T> T renderBadge(AttendeeBadgeDTO attendee, Function<BufferedImage, T> function);
+
+    /**
+     * Draws the badge straight in to a PDF page as shapes and text, with the same layout as
+     * createBadgeImage(). Must only be called from the thread that owns the page's document.
+     * @param stream Page content stream
+     * @param font Font for all text, loaded in to the page's document
+     * @param area Area of the page the badge fills
+     * @param attendee Attendee data
+     * @throws IOException Error writing to the content stream
+     * @throws IllegalArgumentException The font can't draw a character in the attendee's text
+     */
+    void drawBadge(PDPageContentStream stream, PDFont font, PDRectangle area, AttendeeBadgeDTO attendee) throws IOException;
 }
@@ -1,13 +1,18 @@
 package org.kumoricon.service.print.formatter.badgeimage;
 
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.function.Function;
 
 public class BadgeCreatorLite2018 implements BadgeCreator {
     private static final int DPI = 150;
@@ -16,35 +21,57 @@ public class BadgeCreatorLite2018 implements BadgeCreator {
 
     @Override
     public byte[] createBadge(AttendeeBadgeDTO attendee) {
-        BadgeImage b = new BadgeImage(BADGE_WIDTH, BADGE_HEIGHT, DPI);
-
-        drawBadgeTypeStripe(b, attendee);
-        drawAgeColorStripe(b, attendee);
-        drawFanName(b, attendee);
-        drawName(b, attendee);
-        drawBadgeNumber(b, attendee);
-
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            ImageIO.write(b.getImage(), "png", baos);
+            ImageIO.write(createBadgeImage(attendee), "png", baos);
             return baos.toByteArray();
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         }
     }
 
+    @Override
+    public BufferedImage createBadgeImage(AttendeeBadgeDTO attendee) {
+        BadgeImage b = new BadgeImage(BADGE_WIDTH, BADGE_HEIGHT, DPI);
+        draw(b, attendee);
+        return b.getImage();
+    }
+
+    @Override
+    public <T> T renderBadge(AttendeeBadgeDTO attendee, Function<BufferedImage, T> function) {
+        BadgeImage b = BadgeImage.acquire(BADGE_WIDTH, BADGE_HEIGHT, DPI);
+        try {
+            draw(b, attendee);
+            return function.apply(b.getImage());
+        } finally {
+            b.release();
+        }
+    }
+
+    @Override
+    public void drawBadge(PDPageContentStream stream, PDFont font, PDRectangle area, AttendeeBadgeDTO attendee) throws IOException {
+        try {
+            draw(new PdfBadgeCanvas(stream, font, area, BADGE_WIDTH, BADGE_HEIGHT), attendee);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
     public void createBadge(AttendeeBadgeDTO attendee, String outputFile) {
 
         BadgeImage b = new BadgeImage(BADGE_WIDTH, BADGE_HEIGHT, DPI);
+        draw(b, attendee);
+        save(b.getImage(), outputFile);
+    }
 
+    private void draw(BadgeCanvas b, AttendeeBadgeDTO attendee) {
         drawBadgeTypeStripe(b, attendee);
         drawAgeColorStripe(b, attendee);
         drawFanName(b, attendee);
         drawName(b, attendee);
         drawBadgeNumber(b, attendee);
-        save(b.getImage(), outputFile);
     }
 
-    private static void drawAgeColorStripe(BadgeImage b, AttendeeBadgeDTO attendee) {
+    private static void drawAgeColorStripe(BadgeCanvas b, AttendeeBadgeDTO attendee) {
         Color bgColor = Color.decode(attendee.getAgeStripeBackgroundColor());
         Color fgColor = getForegroundColor(attendee.getAgeStripeBackgroundColor());
         Rectangle ageBackground = new Rectangle(71, 56, 95, 475);
@@ -55,7 +82,7 @@ public class BadgeCreatorLite2018 implements BadgeCreator {
 
     }
 
-    private void drawName(BadgeImage b, AttendeeBadgeDTO attendee) {
+    private void drawName(BadgeCanvas b, AttendeeBadgeDTO attendee) {
         // If Fan Name is null, draw the full name in that spot instead
         String fanName = attendee.getFanName();
         if (fanName != null) {
@@ -64,7 +91,7 @@ public class BadgeCreatorLite2018 implements BadgeCreator {
         }
     }
 
-    private static void drawFanName(BadgeImage b, AttendeeBadgeDTO attendee) {
+    private static void drawFanName(BadgeCanvas b, AttendeeBadgeDTO attendee) {
         String name;
         if (attendee.getFanName() != null && !attendee.getFanName().trim().equals("")) {
             name = attendee.getFanName();
@@ -76,7 +103,7 @@ public class BadgeCreatorLite2018 implements BadgeCreator {
         b.drawStretchedLeftAlignedString(name, fanNameBg, nameFont(),Color.BLACK);
     }
 
-    private static void drawBadgeTypeStripe(BadgeImage b, AttendeeBadgeDTO attendee) {
+    private static void drawBadgeTypeStripe(BadgeCanvas b, AttendeeBadgeDTO attendee) {
         if (attendee != null) {
             Color bgColor = Color.decode(attendee.getBadgeTypeBackgroundColor());
             Color fgColor = getForegroundColor(attendee.getBadgeTypeBackgroundColor());
@@ -87,7 +114,7 @@ public class BadgeCreatorLite2018 implements BadgeCreator {
         }
     }
 
-    private static void drawBadgeNumber(BadgeImage b, AttendeeBadgeDTO attendee) {
+    private static void drawBadgeNumber(BadgeCanvas b, AttendeeBadgeDTO attendee) {
         String badgeNumber = attendee.getBadgeNumber();
         Color fgColor = getForegroundColor(attendee.getAgeStripeBackgroundColor());
         if (badgeNumber.length() == 8) {
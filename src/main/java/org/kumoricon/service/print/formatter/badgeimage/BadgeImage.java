@@ -1,16 +1,39 @@
 package org.kumoricon.service.print.formatter.badgeimage;
 
-import javax.imageio.ImageIO;
+import org.kumoricon.service.print.formatter.BadgeResourceCache;
+
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Class for creating badge images in PNG format. Contains functions to do the drawing
  * and text placement, plus the image itself.
+ *
+ * The background (badgebackground.png) is decoded once and kept by BadgeResourceCache, and
+ * copied in to each image. Images can be reused with acquire() and release() instead of
+ * allocating a new image and graphics context for every badge.
  */
-public class BadgeImage {
+public class BadgeImage implements BadgeCanvas {
+    private static final Path BACKGROUND_FILE = Paths.get("badgebackground.png");
+    private static final int MAX_POOLED_IMAGES = Runtime.getRuntime().availableProcessors() * 2;
+    private static final Queue<BadgeImage> pool = new ConcurrentLinkedQueue<>();
+    private static final int MAX_PLACEMENTS = 4096;
+    private static final Map<PlacementKey, Placement> placements = Collections.synchronizedMap(
+            new LinkedHashMap<PlacementKey, Placement>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<PlacementKey, Placement> eldest) {
+                    return size() > MAX_PLACEMENTS;
+                }
+            });
     private final BufferedImage image;
     private final Graphics2D g2;
     private final int dpi;
@@ -22,17 +45,88 @@ public class BadgeImage {
      * @param dpi DPI
      */
     BadgeImage(int width, int height, int dpi) {
+        this(loadBackground(), width, height, dpi);
+    }
+
+    /**
+     * @param background Background image, or null for a transparent background. The image is
+     *                   the size of the background if there is one
+     */
+    private BadgeImage(BufferedImage background, int width, int height, int dpi) {
         this.dpi = dpi;
+        if (background != null) {
+            width = background.getWidth();
+            height = background.getHeight();
+        }
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        g2 = image.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        drawBackground(background);
+    }
 
-        BufferedImage background;
+    /**
+     * Gets an image from the pool, or creates one if none are free, with the background drawn on
+     * it. Pass it to release() when it isn't needed any more
+     * @param width Width in pixels
+     * @param height Height in pixels
+     * @param dpi DPI
+     * @return BadgeImage
+     */
+    static BadgeImage acquire(int width, int height, int dpi) {
+        BufferedImage background = loadBackground();
+        int imageWidth = background == null ? width : background.getWidth();
+        int imageHeight = background == null ? height : background.getHeight();
+
+        BadgeImage badgeImage;
+        while ((badgeImage = pool.poll()) != null) {
+            if (badgeImage.image.getWidth() == imageWidth && badgeImage.image.getHeight() == imageHeight &&
+                    badgeImage.dpi == dpi) {
+                badgeImage.drawBackground(background);
+                return badgeImage;
+            }
+            // The background was replaced with one of a different size
+            badgeImage.g2.dispose();
+        }
+        return new BadgeImage(background, width, height, dpi);
+    }
+
+    /**
+     * Returns an image from acquire() to the pool. Neither it nor getImage() may be used afterwards
+     */
+    void release() {
+        if (pool.size() < MAX_POOLED_IMAGES) {
+            pool.offer(this);
+        } else {
+            g2.dispose();
+        }
+    }
 
+    /**
+     * @return Background image, or null if there isn't one
+     */
+    private static BufferedImage loadBackground() {
         try {
-            background = ImageIO.read(new File("badgebackground.png"));
+            return BadgeResourceCache.getOptionalImage(BACKGROUND_FILE);
         } catch (IOException e) {
-            background = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            return null;
         }
-        image = background;
-        g2 = image.createGraphics();
+    }
+
+    /**
+     * Replaces every pixel of the image with the background, or with transparent pixels
+     * @param background Background image, or null
+     */
+    private void drawBackground(BufferedImage background) {
+        g2.setComposite(AlphaComposite.Src);
+        if (background != null) {
+            g2.drawImage(background, 0, 0, null);
+        } else {
+            g2.setColor(new Color(0, 0, 0, 0));
+            g2.fillRect(0, 0, image.getWidth(), image.getHeight());
+        }
+        g2.setComposite(AlphaComposite.SrcOver);
     }
 
     /**
@@ -42,10 +136,8 @@ public class BadgeImage {
      * @param font Text font
      * @param color Text color
      */
-    void drawStretchedCenteredString(String text, Rectangle rect, Font font, Color color) {
-        Rectangle paddedRect = getPaddedRect(rect);
-        final Font sizedFont = scaleFont(text, paddedRect, font);
-        drawCenteredString(text, paddedRect, sizedFont, color);
+    public void drawStretchedCenteredString(String text, Rectangle rect, Font font, Color color) {
+        drawPlacedString(text, place(text, rect, font, Alignment.CENTER), color);
     }
 
 
@@ -56,10 +148,8 @@ public class BadgeImage {
      * @param font Text font
      * @param color Text color
      */
-    void drawStretchedLeftAlignedString(String text, Rectangle rect, Font font, Color color) {
-        Rectangle paddedRect = getPaddedRect(rect);
-        final Font sizedFont = scaleFont(text, paddedRect, font);
-        drawLeftAlignedString(text, paddedRect, sizedFont, color);
+    public void drawStretchedLeftAlignedString(String text, Rectangle rect, Font font, Color color) {
+        drawPlacedString(text, place(text, rect, font, Alignment.LEFT), color);
     }
 
     /**
@@ -70,10 +160,43 @@ public class BadgeImage {
      * @param color Text color
      */
     void drawStretchedRightAlignedString(String text, Rectangle rect, Font font, Color color) {
-        Rectangle paddedRect = getPaddedRect(rect);
-        final Font sizedFont = scaleFont(text, paddedRect, font);
+        drawPlacedString(text, place(text, rect, font, Alignment.RIGHT), color);
+    }
 
-        drawRightAlignedString(text, paddedRect, sizedFont, color);
+    /**
+     * Finds the font size and position for stretched text, the same way scaleFont() and
+     * draw*AlignedString() do. The same text is drawn in the same place on many badges (badge
+     * types, age ranges), so results are kept and shared by all BadgeImages. All BadgeImages
+     * use the same rendering hints, so text measures the same in each of them.
+     */
+    private Placement place(String text, Rectangle rect, Font font, Alignment alignment) {
+        PlacementKey key = new PlacementKey(text, rect, font, alignment);
+        Placement placement = placements.get(key);
+        if (placement == null) {
+            Rectangle paddedRect = getPaddedRect(rect);
+            Font sizedFont = scaleFont(text, paddedRect, font);
+            FontMetrics metrics = g2.getFontMetrics(sizedFont);
+            int x;
+            if (alignment == Alignment.LEFT) {
+                x = paddedRect.x + 10;
+            } else if (alignment == Alignment.RIGHT) {
+                x = paddedRect.x + (paddedRect.width - metrics.stringWidth(text));
+            } else {
+                x = paddedRect.x + (paddedRect.width - metrics.stringWidth(text)) / 2;
+            }
+            // Determine the Y coordinate for the text (note we add the ascent, as in java 2d 0 is top of the screen)
+            int y = paddedRect.y + ((paddedRect.height - metrics.getHeight()) / 2) + metrics.getAscent();
+            placement = new Placement(sizedFont, x, y);
+            placements.put(key, placement);
+        }
+        return placement;
+    }
+
+    private void drawPlacedString(String text, Placement placement, Color color) {
+        g2.setFont(placement.font);
+        drawTextOutline(text, color, placement.x, placement.y);
+        g2.setColor(color);
+        g2.drawString(text, placement.x, placement.y);
     }
 
 
@@ -148,14 +271,14 @@ public class BadgeImage {
         return image;
     }
 
-    void fillRect(final Rectangle rectangle, final Color color) {
+    public void fillRect(final Rectangle rectangle, final Color color) {
         g2.setColor(color);
         g2.setBackground(color);
         g2.fillRect(rectangle.x, rectangle.y, rectangle.width, rectangle.height);
     }
 
 
-    private Rectangle getPaddedRect(Rectangle rect) {
+    static Rectangle getPaddedRect(Rectangle rect) {
         if (rect.getHeight() > 40 && rect.getWidth() > 40) {
             return new Rectangle(rect.x+10, rect.y+10, rect.width-20, rect.height-20);
         } else {
@@ -170,7 +293,7 @@ public class BadgeImage {
         }
     }
 
-    private static Color getInverseColor(Color background) {
+    static Color getInverseColor(Color background) {
         // Counting the perceptive luminance - human eye favors green color...
         double a = 1 - (0.299 * background.getRed() + 0.587 * background.getGreen() + 0.114 * background.getBlue()) / 255;
 
@@ -181,7 +304,7 @@ public class BadgeImage {
         }
     }
 
-    void drawVerticalCenteredString(String ageStripeText, Rectangle ageBackground, Font font, Color fgColor) {
+    public void drawVerticalCenteredString(String ageStripeText, Rectangle ageBackground, Font font, Color fgColor) {
         String text = ageStripeText.toUpperCase();
 
         int letterBoundingBoxHeight = ageBackground.height / ageStripeText.length();
@@ -194,4 +317,49 @@ public class BadgeImage {
             drawStretchedCenteredString(text.substring(i, i+1), letterBoundingBox, font, fgColor);
         }
     }
+
+    private enum Alignment { LEFT, CENTER, RIGHT }
+
+    private static class Placement {
+        private final Font font;
+        private final int x;
+        private final int y;
+
+        Placement(Font font, int x, int y) {
+            this.font = font;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private static class PlacementKey {
+        private final String text;
+        private final int x, y, width, height;
+        private final Font font;
+        private final Alignment alignment;
+
+        PlacementKey(String text, Rectangle rect, Font font, Alignment alignment) {
+            this.text = text;
+            this.x = rect.x;
+            this.y = rect.y;
+            this.width = rect.width;
+            this.height = rect.height;
+            this.font = font;
+            this.alignment = alignment;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PlacementKey)) return false;
+            PlacementKey other = (PlacementKey) o;
+            return x == other.x && y == other.y && width == other.width && height == other.height &&
+                    alignment == other.alignment && Objects.equals(text, other.text) && font.equals(other.font);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(text, x, y, width, height, font, alignment);
+        }
+    }
 }
@@ -0,0 +1,164 @@
+package org.kumoricon.service.print.formatter.badgeimage;
+
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
+import org.apache.pdfbox.util.Matrix;
+import org.kumoricon.service.print.formatter.TextWidths;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Draws a badge layout as PDF shapes and text instead of pixels. Text is sized and positioned the
+ * same way BadgeImage does it, using the metrics of the PDF font instead of the AWT font's, and
+ * pixel coordinates are scaled to fit the given area of the page.
+ *
+ * Methods throw UncheckedIOException if the content stream can't be written, and
+ * IllegalArgumentException if the font has no glyph for a character in the text.
+ */
+class PdfBadgeCanvas implements BadgeCanvas {
+    private static final int OUTLINE_OFFSET = 2;
+    private final PDPageContentStream stream;
+    private final PDFont pdFont;
+    private final PDRectangle area;
+    private final float scale;
+    private final float heightInPixels;
+    private final float ascent;          // Per 1000 units of font size
+    private final float lineHeight;      // Per 1000 units of font size
+
+    /**
+     * @param stream Page content stream
+     * @param font Font, loaded in to the page's document
+     * @param area Area of the page the badge fills
+     * @param width Badge width in pixels
+     * @param height Badge height in pixels
+     */
+    PdfBadgeCanvas(PDPageContentStream stream, PDFont font, PDRectangle area, int width, int height) {
+        this.stream = stream;
+        this.pdFont = font;
+        this.area = area;
+        this.scale = area.getWidth() / width;
+        this.heightInPixels = height;
+
+        PDFontDescriptor descriptor = font.getFontDescriptor();
+        float fontAscent = descriptor == null ? 0 : descriptor.getAscent();
+        float fontDescent = descriptor == null ? 0 : descriptor.getDescent();
+        if (fontAscent == 0) {
+            try {
+                fontAscent = font.getBoundingBox().getUpperRightY();
+                fontDescent = font.getBoundingBox().getLowerLeftY();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        this.ascent = fontAscent;
+        this.lineHeight = fontAscent - fontDescent + (descriptor == null ? 0 : descriptor.getLeading());
+    }
+
+    @Override
+    public void fillRect(Rectangle rectangle, Color color) {
+        try {
+            stream.setNonStrokingColor(color);
+            stream.addRect(x(rectangle.x), y(rectangle.y + rectangle.height),
+                    rectangle.width * scale, rectangle.height * scale);
+            stream.fill();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void drawStretchedCenteredString(String text, Rectangle rect, Font font, Color color) {
+        Rectangle paddedRect = BadgeImage.getPaddedRect(rect);
+        float size = scaleFont(text, paddedRect);
+        float x = paddedRect.x + (paddedRect.width - stringWidth(text, size)) / 2;
+        drawString(text, x, baseline(paddedRect, size), size, color);
+    }
+
+    @Override
+    public void drawStretchedLeftAlignedString(String text, Rectangle rect, Font font, Color color) {
+        Rectangle paddedRect = BadgeImage.getPaddedRect(rect);
+        float size = scaleFont(text, paddedRect);
+        drawString(text, paddedRect.x + 10, baseline(paddedRect, size), size, color);
+    }
+
+    @Override
+    public void drawVerticalCenteredString(String text, Rectangle rect, Font font, Color color) {
+        String upperCase = text.toUpperCase();
+        int letterBoundingBoxHeight = rect.height / text.length();
+
+        for (int i = 0; i < text.length(); i++) {
+            Rectangle letterBoundingBox = new Rectangle(rect.x,
+                    rect.y + (letterBoundingBoxHeight * i),
+                    rect.width,
+                    letterBoundingBoxHeight);
+            drawStretchedCenteredString(upperCase.substring(i, i+1), letterBoundingBox, font, color);
+        }
+    }
+
+    /**
+     * Same as BadgeImage.scaleFont(), with the PDF font's metrics
+     * @return Font size in pixels
+     */
+    private float scaleFont(String text, Rectangle rect) {
+        float fontSizeByWidth = 100.0f;
+        float fontSizeByHeight = 100.0f;
+        float width = stringWidth(text, fontSizeByWidth);
+        fontSizeByWidth = ((rect.width / width) * fontSizeByWidth) - 2;
+
+        float height = lineHeight * fontSizeByHeight / 1000;
+        fontSizeByHeight = (rect.height / height) * fontSizeByHeight;
+
+        return Math.min(fontSizeByHeight, fontSizeByWidth);
+    }
+
+    private float baseline(Rectangle rect, float size) {
+        return rect.y + (rect.height - lineHeight * size / 1000) / 2 + ascent * size / 1000;
+    }
+
+    private float stringWidth(String text, float size) {
+        try {
+            return TextWidths.getStringWidth(pdFont, text) * size / 1000;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Draws text with an outline in the inverse color, like BadgeImage.drawTextOutline()
+     * @param x Left edge in pixels
+     * @param y Baseline in pixels
+     * @param size Font size in pixels
+     */
+    private void drawString(String text, float x, float y, float size, Color color) {
+        try {
+            stream.beginText();
+            stream.setFont(pdFont, size * scale);
+            stream.setNonStrokingColor(BadgeImage.getInverseColor(color));
+            for (int dx = -OUTLINE_OFFSET; dx <= OUTLINE_OFFSET; dx += OUTLINE_OFFSET) {
+                for (int dy = -OUTLINE_OFFSET; dy <= OUTLINE_OFFSET; dy += OUTLINE_OFFSET) {
+                    if (dx == 0 && dy == 0) { continue; }
+                    stream.setTextMatrix(Matrix.getTranslateInstance(x(x + dx), y(y + dy)));
+                    stream.showText(text);
+                }
+            }
+            stream.setNonStrokingColor(color);
+            stream.setTextMatrix(Matrix.getTranslateInstance(x(x), y(y)));
+            stream.showText(text);
+            stream.endText();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private float x(float pixels) {
+        return area.getLowerLeftX() + pixels * scale;
+    }
+
+    private float y(float pixels) {
+        return area.getLowerLeftY() + (heightInPixels - pixels) * scale;
+    }
+}
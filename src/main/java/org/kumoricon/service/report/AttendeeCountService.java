@@ -0,0 +1,205 @@
+package org.kumoricon.service.report;
+
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.kumoricon.model.attendee.Attendee;
+import org.kumoricon.model.attendee.AttendeeCommitListener;
+import org.kumoricon.model.attendee.AttendeeRepository;
+import org.kumoricon.model.badge.Badge;
+import org.kumoricon.model.badge.BadgeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the Attendance report's check in counts from AttendeeCounters instead of querying the
+ * attendees table. Counters are loaded when the application starts and updated after every
+ * attendee insert, update or delete is committed.
+ *
+ * Every kumoreg.reports.counterCheckMinutes the counters are compared with the SQL queries in
+ * AttendeeRepository and reloaded if they differ. Until the counters are loaded, or after a change
+ * they couldn't apply, the SQL queries are used.
+ */
+@Service
+public class AttendeeCountService extends AttendeeCommitListener {
+    private final AttendeeRepository attendeeRepository;
+    private final BadgeRepository badgeRepository;
+    private final AttendeeCounters counters;
+    private ScheduledExecutorService executor;
+    private static final Logger log = LoggerFactory.getLogger(AttendeeCountService.class);
+
+    @Value("${kumoreg.reports.counterCheckMinutes:15}")
+    private int checkIntervalMinutes;
+
+    @Autowired
+    public AttendeeCountService(EntityManagerFactory entityManagerFactory, AttendeeRepository attendeeRepository,
+                                BadgeRepository badgeRepository, AttendeeCounters counters) {
+        super(entityManagerFactory);
+        this.attendeeRepository = attendeeRepository;
+        this.badgeRepository = badgeRepository;
+        this.counters = counters;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rebuildCounters();
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "attendee-count-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (checkIntervalMinutes > 0) {
+            executor.scheduleWithFixedDelay(this::checkConsistency,
+                    checkIntervalMinutes, checkIntervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reloads all counters from the database
+     */
+    public void rebuildCounters() {
+        long start = System.currentTimeMillis();
+        counters.rebuild(attendeeRepository::findAllCountFields);
+        log.info("Loaded attendance counters in {} ms", System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Compares the counters with the results of the SQL queries, and reloads them if they differ.
+     * A check in committed while this runs can cause a difference, which just means an extra reload.
+     * @return True if the counters matched
+     */
+    public synchronized boolean checkConsistency() {
+        try {
+            if (!counters.isReady()) {
+                rebuildCounters();
+                return false;
+            }
+            List<String> differences = new ArrayList<>();
+            Map<String, Object[]> fromCounters = new HashMap<>();
+            for (Object[] row : findBadgeCounts()) {
+                fromCounters.put(row[0].toString(), row);
+            }
+            for (Object[] row : attendeeRepository.findBadgeCounts()) {
+                Object[] counted = fromCounters.get(row[0].toString());
+                for (int i = 1; i < row.length; i++) {
+                    if (counted == null || ((Number) row[i]).intValue() != ((Number) counted[i]).intValue()) {
+                        differences.add(String.format("%s column %s", row[0], i));
+                    }
+                }
+            }
+            if (attendeeRepository.findWarmBodyCount() != counters.getWarmBodyCount()) {
+                differences.add("warm body count");
+            }
+            if (attendeeRepository.findTotalAttendeeCount() != counters.getTotalAttendeeCount()) {
+                differences.add("total attendee count");
+            }
+
+            if (differences.isEmpty()) { return true; }
+            log.warn("Attendance counters didn't match database ({}), reloading", String.join(", ", differences));
+            rebuildCounters();
+            return false;
+        } catch (RuntimeException ex) {
+            log.error("Error checking attendance counters", ex);
+            return false;
+        }
+    }
+
+    /**
+     * Same as AttendeeRepository.findBadgeCounts()
+     * @return Rows of badge name, at-con checked in, at-con not checked in, pre-reg checked in,
+     * pre-reg not checked in
+     */
+    public List<Object[]> findBadgeCounts() {
+        if (!counters.isReady()) { return attendeeRepository.findBadgeCounts(); }
+        List<Object[]> rows = new ArrayList<>();
+        for (Badge badge : badgeRepository.findAll(new Sort("id"))) {
+            int[] counts = counters.getBadgeCounts(badge.getId());
+            rows.add(new Object[] {badge.getName(), counts[0], counts[1], counts[2], counts[3]});
+        }
+        return rows;
+    }
+
+    /**
+     * Same as AttendeeRepository.findWarmBodyCount()
+     * @return Number of distinct people who have checked in
+     */
+    public Integer findWarmBodyCount() {
+        if (!counters.isReady()) { return attendeeRepository.findWarmBodyCount(); }
+        return counters.getWarmBodyCount();
+    }
+
+    /**
+     * Same as AttendeeRepository.findTotalAttendeeCount()
+     * @return Number of distinct people who have checked in with a paid badge
+     */
+    public Integer findTotalAttendeeCount() {
+        if (!counters.isReady()) { return attendeeRepository.findTotalAttendeeCount(); }
+        return counters.getTotalAttendeeCount();
+    }
+
+    @Override
+    protected void attendeeInserted(PostInsertEvent event) {
+        counters.add(AttendeeCounters.Entry.fromAttendee((Attendee) event.getEntity()));
+    }
+
+    @Override
+    protected void attendeeUpdated(PostUpdateEvent event) {
+        if (event.getOldState() == null) {
+            // Previous values unknown, so counts can't be adjusted. Reload in the background.
+            counters.invalidate();
+            if (executor != null) { executor.execute(this::checkConsistency); }
+            return;
+        }
+        counters.replace(toEntry(event.getPersister(), event.getOldState()),
+                AttendeeCounters.Entry.fromAttendee((Attendee) event.getEntity()));
+    }
+
+    @Override
+    protected void attendeeDeleted(PostDeleteEvent event) {
+        counters.remove(toEntry(event.getPersister(), event.getDeletedState()));
+    }
+
+    @Override
+    public void attendeeInsertedInBulk(Attendee attendee) {
+        counters.add(AttendeeCounters.Entry.fromAttendee(attendee));
+    }
+
+    @Override
+    public void attendeeDeletedInBulk(Attendee attendee) {
+        counters.remove(AttendeeCounters.Entry.fromAttendee(attendee));
+    }
+
+    private static AttendeeCounters.Entry toEntry(EntityPersister persister, Object[] state) {
+        Badge badge = (Badge) getProperty(persister, state, "badge");
+        return AttendeeCounters.Entry.fromRow(new Object[] {
+                badge == null ? null : badge.getId(),
+                getProperty(persister, state, "checkedIn"),
+                getProperty(persister, state, "preRegistered"),
+                getProperty(persister, state, "firstName"),
+                getProperty(persister, state, "lastName"),
+                getProperty(persister, state, "zip"),
+                getProperty(persister, state, "birthDate"),
+                getProperty(persister, state, "paidAmount")});
+    }
+}
@@ -0,0 +1,211 @@
+package org.kumoricon.service.report;
+
+import org.kumoricon.model.attendee.Attendee;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory check in counts for the Attendance report, so that it doesn't have to scan the
+ * attendees table every time it is refreshed. Holds counts by badge type, pre-registered and
+ * checked in, plus the number of distinct people who have checked in (warm body count) and
+ * distinct people who checked in with a paid badge (total attendance). Every update and read
+ * is O(1).
+ *
+ * People are matched the same way as the SQL in AttendeeRepository.findWarmBodyCount():
+ * first name, last name, zip and birth date, with text compared ignoring case, accents and
+ * trailing spaces like MySQL's default collation does.
+ *
+ * Counts are only correct while they are fed every committed change; see AttendeeCountService.
+ */
+@Component
+public class AttendeeCounters {
+    private static final int AT_CON_CHECKED_IN = 0;
+    private static final int AT_CON_NOT_CHECKED_IN = 1;
+    private static final int PRE_REG_CHECKED_IN = 2;
+    private static final int PRE_REG_NOT_CHECKED_IN = 3;
+
+    private Map<Integer, int[]> badgeCounts = new HashMap<>();
+    // Person -> {number of checked in attendees, number of checked in attendees who paid}
+    private Map<List<Object>, int[]> people = new HashMap<>();
+    private int warmBodyCount = 0;
+    private int totalAttendeeCount = 0;
+    private boolean ready = false;
+
+    /**
+     * @return True if counts have been loaded and no change has been missed since
+     */
+    public synchronized boolean isReady() { return ready; }
+
+    /**
+     * Marks the counts as unusable until the next rebuild, for example after a change whose
+     * previous values aren't known
+     */
+    public synchronized void invalidate() { ready = false; }
+
+    /**
+     * Replaces all counts.
+     * @param loader Returns one row per attendee in the format described by Entry.fromRow()
+     */
+    public void rebuild(Supplier<List<Object[]>> loader) {
+        AttendeeCounters fresh = new AttendeeCounters();
+        for (Object[] row : loader.get()) {
+            fresh.add(Entry.fromRow(row));
+        }
+        synchronized (this) {
+            badgeCounts = fresh.badgeCounts;
+            people = fresh.people;
+            warmBodyCount = fresh.warmBodyCount;
+            totalAttendeeCount = fresh.totalAttendeeCount;
+            ready = true;
+        }
+    }
+
+    /**
+     * Counts a new attendee
+     * @param entry Attendee values
+     */
+    public synchronized void add(Entry entry) {
+        update(entry, 1);
+    }
+
+    /**
+     * Removes a deleted attendee from the counts
+     * @param entry Attendee values as they were stored before the attendee was deleted
+     */
+    public synchronized void remove(Entry entry) {
+        update(entry, -1);
+    }
+
+    /**
+     * Moves a changed attendee from one set of counts to another
+     * @param before Attendee values before the change
+     * @param after Attendee values after the change
+     */
+    public synchronized void replace(Entry before, Entry after) {
+        if (before.equals(after)) { return; }
+        update(before, -1);
+        update(after, 1);
+    }
+
+    /**
+     * @param badgeId Badge ID
+     * @return Counts for the badge: at-con checked in, at-con not checked in, pre-reg checked in,
+     * pre-reg not checked in
+     */
+    public synchronized int[] getBadgeCounts(Integer badgeId) {
+        int[] counts = badgeCounts.get(badgeId);
+        return counts == null ? new int[4] : counts.clone();
+    }
+
+    /**
+     * @return Number of distinct people who have checked in
+     */
+    public synchronized int getWarmBodyCount() { return warmBodyCount; }
+
+    /**
+     * @return Number of distinct people who have checked in with a paid amount over zero
+     */
+    public synchronized int getTotalAttendeeCount() { return totalAttendeeCount; }
+
+    private void update(Entry entry, int delta) {
+        if (entry.badgeId != null && entry.checkedIn != null) {
+            int column;
+            if (entry.preRegistered) {
+                column = entry.checkedIn ? PRE_REG_CHECKED_IN : PRE_REG_NOT_CHECKED_IN;
+            } else {
+                column = entry.checkedIn ? AT_CON_CHECKED_IN : AT_CON_NOT_CHECKED_IN;
+            }
+            badgeCounts.computeIfAbsent(entry.badgeId, k -> new int[4])[column] += delta;
+        }
+
+        if (Boolean.TRUE.equals(entry.checkedIn)) {
+            int[] counts = people.computeIfAbsent(entry.person, k -> new int[2]);
+            warmBodyCount += distinctChange(counts[0], counts[0] + delta);
+            counts[0] += delta;
+            if (entry.paid) {
+                totalAttendeeCount += distinctChange(counts[1], counts[1] + delta);
+                counts[1] += delta;
+            }
+            if (counts[0] <= 0) {
+                people.remove(entry.person);
+            }
+        }
+    }
+
+    private static int distinctChange(int before, int after) {
+        if (before <= 0 && after > 0) { return 1; }
+        if (before > 0 && after <= 0) { return -1; }
+        return 0;
+    }
+
+    /**
+     * The attendee values that the counts depend on
+     */
+    public static class Entry {
+        private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+        private final Integer badgeId;
+        private final Boolean checkedIn;
+        private final boolean preRegistered;
+        private final boolean paid;
+        private final List<Object> person;
+
+        Entry(Integer badgeId, Boolean checkedIn, Boolean preRegistered, String firstName, String lastName,
+              String zip, LocalDate birthDate, BigDecimal paidAmount) {
+            this.badgeId = badgeId;
+            this.checkedIn = checkedIn;
+            this.preRegistered = Boolean.TRUE.equals(preRegistered);
+            this.paid = paidAmount != null && paidAmount.compareTo(BigDecimal.ZERO) > 0;
+            this.person = Arrays.asList(normalize(firstName), normalize(lastName), normalize(zip), birthDate);
+        }
+
+        /**
+         * @param attendee Attendee
+         * @return Entry with the attendee's current values
+         */
+        public static Entry fromAttendee(Attendee attendee) {
+            return new Entry(attendee.getBadge() == null ? null : attendee.getBadge().getId(),
+                    attendee.getCheckedIn(), attendee.isPreRegistered(), attendee.getFirstName(),
+                    attendee.getLastName(), attendee.getZip(), attendee.getBirthDate(), attendee.getPaidAmount());
+        }
+
+        /**
+         * @param row badge id, checked in, pre-registered, first name, last name, zip, birth date,
+         *            paid amount
+         * @return Entry
+         */
+        public static Entry fromRow(Object[] row) {
+            return new Entry((Integer) row[0], (Boolean) row[1], (Boolean) row[2], (String) row[3],
+                    (String) row[4], (String) row[5], (LocalDate) row[6], (BigDecimal) row[7]);
+        }
+
+        private static String normalize(String value) {
+            if (value == null) { return null; }
+            int end = value.length();
+            while (end > 0 && value.charAt(end - 1) == ' ') { end--; }
+            // Decompose accented letters and drop the accents, so "Zoë" matches "Zoe" as it does in the database
+            String folded = Normalizer.normalize(value.substring(0, end), Normalizer.Form.NFD);
+            return COMBINING_MARKS.matcher(folded).replaceAll("").toLowerCase(Locale.ROOT);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Entry)) return false;
+            Entry entry = (Entry) o;
+            return preRegistered == entry.preRegistered && paid == entry.paid &&
+                    Objects.equals(badgeId, entry.badgeId) && Objects.equals(checkedIn, entry.checkedIn) &&
+                    person.equals(entry.person);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(badgeId, checkedIn, preRegistered, paid, person);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.kumoricon.service.report;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Date, hour and pre-registered flag that a checked in attendee is counted under in the
+ * checkincounts table. Uses the server's time zone, the same as DATE()/HOUR() on the
+ * check_in_time column.
+ */
+class CheckInBucket {
+    private final LocalDate date;
+    private final int hour;
+    private final boolean preRegistered;
+
+    private CheckInBucket(LocalDate date, int hour, boolean preRegistered) {
+        this.date = date;
+        this.hour = hour;
+        this.preRegistered = preRegistered;
+    }
+
+    /**
+     * @param checkedIn Attendee checked in
+     * @param checkInTime Attendee check in time
+     * @param preRegistered Attendee pre-registered
+     * @return Bucket the attendee is counted in, or null if they aren't counted
+     */
+    static CheckInBucket of(Boolean checkedIn, Date checkInTime, Boolean preRegistered) {
+        if (!Boolean.TRUE.equals(checkedIn) || checkInTime == null) { return null; }
+        LocalDateTime time = LocalDateTime.ofInstant(checkInTime.toInstant(), ZoneId.systemDefault());
+        return new CheckInBucket(time.toLocalDate(), time.getHour(), Boolean.TRUE.equals(preRegistered));
+    }
+
+    LocalDate getDate() { return date; }
+    int getHour() { return hour; }
+    boolean isPreRegistered() { return preRegistered; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CheckInBucket)) return false;
+        CheckInBucket that = (CheckInBucket) o;
+        return hour == that.hour && preRegistered == that.preRegistered && date.equals(that.date);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(date, hour, preRegistered);
+    }
+}
@@ -0,0 +1,72 @@
+package org.kumoricon.service.report;
+
+import org.kumoricon.model.attendee.AttendeeRepository;
+import org.kumoricon.model.attendee.CheckInCount;
+import org.kumoricon.model.attendee.CheckInCountRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rebuilds the checkincounts table from attendee records. Normally the table is updated as
+ * attendees check in (see CheckInCountUpdater); this fills it for attendees checked in before
+ * it existed, or repairs it after attendees were changed outside of the application.
+ */
+@Service
+public class CheckInCountService {
+    private final AttendeeRepository attendeeRepository;
+    private final CheckInCountRepository checkInCountRepository;
+    private static final Logger log = LoggerFactory.getLogger(CheckInCountService.class);
+
+    @Autowired
+    public CheckInCountService(AttendeeRepository attendeeRepository, CheckInCountRepository checkInCountRepository) {
+        this.attendeeRepository = attendeeRepository;
+        this.checkInCountRepository = checkInCountRepository;
+    }
+
+    /**
+     * @return True if the checkincounts table is empty but attendees have checked in
+     */
+    public boolean needsBackfill() {
+        return checkInCountRepository.count() == 0 && attendeeRepository.countByCheckedInTrue() > 0;
+    }
+
+    /**
+     * Replaces every row in the checkincounts table with totals calculated from attendees.
+     * The table is locked first, so check ins saved during the rebuild wait for it and are
+     * then added to the new rows instead of being lost or counted twice.
+     * @return Number of checked in attendees counted
+     */
+    @Transactional
+    public int backfill() {
+        long start = System.currentTimeMillis();
+        checkInCountRepository.findAllForUpdate();
+
+        Map<CheckInBucket, CheckInCount> counts = new LinkedHashMap<>();
+        int attendees = 0;
+        for (Object[] row : attendeeRepository.findAllCheckInFields()) {
+            CheckInBucket bucket = CheckInBucket.of(true, (Date) row[0], (Boolean) row[1]);
+            if (bucket == null) { continue; }
+            CheckInCount count = counts.computeIfAbsent(bucket, b ->
+                    new CheckInCount(b.getDate(), b.getHour(), b.isPreRegistered(), 0, BigDecimal.ZERO));
+            count.setAttendeeCount(count.getAttendeeCount() + 1);
+            if (row[2] != null) {
+                count.setRevenue(count.getRevenue().add((BigDecimal) row[2]));
+            }
+            attendees++;
+        }
+
+        checkInCountRepository.deleteAllInBatch();
+        checkInCountRepository.save(counts.values());
+        log.info("Rebuilt check in counts from {} attendees in {} ms", attendees, System.currentTimeMillis() - start);
+        return attendees;
+    }
+}
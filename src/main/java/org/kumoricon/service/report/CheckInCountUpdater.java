@@ -0,0 +1,144 @@
+package org.kumoricon.service.report;
+
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.kumoricon.model.attendee.Attendee;
+import org.kumoricon.model.attendee.AttendeeCommitListener;
+import org.kumoricon.model.attendee.CheckInCountRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Keeps the checkincounts table up to date. Runs while Hibernate flushes an attendee insert,
+ * update or delete and adjusts the matching hourly row on the same connection, so the count
+ * is committed or rolled back together with the check in. Attendees inserted or deleted without
+ * Hibernate are counted in a separate statement when the caller reports them. Also fills the
+ * table when the application starts if it is empty but attendees have already checked in.
+ */
+@Component
+public class CheckInCountUpdater extends AttendeeCommitListener {
+    private final transient CheckInCountService checkInCountService;
+    private final transient DataSource dataSource;
+    private static final Logger log = LoggerFactory.getLogger(CheckInCountUpdater.class);
+
+    @Autowired
+    public CheckInCountUpdater(EntityManagerFactory entityManagerFactory, CheckInCountService checkInCountService,
+                               DataSource dataSource) {
+        super(entityManagerFactory, false);
+        this.checkInCountService = checkInCountService;
+        this.dataSource = dataSource;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (checkInCountService.needsBackfill()) {
+            log.info("Check in counts table is empty, filling it from attendees");
+            checkInCountService.backfill();
+        }
+    }
+
+    @Override
+    protected void attendeeInserted(PostInsertEvent event) {
+        Attendee attendee = (Attendee) event.getEntity();
+        adjust(event.getSession(), bucketFor(attendee), 1, attendee.getPaidAmount());
+    }
+
+    @Override
+    protected void attendeeUpdated(PostUpdateEvent event) {
+        if (event.getOldState() == null) {
+            log.warn("Previous values for {} not known, check in counts may need to be rebuilt", event.getEntity());
+            return;
+        }
+        EntityPersister persister = event.getPersister();
+        CheckInBucket before = bucketFor(persister, event.getOldState());
+        CheckInBucket after = bucketFor(persister, event.getState());
+        BigDecimal paidBefore = (BigDecimal) getProperty(persister, event.getOldState(), "paidAmount");
+        BigDecimal paidAfter = (BigDecimal) getProperty(persister, event.getState(), "paidAmount");
+        if (before == null && after == null) { return; }
+        if (before != null && before.equals(after) && amount(paidBefore).compareTo(amount(paidAfter)) == 0) {
+            return;
+        }
+        adjust(event.getSession(), before, -1, paidBefore);
+        adjust(event.getSession(), after, 1, paidAfter);
+    }
+
+    @Override
+    protected void attendeeDeleted(PostDeleteEvent event) {
+        EntityPersister persister = event.getPersister();
+        adjust(event.getSession(), bucketFor(persister, event.getDeletedState()), -1,
+                (BigDecimal) getProperty(persister, event.getDeletedState(), "paidAmount"));
+    }
+
+    @Override
+    public void attendeeInsertedInBulk(Attendee attendee) {
+        adjust(bucketFor(attendee), 1, attendee.getPaidAmount());
+    }
+
+    @Override
+    public void attendeeDeletedInBulk(Attendee attendee) {
+        adjust(bucketFor(attendee), -1, attendee.getPaidAmount());
+    }
+
+    private static void adjust(EventSource session, CheckInBucket bucket, int count, BigDecimal paidAmount) {
+        if (bucket == null) { return; }
+        session.doWork(connection -> upsert(connection, bucket, count, paidAmount));
+    }
+
+    /**
+     * Adjusts the counts in a transaction of its own, for changes that were already committed
+     */
+    private void adjust(CheckInBucket bucket, int count, BigDecimal paidAmount) {
+        if (bucket == null) { return; }
+        try (Connection connection = dataSource.getConnection()) {
+            upsert(connection, bucket, count, paidAmount);
+        } catch (SQLException ex) {
+            log.error("Error updating check in counts, they may need to be rebuilt", ex);
+        }
+    }
+
+    private static void upsert(Connection connection, CheckInBucket bucket, int count, BigDecimal paidAmount)
+            throws SQLException {
+        BigDecimal revenue = count < 0 ? amount(paidAmount).negate() : amount(paidAmount);
+        try (PreparedStatement statement = connection.prepareStatement(CheckInCountRepository.UPSERT)) {
+            statement.setString(1, UUID.randomUUID().toString());
+            statement.setDate(2, java.sql.Date.valueOf(bucket.getDate()));
+            statement.setInt(3, bucket.getHour());
+            statement.setBoolean(4, bucket.isPreRegistered());
+            statement.setInt(5, count);
+            statement.setBigDecimal(6, revenue);
+            statement.setInt(7, count);
+            statement.setBigDecimal(8, revenue);
+            statement.executeUpdate();
+        }
+    }
+
+    private static CheckInBucket bucketFor(Attendee attendee) {
+        return CheckInBucket.of(attendee.getCheckedIn(), attendee.getCheckInTime(), attendee.isPreRegistered());
+    }
+
+    private static CheckInBucket bucketFor(EntityPersister persister, Object[] state) {
+        return CheckInBucket.of((Boolean) getProperty(persister, state, "checkedIn"),
+                (Date) getProperty(persister, state, "checkInTime"),
+                (Boolean) getProperty(persister, state, "preRegistered"));
+    }
+
+    private static BigDecimal amount(BigDecimal paidAmount) {
+        return paidAmount == null ? BigDecimal.ZERO : paidAmount;
+    }
+}
@@ -0,0 +1,136 @@
+package org.kumoricon.service.report;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts check ins per user over a sliding window (kumoreg.reports.checkInWindowMinutes, default
+ * 15) for the Check Ins by User report, without querying attendee history.
+ *
+ * Each user has a ring of BUCKETS time slots covering the window. A slot holds the slot number
+ * (time / slot length) and its count packed in to one long, so recording a check in is a
+ * compare-and-set on one array element and never blocks. Slots left over from an earlier lap
+ * of the ring are ignored when counting and reset by the next check in that lands on them.
+ * Counts are accurate to one slot (window / 60).
+ *
+ * Also published as actuator metrics under kumoreg.checkins: totals and the busiest user's count,
+ * rather than a metric per user, so the number of metric names doesn't grow with users.
+ */
+@Component
+public class CheckInTracker implements PublicMetrics {
+    static final int BUCKETS = 60;
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final int windowMinutes;
+    private final long bucketMillis;
+    private final ConcurrentMap<Integer, UserCheckIns> users = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CheckInTracker(@Value("${kumoreg.reports.checkInWindowMinutes:15}") int windowMinutes) {
+        if (windowMinutes < 1) { throw new IllegalArgumentException("Check in window must be at least 1 minute"); }
+        this.windowMinutes = windowMinutes;
+        this.bucketMillis = Math.max(windowMinutes * 60_000L / BUCKETS, 1);
+    }
+
+    /**
+     * @return Window length in minutes
+     */
+    public int getWindowMinutes() { return windowMinutes; }
+
+    /**
+     * Records a check in
+     * @param userId ID of the user who checked the attendee in
+     * @param username Username
+     * @param firstName User's first name
+     * @param lastName User's last name
+     * @param timestamp Check in time in milliseconds since the epoch
+     */
+    public void record(Integer userId, String username, String firstName, String lastName, long timestamp) {
+        UserCheckIns checkIns = users.computeIfAbsent(userId, id -> new UserCheckIns());
+        checkIns.username = username;
+        checkIns.firstName = firstName;
+        checkIns.lastName = lastName;
+        checkIns.add(timestamp / bucketMillis);
+    }
+
+    /**
+     * @return Rows of first name, last name and number of check ins in the window, for users with
+     * at least one, ordered by user ID
+     */
+    public List<Object[]> countsByUser() {
+        return countsByUser(System.currentTimeMillis());
+    }
+
+    List<Object[]> countsByUser(long now) {
+        long currentBucket = now / bucketMillis;
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<Integer, UserCheckIns> entry : new TreeMap<>(users).entrySet()) {
+            int count = entry.getValue().count(currentBucket);
+            if (count > 0) {
+                rows.add(new Object[] {entry.getValue().firstName, entry.getValue().lastName, count});
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        long currentBucket = System.currentTimeMillis() / bucketMillis;
+        List<Metric<?>> metrics = new ArrayList<>();
+        int total = 0;
+        int activeUsers = 0;
+        int max = 0;
+        for (UserCheckIns checkIns : users.values()) {
+            int count = checkIns.count(currentBucket);
+            if (count > 0) {
+                total += count;
+                activeUsers++;
+                max = Math.max(max, count);
+            }
+        }
+        metrics.add(new Metric<>("kumoreg.checkins.window.total", total));
+        metrics.add(new Metric<>("kumoreg.checkins.window.users", activeUsers));
+        metrics.add(new Metric<>("kumoreg.checkins.window.maxPerUser", max));
+        metrics.add(new Metric<>("kumoreg.checkins.window.minutes", windowMinutes));
+        return metrics;
+    }
+
+    private static class UserCheckIns {
+        private final AtomicLongArray slots = new AtomicLongArray(BUCKETS);
+        private volatile String username;
+        private volatile String firstName;
+        private volatile String lastName;
+
+        void add(long bucket) {
+            int index = (int) (bucket % BUCKETS);
+            while (true) {
+                long slot = slots.get(index);
+                long slotBucket = slot >>> COUNT_BITS;
+                if (slotBucket > bucket) { return; }    // Older than the window, slot already reused
+                long next = slotBucket == bucket ? slot + 1 : (bucket << COUNT_BITS) | 1;
+                if (slots.compareAndSet(index, slot, next)) { return; }
+            }
+        }
+
+        int count(long currentBucket) {
+            int count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                long slot = slots.get(i);
+                long slotBucket = slot >>> COUNT_BITS;
+                if (slotBucket > currentBucket - BUCKETS && slotBucket <= currentBucket) {
+                    count += (int) (slot & COUNT_MASK);
+                }
+            }
+            return count;
+        }
+    }
+}
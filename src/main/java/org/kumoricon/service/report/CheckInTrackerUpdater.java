@@ -0,0 +1,78 @@
+package org.kumoricon.service.report;
+
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.kumoricon.model.attendee.AttendeeCommitListener;
+import org.kumoricon.model.attendee.AttendeeHistory;
+import org.kumoricon.model.attendee.AttendeeHistoryRepository;
+import org.kumoricon.model.user.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.Date;
+
+/**
+ * Feeds CheckInTracker. Check ins are recognized by the "Attendee checked in" history entry
+ * that is saved with them, and are recorded after the entry is committed. When the application
+ * starts, check ins from the last window are loaded from attendee history.
+ */
+@Component
+public class CheckInTrackerUpdater implements PostInsertEventListener {
+    static final String CHECK_IN_MESSAGE = "attendee checked in";
+    private final transient EntityManagerFactory entityManagerFactory;
+    private final transient AttendeeHistoryRepository attendeeHistoryRepository;
+    private final transient CheckInTracker checkInTracker;
+    private static final Logger log = LoggerFactory.getLogger(CheckInTrackerUpdater.class);
+
+    @Autowired
+    public CheckInTrackerUpdater(EntityManagerFactory entityManagerFactory,
+                                 AttendeeHistoryRepository attendeeHistoryRepository,
+                                 CheckInTracker checkInTracker) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.attendeeHistoryRepository = attendeeHistoryRepository;
+        this.checkInTracker = checkInTracker;
+    }
+
+    @PostConstruct
+    public void registerListeners() {
+        AttendeeCommitListener.registerListener(entityManagerFactory, this, EventType.POST_COMMIT_INSERT);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRecentCheckIns() {
+        Date since = new Date(System.currentTimeMillis() - checkInTracker.getWindowMinutes() * 60_000L);
+        int count = 0;
+        for (Object[] row : attendeeHistoryRepository.findCheckInsSince(CHECK_IN_MESSAGE, since)) {
+            checkInTracker.record((Integer) row[0], (String) row[1], (String) row[2], (String) row[3],
+                    ((Date) row[4]).getTime());
+            count++;
+        }
+        log.info("Loaded {} check ins from the last {} minutes in to check in tracker",
+                count, checkInTracker.getWindowMinutes());
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (!(event.getEntity() instanceof AttendeeHistory)) { return; }
+        AttendeeHistory history = (AttendeeHistory) event.getEntity();
+        User user = history.getUser();
+        if (user != null && history.getTimestamp() != null && history.getMessage() != null &&
+                CHECK_IN_MESSAGE.equalsIgnoreCase(history.getMessage())) {
+            checkInTracker.record(user.getId(), user.getUsername(), user.getFirstName(), user.getLastName(),
+                    history.getTimestamp().getTime());
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return AttendeeHistory.class.equals(persister.getMappedClass());
+    }
+}
@@ -0,0 +1,267 @@
+package org.kumoricon.service.search;
+
+import org.kumoricon.model.attendee.Attendee;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * In-memory trigram index over attendee name fields (firstName, lastName, fanName, legalFirstName,
+ * legalLastName). Answers the same "every word appears somewhere in one of the name fields" queries
+ * as AttendeeSearchRepository.searchFor, but without scanning the attendees table.
+ *
+ * Matching follows the database's default case and accent insensitive collation. Words that the
+ * index can't answer exactly (LIKE wildcard characters or non-ASCII characters) are reported by
+ * canAnswer() so the caller can fall back to the database query.
+ */
+@Component
+public class AttendeeSearchIndex {
+    private static final int GRAM_LENGTH = 3;
+    // Search words never contain whitespace, so this keeps a word from matching across two fields
+    private static final char FIELD_SEPARATOR = '\n';
+
+    private final Map<Integer, String> documents = new HashMap<>();
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Set<Integer> touchedDuringRebuild = null;
+    private volatile boolean ready = false;
+
+    /**
+     * @return True if the index has been loaded and can be used for searches
+     */
+    public boolean isReady() { return ready; }
+
+    /**
+     * Returns true if the index can return exactly the same results as the database for
+     * the given words.
+     * @param searchWords Words to search for
+     * @return True if search(searchWords) may be used instead of the database query
+     */
+    public boolean canAnswer(String[] searchWords) {
+        if (!ready || searchWords == null || searchWords.length == 0) return false;
+        for (String word : searchWords) {
+            if (word == null || word.isEmpty()) return false;
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                if (c > 127 || c == '%' || c == '_' || c == '\\') return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds attendees that contain all of the given words in any of their name fields
+     * @param searchWords Words to search for
+     * @return Matching attendee IDs in ascending order
+     */
+    public List<Integer> search(String[] searchWords) {
+        String[] words = new String[searchWords.length];
+        for (int i = 0; i < searchWords.length; i++) {
+            words[i] = searchWords[i].toLowerCase(Locale.ROOT);
+        }
+
+        List<Integer> results = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            // Every match must contain every trigram of every word, so only the shortest posting
+            // list needs to be checked. Words shorter than a trigram are checked against every document.
+            PostingList smallest = null;
+            for (String word : words) {
+                for (int i = 0; i + GRAM_LENGTH <= word.length(); i++) {
+                    PostingList list = postings.get(word.substring(i, i + GRAM_LENGTH));
+                    if (list == null) return results;
+                    if (smallest == null || list.size() < smallest.size()) {
+                        smallest = list;
+                    }
+                }
+            }
+
+            if (smallest == null) {
+                for (Map.Entry<Integer, String> entry : documents.entrySet()) {
+                    if (containsAll(entry.getValue(), words)) results.add(entry.getKey());
+                }
+            } else {
+                for (int i = 0; i < smallest.size(); i++) {
+                    int id = smallest.get(i);
+                    if (containsAll(documents.get(id), words)) results.add(id);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Collections.sort(results);
+        return results;
+    }
+
+    /**
+     * Adds or replaces the index entry for the given attendee
+     * @param attendee Attendee
+     */
+    public void put(Attendee attendee) {
+        if (attendee == null || attendee.getId() == null) return;
+        put(attendee.getId(), attendee.getFirstName(), attendee.getLastName(), attendee.getFanName(),
+                attendee.getLegalFirstName(), attendee.getLegalLastName());
+    }
+
+    /**
+     * Adds or replaces the index entry for the given attendee ID
+     * @param id Attendee ID
+     * @param fields Searchable name fields, may contain nulls
+     */
+    public void put(Integer id, String... fields) {
+        if (id == null) return;
+        String document = buildDocument(fields);
+        lock.writeLock().lock();
+        try {
+            if (touchedDuringRebuild != null) touchedDuringRebuild.add(id);
+            removeDocument(id);
+            addDocument(id, document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the given attendee ID from the index
+     * @param id Attendee ID
+     */
+    public void remove(Integer id) {
+        if (id == null) return;
+        lock.writeLock().lock();
+        try {
+            if (touchedDuringRebuild != null) touchedDuringRebuild.add(id);
+            removeDocument(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Clears the index and reloads it. While the loader runs the index is not ready, so searches
+     * fall back to the database. Changes made with put() or remove() while loading take precedence
+     * over the loaded rows.
+     * @param loader Returns rows of (id, firstName, lastName, fanName, legalFirstName, legalLastName)
+     */
+    public void rebuild(Supplier<List<Object[]>> loader) {
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            documents.clear();
+            postings.clear();
+            touchedDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<Object[]> rows = loader.get();
+
+        lock.writeLock().lock();
+        try {
+            for (Object[] row : rows) {
+                Integer id = (Integer) row[0];
+                if (!touchedDuringRebuild.contains(id)) {
+                    addDocument(id, buildDocument((String) row[1], (String) row[2], (String) row[3],
+                            (String) row[4], (String) row[5]));
+                }
+            }
+            touchedDuringRebuild = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of attendees in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Builds the normalized, lower case text that is searched for an attendee. Accents are
+     * stripped to match the database collation, where "e" LIKE "é".
+     * @param fields Name fields
+     * @return Normalized text
+     */
+    static String buildDocument(String... fields) {
+        StringBuilder output = new StringBuilder();
+        for (String field : fields) {
+            if (field == null) continue;
+            String normalized = Normalizer.normalize(field.toLowerCase(Locale.ROOT), Normalizer.Form.NFD)
+                    .replaceAll("\\p{M}", "");
+            output.append(normalized).append(FIELD_SEPARATOR);
+        }
+        return output.toString();
+    }
+
+    private static boolean containsAll(String document, String[] words) {
+        if (document == null) return false;
+        for (String word : words) {
+            if (!document.contains(word)) return false;
+        }
+        return true;
+    }
+
+    private void addDocument(Integer id, String document) {
+        documents.put(id, document);
+        for (String gram : gramsFor(document)) {
+            postings.computeIfAbsent(gram, k -> new PostingList()).add(id);
+        }
+    }
+
+    private void removeDocument(Integer id) {
+        String document = documents.remove(id);
+        if (document == null) return;
+        for (String gram : gramsFor(document)) {
+            PostingList list = postings.get(gram);
+            if (list != null) {
+                list.remove(id);
+                if (list.size() == 0) postings.remove(gram);
+            }
+        }
+    }
+
+    private static Set<String> gramsFor(String document) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= document.length(); i++) {
+            String gram = document.substring(i, i + GRAM_LENGTH);
+            if (gram.indexOf(FIELD_SEPARATOR) < 0) grams.add(gram);
+        }
+        return grams;
+    }
+
+    /**
+     * Unordered list of attendee IDs stored as primitive ints to keep the index small
+     */
+    private static class PostingList {
+        private int[] values = new int[4];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        void remove(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    values[i] = values[--size];
+                    return;
+                }
+            }
+        }
+
+        int get(int index) { return values[index]; }
+        int size() { return size; }
+    }
+}
@@ -0,0 +1,69 @@
+package org.kumoricon.service.search;
+
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.kumoricon.model.attendee.Attendee;
+import org.kumoricon.model.attendee.AttendeeCommitListener;
+import org.kumoricon.model.attendee.AttendeeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Keeps AttendeeSearchIndex up to date. Loads every attendee when the application starts, then
+ * applies inserts, updates and deletes after they are committed.
+ */
+@Component
+public class AttendeeSearchIndexUpdater extends AttendeeCommitListener {
+    private final transient AttendeeRepository attendeeRepository;
+    private final transient AttendeeSearchIndex searchIndex;
+    private static final Logger log = LoggerFactory.getLogger(AttendeeSearchIndexUpdater.class);
+
+    @Autowired
+    public AttendeeSearchIndexUpdater(EntityManagerFactory entityManagerFactory,
+                                      AttendeeRepository attendeeRepository,
+                                      AttendeeSearchIndex searchIndex) {
+        super(entityManagerFactory);
+        this.attendeeRepository = attendeeRepository;
+        this.searchIndex = searchIndex;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIndex() {
+        long start = System.currentTimeMillis();
+        searchIndex.rebuild(attendeeRepository::findAllSearchFields);
+        log.info("Loaded {} attendees in to search index in {} ms",
+                searchIndex.size(), System.currentTimeMillis() - start);
+    }
+
+    @Override
+    protected void attendeeInserted(PostInsertEvent event) {
+        searchIndex.put((Attendee) event.getEntity());
+    }
+
+    @Override
+    protected void attendeeUpdated(PostUpdateEvent event) {
+        searchIndex.put((Attendee) event.getEntity());
+    }
+
+    @Override
+    protected void attendeeDeleted(PostDeleteEvent event) {
+        searchIndex.remove((Integer) event.getId());
+    }
+
+    @Override
+    public void attendeeInsertedInBulk(Attendee attendee) {
+        searchIndex.put(attendee);
+    }
+
+    @Override
+    public void attendeeDeletedInBulk(Attendee attendee) {
+        searchIndex.remove(attendee.getId());
+    }
+}
@@ -2,6 +2,7 @@ package org.kumoricon.site.attendee.reg;
 
 import jdk.nashorn.internal.runtime.regexp.joni.exception.ValueException;
 import org.kumoricon.model.attendee.Attendee;
+import org.kumoricon.model.attendee.AttendeeCommitListener;
 import org.kumoricon.model.attendee.AttendeeHistoryRepository;
 import org.kumoricon.model.attendee.AttendeeRepository;
 import org.kumoricon.model.badge.Badge;
@@ -51,10 +52,12 @@ public class OrderPresenter extends BadgePrintingPresenter implements PrintBadge
 
     private final AttendeeHistoryRepository attendeeHistoryRepository;
 
+    private final List<AttendeeCommitListener> attendeeCommitListeners;
+
     private static final Logger log = LoggerFactory.getLogger(OrderPresenter.class);
 
     @Autowired
-    public OrderPresenter(OrderRepository orderRepository, BadgeRepository badgeRepository, AttendeeRepository attendeeRepository, AttendeeValidator attendeeValidator, UserRepository userRepository, BlacklistService blacklistService, PaymentRepository paymentRepository, SessionService sessionService, AttendeeHistoryRepository attendeeHistoryRepository) {
+    public OrderPresenter(OrderRepository orderRepository, BadgeRepository badgeRepository, AttendeeRepository attendeeRepository, AttendeeValidator attendeeValidator, UserRepository userRepository, BlacklistService blacklistService, PaymentRepository paymentRepository, SessionService sessionService, AttendeeHistoryRepository attendeeHistoryRepository, List<AttendeeCommitListener> attendeeCommitListeners) {
         this.orderRepository = orderRepository;
         this.badgeRepository = badgeRepository;
         this.attendeeRepository = attendeeRepository;
@@ -64,6 +67,7 @@ public class OrderPresenter extends BadgePrintingPresenter implements PrintBadge
         this.paymentRepository = paymentRepository;
         this.sessionService = sessionService;
         this.attendeeHistoryRepository = attendeeHistoryRepository;
+        this.attendeeCommitListeners = attendeeCommitListeners;
     }
 
     public void createNewOrder(OrderView view) {
@@ -177,10 +181,16 @@ public class OrderPresenter extends BadgePrintingPresenter implements PrintBadge
             order.removeAttendee(attendee);
             attendee.setOrder(null);
 
-            attendeeHistoryRepository.deleteInBatch(attendee.getHistory());
+            attendeeHistoryRepository.deleteByAttendee(attendee);
 
             Order result = orderRepository.save(order);
+            Attendee stored = attendeeRepository.findOne(attendee.getId());
             attendeeRepository.deleteById(attendee.getId());
+            if (stored != null) {
+                for (AttendeeCommitListener listener : attendeeCommitListeners) {
+                    listener.attendeeDeletedInBulk(stored);
+                }
+            }
             view.notify(name + " deleted");
         } else {
             view.notify("Error: " + attendee.toString() + " is checked in and may not be deleted");
@@ -44,7 +44,7 @@ public class AttendeeSearchPresenter extends BadgePrintingPresenter implements O
     }
 
     public void showAttendee(AttendeeDetailView bView, int id) {
-        Attendee attendee = attendeeRepository.findOne(id);
+        Attendee attendee = attendeeRepository.findOneWithHistory(id);
         if (attendee != null) {
             log.info("{} displayed Attendee {}", bView.getCurrentUsername(), attendee);
             bView.showAttendee(attendee, badgeRepository.findAll());
@@ -55,7 +55,7 @@ public class AttendeeSearchPresenter extends BadgePrintingPresenter implements O
     }
 
     public void showAttendee(AttendeeSearchDetailView dView, int id) {
-        Attendee attendee = attendeeRepository.findOne(id);
+        Attendee attendee = attendeeRepository.findOneWithHistory(id);
         if (attendee != null) {
             dView.showAttendee(attendee, badgeRepository.findAll());
             log.info("{} displayed Attendee {}", dView.getCurrentUsername(), attendee);
@@ -66,7 +66,7 @@ public class AttendeeSearchPresenter extends BadgePrintingPresenter implements O
     }
 
     public void showAttendee(CheckInView cView, Integer id) {
-        Attendee attendee = attendeeRepository.findOne(id);
+        Attendee attendee = attendeeRepository.findOneWithHistory(id);
         if (attendee != null) {
             cView.showAttendee(attendee);
             log.info("{} displayed Attendee {}", cView.getCurrentUsername(), attendee);
@@ -238,7 +238,7 @@ public class AttendeeSearchPresenter extends BadgePrintingPresenter implements O
     }
 
     public boolean attendeeHasChanged(Attendee attendee) {
-        Attendee existing = attendeeRepository.findOne(attendee.getId());
+        Attendee existing = attendeeRepository.findOneWithHistory(attendee.getId());
         return !existing.fieldsSameAs(attendee);
     }
 }
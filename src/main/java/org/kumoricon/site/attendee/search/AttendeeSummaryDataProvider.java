@@ -0,0 +1,81 @@
+package org.kumoricon.site.attendee.search;
+
+import com.vaadin.data.provider.CallbackDataProvider;
+import com.vaadin.data.provider.DataProvider;
+import com.vaadin.data.provider.Query;
+import com.vaadin.data.provider.QuerySortOrder;
+import com.vaadin.shared.data.sort.SortDirection;
+import org.kumoricon.model.OffsetPageRequest;
+import org.kumoricon.model.attendee.AttendeeRepository;
+import org.kumoricon.model.attendee.AttendeeSummary;
+import org.kumoricon.model.badge.Badge;
+import org.kumoricon.service.AttendeeSearchService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Builds lazy, backend-paged data providers for attendee grids. Only the rows the browser is
+ * displaying are loaded, so the server doesn't keep a full result list for every session.
+ * Grid columns must set a sort property matching an Attendee field to be sortable.
+ *
+ * Search pages are logged with how long they took to load; SearchPresenter logs the count.
+ */
+public class AttendeeSummaryDataProvider {
+    private static final Logger log = LoggerFactory.getLogger(AttendeeSummaryDataProvider.class);
+
+    private AttendeeSummaryDataProvider() {}
+
+    /**
+     * @param repository Attendee repository
+     * @param badge Badge type
+     * @return Data provider for all attendees with the given badge type
+     */
+    public static DataProvider<AttendeeSummary, Void> forBadge(AttendeeRepository repository, Badge badge) {
+        if (badge == null) { return new CallbackDataProvider<>(query -> Stream.empty(), query -> 0); }
+        return new CallbackDataProvider<>(
+                query -> repository.findSummariesByBadgeType(badge, toPageable(query)).stream(),
+                query -> (int) repository.countByBadge(badge));
+    }
+
+    /**
+     * @param searchService Attendee search service
+     * @param searchString Search string, may contain multiple words separated by space
+     * @return Data provider for attendees matching the search string
+     */
+    public static DataProvider<AttendeeSummary, Void> forSearch(AttendeeSearchService searchService,
+                                                                String searchString) {
+        return new CallbackDataProvider<>(
+                query -> {
+                    long start = System.currentTimeMillis();
+                    List<AttendeeSummary> page = searchService.searchSummaries(searchString, toPageable(query));
+                    long finish = System.currentTimeMillis();
+                    log.info("Loaded search results {}-{} for \"{}\" in {} ms",
+                            query.getOffset(), query.getOffset() + page.size(), searchString, finish-start);
+                    return page.stream();
+                },
+                query -> searchService.countSummaries(searchString));
+    }
+
+    /**
+     * Converts a grid query to a Pageable. Rows are always sorted by id last so that pages
+     * are stable when the requested sort order has duplicate values.
+     * @param query Grid query
+     * @return Pageable
+     */
+    static Pageable toPageable(Query<AttendeeSummary, Void> query) {
+        List<Sort.Order> orders = new ArrayList<>();
+        for (QuerySortOrder sortOrder : query.getSortOrders()) {
+            Sort.Direction direction = sortOrder.getDirection() == SortDirection.DESCENDING ?
+                    Sort.Direction.DESC : Sort.Direction.ASC;
+            orders.add(new Sort.Order(direction, sortOrder.getSorted()));
+        }
+        orders.add(new Sort.Order(Sort.Direction.ASC, "id"));
+        return new OffsetPageRequest(query.getOffset(), Math.max(query.getLimit(), 1), new Sort(orders));
+    }
+}
@@ -1,6 +1,5 @@
 package org.kumoricon.site.attendee.search;
 
-import org.kumoricon.model.attendee.Attendee;
 import org.kumoricon.model.attendee.AttendeeRepository;
 import org.kumoricon.model.badge.Badge;
 import org.kumoricon.model.badge.BadgeRepository;
@@ -12,8 +11,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 
-import java.util.ArrayList;
-import java.util.List;
 
 @Controller
 public class SearchPresenter {
@@ -35,12 +32,13 @@ public class SearchPresenter {
         if (searchString != null && !searchString.trim().isEmpty()) {
             searchString = searchString.trim();
             long start = System.currentTimeMillis();
-            List<Attendee> attendees = attendeeSearchService.search(searchString);
+            int count = attendeeSearchService.countSummaries(searchString);
             long finish = System.currentTimeMillis();
-            log.info("{} searched Attendees for \"{}\" and got {} results in {} ms",
-                    view.getCurrentUsername(), searchString, attendees.size(), finish-start);
-            view.afterSuccessfulFetch(attendees);
-            if (attendees.size() == 0) {
+            // Pages of results are loaded, and logged, by the data provider as the grid shows them
+            log.info("{} searched Attendees for \"{}\" and got {} results, counted in {} ms",
+                    view.getCurrentUsername(), searchString, count, finish-start);
+            view.afterSuccessfulFetch(AttendeeSummaryDataProvider.forSearch(attendeeSearchService, searchString));
+            if (count == 0) {
                 view.notify("No matching attendees found");
             }
         }
@@ -63,11 +61,7 @@ public class SearchPresenter {
 
     public void showAttendeeList(SearchByBadgeView view, Badge badge) {
         log.info("{} viewed attendees with badge {}", view.getCurrentUsername(), badge);
-        if (badge == null) {
-            view.afterAttendeeFetch(new ArrayList<>());
-        }
-        List<Attendee> attendees = attendeeRepository.findByBadgeType(badge);
-        view.afterAttendeeFetch(attendees);
+        view.afterAttendeeFetch(AttendeeSummaryDataProvider.forBadge(attendeeRepository, badge));
     }
 
 
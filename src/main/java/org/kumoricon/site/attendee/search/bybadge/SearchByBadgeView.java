@@ -1,5 +1,6 @@
 package org.kumoricon.site.attendee.search.bybadge;
 
+import com.vaadin.data.provider.DataProvider;
 import com.vaadin.ui.*;
 import com.vaadin.navigator.View;
 import com.vaadin.navigator.ViewChangeListener;
@@ -7,7 +8,7 @@ import com.vaadin.spring.annotation.SpringView;
 import com.vaadin.spring.annotation.ViewScope;
 import com.vaadin.ui.renderers.HtmlRenderer;
 import org.kumoricon.BaseGridView;
-import org.kumoricon.model.attendee.Attendee;
+import org.kumoricon.model.attendee.AttendeeSummary;
 import org.kumoricon.model.badge.Badge;
 import org.kumoricon.site.attendee.search.SearchPresenter;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,10 +26,10 @@ public class SearchByBadgeView extends BaseGridView implements View {
 
     private ComboBox<Badge> badgeType = new ComboBox<>();
     private Button refresh = new Button("Refresh");
-    private Grid<Attendee> attendeeTable = new Grid<>();
+    private Grid<AttendeeSummary> attendeeTable = new Grid<>();
     private String searchString;
     private List<Badge> availableBadgeTypes;
-    private Grid.Column<Attendee, String> checkInLinkColumn;
+    private Grid.Column<AttendeeSummary, String> checkInLinkColumn;
 
 
     @Autowired
@@ -60,15 +61,15 @@ public class SearchByBadgeView extends BaseGridView implements View {
         handler.showBadgeTypes(this);
 
         attendeeTable.setSelectionMode(Grid.SelectionMode.NONE);
-        attendeeTable.addColumn(Attendee::getFirstName).setCaption("First Name");
-        attendeeTable.addColumn(Attendee::getLastName).setCaption("Last Name");
-        attendeeTable.addColumn(Attendee::getLegalFirstName).setCaption("Legal First Name");
-        attendeeTable.addColumn(Attendee::getLegalLastName).setCaption("Legal Last Name");
-        attendeeTable.addColumn(Attendee::getFanName).setCaption("Fan Name");
-        attendeeTable.addColumn(Attendee::getBadgeNumber).setCaption("Badge Number");
-        attendeeTable.addColumn(Attendee::getAge).setCaption("Age");
-        attendeeTable.addColumn(Attendee::getCheckedIn).setCaption("Checked In");
-        attendeeTable.addColumn(Attendee::getCheckInTime).setCaption("Check In Time");
+        attendeeTable.addColumn(AttendeeSummary::getFirstName).setCaption("First Name").setSortProperty("firstName");
+        attendeeTable.addColumn(AttendeeSummary::getLastName).setCaption("Last Name").setSortProperty("lastName");
+        attendeeTable.addColumn(AttendeeSummary::getLegalFirstName).setCaption("Legal First Name").setSortProperty("legalFirstName");
+        attendeeTable.addColumn(AttendeeSummary::getLegalLastName).setCaption("Legal Last Name").setSortProperty("legalLastName");
+        attendeeTable.addColumn(AttendeeSummary::getFanName).setCaption("Fan Name").setSortProperty("fanName");
+        attendeeTable.addColumn(AttendeeSummary::getBadgeNumber).setCaption("Badge Number").setSortProperty("badgeNumber");
+        attendeeTable.addColumn(AttendeeSummary::getAge).setCaption("Age").setSortable(false);
+        attendeeTable.addColumn(AttendeeSummary::getCheckedIn).setCaption("Checked In").setSortProperty("checkedIn");
+        attendeeTable.addColumn(AttendeeSummary::getCheckInTime).setCaption("Check In Time").setSortProperty("checkInTime");
         if (currentUserHasRight("pre_reg_check_in")) {
             checkInLinkColumn = attendeeTable.addColumn(attendee -> {
                         if (!attendee.getCheckedIn()) {
@@ -76,7 +77,7 @@ public class SearchByBadgeView extends BaseGridView implements View {
                         } else {
                             return "";
                         }},
-                    new HtmlRenderer());
+                    new HtmlRenderer()).setSortable(false);
         }
 
         attendeeTable.addStyleName("kumoHandPointer");
@@ -94,8 +95,8 @@ public class SearchByBadgeView extends BaseGridView implements View {
         attendeeTable.setHeight("90%");
     }
 
-    public void afterAttendeeFetch(List<Attendee> attendees) {
-        attendeeTable.setItems(attendees);
+    public void afterAttendeeFetch(DataProvider<AttendeeSummary, ?> attendees) {
+        attendeeTable.setDataProvider(attendees);
     }
 
     public void afterBadgeTypeFetch(List<Badge> badges) {
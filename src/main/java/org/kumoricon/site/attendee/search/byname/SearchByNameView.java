@@ -1,5 +1,6 @@
 package org.kumoricon.site.attendee.search.byname;
 
+import com.vaadin.data.provider.DataProvider;
 import com.vaadin.event.ShortcutAction;
 import com.vaadin.ui.*;
 import com.vaadin.navigator.View;
@@ -8,13 +9,12 @@ import com.vaadin.spring.annotation.SpringView;
 import com.vaadin.spring.annotation.ViewScope;
 import com.vaadin.ui.renderers.HtmlRenderer;
 import org.kumoricon.BaseGridView;
-import org.kumoricon.model.attendee.Attendee;
+import org.kumoricon.model.attendee.AttendeeSummary;
 import org.kumoricon.site.ButtonField;
 import org.kumoricon.site.attendee.search.SearchPresenter;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.annotation.PostConstruct;
-import java.util.List;
 
 @ViewScope
 @SpringView(name = SearchByNameView.VIEW_NAME)
@@ -25,8 +25,8 @@ public class SearchByNameView extends BaseGridView implements View {
     private final SearchPresenter handler;
 
     private ButtonField txtSearch = new ButtonField();
-    private Grid<Attendee> tblResult = new Grid<>();
-    private Grid.Column<Attendee, String> checkInLinkColumn;
+    private Grid<AttendeeSummary> tblResult = new Grid<>();
+    private Grid.Column<AttendeeSummary, String> checkInLinkColumn;
 
     @Autowired
     public SearchByNameView(SearchPresenter handler) {
@@ -50,15 +50,15 @@ public class SearchByNameView extends BaseGridView implements View {
         tblResult.setWidth("95%");
         tblResult.setHeight("90%");
 
-        tblResult.addColumn(Attendee::getFirstName).setCaption("First Name");
-        tblResult.addColumn(Attendee::getLastName).setCaption("Last Name");
-        tblResult.addColumn(Attendee::getLegalFirstName).setCaption("Legal First Name");
-        tblResult.addColumn(Attendee::getLegalLastName).setCaption("Legal Last Name");
-        tblResult.addColumn(Attendee::getFanName).setCaption("Fan Name");
-        tblResult.addColumn(Attendee::getBadgeNumber).setCaption("Badge Number");
-        tblResult.addColumn(Attendee::getAge).setCaption("Age");
-        tblResult.addColumn(Attendee::getZip).setCaption("Zip");
-        tblResult.addColumn(Attendee::getCheckedIn).setCaption("Checked In");
+        tblResult.addColumn(AttendeeSummary::getFirstName).setCaption("First Name").setSortProperty("firstName");
+        tblResult.addColumn(AttendeeSummary::getLastName).setCaption("Last Name").setSortProperty("lastName");
+        tblResult.addColumn(AttendeeSummary::getLegalFirstName).setCaption("Legal First Name").setSortProperty("legalFirstName");
+        tblResult.addColumn(AttendeeSummary::getLegalLastName).setCaption("Legal Last Name").setSortProperty("legalLastName");
+        tblResult.addColumn(AttendeeSummary::getFanName).setCaption("Fan Name").setSortProperty("fanName");
+        tblResult.addColumn(AttendeeSummary::getBadgeNumber).setCaption("Badge Number").setSortProperty("badgeNumber");
+        tblResult.addColumn(AttendeeSummary::getAge).setCaption("Age").setSortable(false);
+        tblResult.addColumn(AttendeeSummary::getZip).setCaption("Zip").setSortProperty("zip");
+        tblResult.addColumn(AttendeeSummary::getCheckedIn).setCaption("Checked In").setSortProperty("checkedIn");
         if (currentUserHasRight("pre_reg_check_in")) {
             checkInLinkColumn = tblResult.addColumn(attendee -> {
                         if (!attendee.getCheckedIn()) {
@@ -66,7 +66,7 @@ public class SearchByNameView extends BaseGridView implements View {
                         } else {
                             return "";
                         }},
-                    new HtmlRenderer());
+                    new HtmlRenderer()).setSortable(false);
         }
 
         tblResult.addStyleName("kumoHandPointer");
@@ -99,8 +99,8 @@ public class SearchByNameView extends BaseGridView implements View {
         }
     }
 
-    public void afterSuccessfulFetch(List<Attendee> attendees) {
-        tblResult.setItems(attendees);
+    public void afterSuccessfulFetch(DataProvider<AttendeeSummary, ?> attendees) {
+        tblResult.setDataProvider(attendees);
         txtSearch.selectAll();
     }
 
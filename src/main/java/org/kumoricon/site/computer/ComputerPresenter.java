@@ -3,6 +3,7 @@ package org.kumoricon.site.computer;
 import org.kumoricon.model.computer.Computer;
 import org.kumoricon.model.computer.ComputerRepository;
 import org.kumoricon.model.printer.Printer;
+import org.kumoricon.service.print.PrinterRegistry;
 import org.kumoricon.site.computer.window.AddPrinterWindow;
 import org.kumoricon.site.computer.window.PrinterWindowCallback;
 import org.kumoricon.site.computer.window.ViewInstructionsWindow;
@@ -18,6 +19,8 @@ import java.lang.*;
 public class ComputerPresenter {
     @Autowired
     private ComputerRepository computerRepository;
+    @Autowired
+    private PrinterRegistry printerRegistry;
     private AddPrinterWindow printerInstallWindow;
     private static final Logger log = LoggerFactory.getLogger(ComputerPresenter.class);
 
@@ -46,6 +49,7 @@ public class ComputerPresenter {
         this.printerInstallWindow.installSuccessHandler = new PrinterWindowCallback() {
             @Override
             public void run() {
+                printerRegistry.reload();
                 showPrinterList(view);
                 view.notify((printerInstallWindow.getInstalledPrinter()).getStatus());
                 log.info("{} added printer", view.getCurrentUsername(), printerInstallWindow.getInstalledPrinter());
@@ -88,7 +92,7 @@ public class ComputerPresenter {
 
     public void showPrinterList(ComputerView view) {
         log.info("{} viewed printer list", view.getCurrentUsername());
-        List<Printer> printers = Printer.getPrinterList();
+        List<Printer> printers = Printer.getPrinterList(printerRegistry.getPrinters());
         view.afterSuccessfulPrinterFetch(printers);
     }
 
@@ -110,10 +114,12 @@ public class ComputerPresenter {
             log.info("{} deleted printer '" + printer.getName() + "'", view.getCurrentUsername(), printer);
         }
 
+        printerRegistry.reload();
         showPrinterList(view);
     }
 
     public void refreshPrinterList(ComputerView view) {
+        printerRegistry.reload();
         showPrinterList(view);
     }
 
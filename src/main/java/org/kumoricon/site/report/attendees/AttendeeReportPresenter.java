@@ -1,6 +1,7 @@
 package org.kumoricon.site.report.attendees;
 
-import org.kumoricon.model.attendee.AttendeeRepository;
+import org.kumoricon.model.attendee.CheckInCountRepository;
+import org.kumoricon.service.report.AttendeeCountService;
 import org.kumoricon.site.report.ReportPresenter;
 import org.kumoricon.site.report.ReportView;
 import org.slf4j.Logger;
@@ -13,14 +14,17 @@ import java.util.List;
 
 @Controller
 public class AttendeeReportPresenter implements ReportPresenter {
-    private final AttendeeRepository attendeeRepository;
+    private final CheckInCountRepository checkInCountRepository;
+    private final AttendeeCountService attendeeCountService;
 
     private static final Logger log = LoggerFactory.getLogger(AttendeeReportPresenter.class);
 
 
     @Autowired
-    public AttendeeReportPresenter(AttendeeRepository attendeeRepository) {
-        this.attendeeRepository = attendeeRepository;
+    public AttendeeReportPresenter(CheckInCountRepository checkInCountRepository,
+                                   AttendeeCountService attendeeCountService) {
+        this.checkInCountRepository = checkInCountRepository;
+        this.attendeeCountService = attendeeCountService;
     }
 
     private String getTotalsByBadgeType() {
@@ -29,7 +33,7 @@ public class AttendeeReportPresenter implements ReportPresenter {
         sb.append("<table border=\"1\"><tr><td>Badge Type</td>");
         sb.append("<td>At-Con Checked In</td><td>At-Con Not Checked In</td>");
         sb.append("<td>Pre Reg Checked In</td><td>Pre Reg Not Checked In</td></tr>");
-        List<Object[]> results = attendeeRepository.findBadgeCounts();
+        List<Object[]> results = attendeeCountService.findBadgeCounts();
         for (Object[] line : results) {
             sb.append("<tr>");
             sb.append(String.format("<td>%s</td>", line[0].toString()));
@@ -98,14 +102,14 @@ public class AttendeeReportPresenter implements ReportPresenter {
         sb.append("<div class=\"kumoReport\">");
         sb.append(getTotalsByBadgeType());
         if (view.currentUserHasRight("view_attendance_report_revenue")) {
-            sb.append(buildTableWithRevenue("At Con Check Ins By Day", attendeeRepository.findAtConCheckInCountsByDate()));
-            sb.append(buildTableWithRevenue("Pre Reg Check Ins By Day", attendeeRepository.findPreRegCheckInCountsByDate()));
+            sb.append(buildTableWithRevenue("At Con Check Ins By Day", checkInCountRepository.findCheckInCountsByDate(false)));
+            sb.append(buildTableWithRevenue("Pre Reg Check Ins By Day", checkInCountRepository.findCheckInCountsByDate(true)));
         } else {
-            sb.append(buildTable("At Con Check Ins By Day", attendeeRepository.findAtConCheckInCountsByDate()));
-            sb.append(buildTable("Pre Reg Check Ins By Day", attendeeRepository.findPreRegCheckInCountsByDate()));
+            sb.append(buildTable("At Con Check Ins By Day", checkInCountRepository.findCheckInCountsByDate(false)));
+            sb.append(buildTable("Pre Reg Check Ins By Day", checkInCountRepository.findCheckInCountsByDate(true)));
         }
         sb.append(buildAttendanceCounts(
-                attendeeRepository.findTotalAttendeeCount(), attendeeRepository.findWarmBodyCount()));
+                attendeeCountService.findTotalAttendeeCount(), attendeeCountService.findWarmBodyCount()));
         sb.append("</div>");
         log.info("{} viewed Attendee Report", view.getCurrentUser());
         view.afterSuccessfulFetch(sb.toString());
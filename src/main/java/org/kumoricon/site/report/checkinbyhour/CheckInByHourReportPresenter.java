@@ -1,6 +1,7 @@
 package org.kumoricon.site.report.checkinbyhour;
 
-import org.kumoricon.model.attendee.AttendeeRepository;
+import org.kumoricon.model.attendee.CheckInCountRepository;
+import org.kumoricon.service.report.CheckInCountService;
 import org.kumoricon.site.report.ReportPresenter;
 import org.kumoricon.site.report.ReportView;
 import org.slf4j.Logger;
@@ -13,14 +14,17 @@ import java.util.List;
 
 @Controller
 public class CheckInByHourReportPresenter implements ReportPresenter {
-    private final AttendeeRepository attendeeRepository;
+    private final CheckInCountRepository checkInCountRepository;
+    private final CheckInCountService checkInCountService;
 
     private static final Logger log = LoggerFactory.getLogger(CheckInByHourReportPresenter.class);
 
 
     @Autowired
-    public CheckInByHourReportPresenter(AttendeeRepository attendeeRepository) {
-        this.attendeeRepository = attendeeRepository;
+    public CheckInByHourReportPresenter(CheckInCountRepository checkInCountRepository,
+                                        CheckInCountService checkInCountService) {
+        this.checkInCountRepository = checkInCountRepository;
+        this.checkInCountService = checkInCountService;
     }
 
     private static String buildTable(String title, List<Object[]> data) {
@@ -45,9 +49,20 @@ public class CheckInByHourReportPresenter implements ReportPresenter {
     public void fetchReportData(ReportView view) {
         StringBuilder report = new StringBuilder();
         report.append("<div class=\"kumoReport\">");
-        report.append(buildTable("Check Ins By Hour", attendeeRepository.findCheckInCountsByHour()));
+        report.append(buildTable("Check Ins By Hour", checkInCountRepository.findCheckInCountsByHour()));
         report.append("</div>");
         view.afterSuccessfulFetch(report.toString());
         log.info("{} viewed Check Ins By Hour Report", view.getCurrentUser());
     }
+
+    public void rebuildCounts(CheckInByHourReportView view) {
+        if (!view.currentUserHasRight("rebuild_report_counts")) {
+            view.notifyError("Error: rebuild_report_counts right required");
+            return;
+        }
+        int attendees = checkInCountService.backfill();
+        log.info("{} rebuilt check in counts from {} attendees", view.getCurrentUsername(), attendees);
+        view.notify("Check in counts rebuilt from " + attendees + " attendees");
+        fetchReportData(view);
+    }
 }
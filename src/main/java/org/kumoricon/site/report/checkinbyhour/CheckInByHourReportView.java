@@ -21,6 +21,7 @@ public class CheckInByHourReportView extends BaseGridView implements View, Repor
     private final CheckInByHourReportPresenter handler;
 
     private final Button btnRefresh = new Button("Refresh");
+    private final Button btnRebuild = new Button("Rebuild Counts");
     private final Label data = new Label();
 
     @Autowired
@@ -31,12 +32,15 @@ public class CheckInByHourReportView extends BaseGridView implements View, Repor
     @PostConstruct
     public void init() {
         setColumns(4);
-        setRows(1);
+        setRows(2);
         setColumnExpandRatio(0, 10);
         setColumnExpandRatio(3, 10);
         btnRefresh.addClickListener((Button.ClickListener) clickEvent -> handler.fetchReportData(this));
         addComponent(data, 1, 0);
         addComponent(btnRefresh, 2, 0);
+        btnRebuild.addClickListener((Button.ClickListener) clickEvent -> handler.rebuildCounts(this));
+        btnRebuild.setVisible(currentUserHasRight("rebuild_report_counts"));
+        addComponent(btnRebuild, 2, 1);
         data.setContentMode(ContentMode.HTML);
         handler.fetchReportData(this);
         data.setWidth("600px");
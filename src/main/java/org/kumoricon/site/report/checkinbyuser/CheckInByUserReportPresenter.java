@@ -1,6 +1,6 @@
 package org.kumoricon.site.report.checkinbyuser;
 
-import org.kumoricon.model.attendee.AttendeeHistoryRepository;
+import org.kumoricon.service.report.CheckInTracker;
 import org.kumoricon.site.report.ReportPresenter;
 import org.kumoricon.site.report.ReportView;
 import org.slf4j.Logger;
@@ -13,14 +13,14 @@ import java.util.List;
 
 @Controller
 public class CheckInByUserReportPresenter implements ReportPresenter {
-    private final AttendeeHistoryRepository attendeeHistoryRepository;
+    private final CheckInTracker checkInTracker;
 
     private static final Logger log = LoggerFactory.getLogger(CheckInByUserReportPresenter.class);
 
 
     @Autowired
-    public CheckInByUserReportPresenter(AttendeeHistoryRepository attendeeHistoryRepository) {
-        this.attendeeHistoryRepository = attendeeHistoryRepository;
+    public CheckInByUserReportPresenter(CheckInTracker checkInTracker) {
+        this.checkInTracker = checkInTracker;
     }
 
     private static String buildTable(String title, List<Object[]> data) {
@@ -43,7 +43,9 @@ public class CheckInByUserReportPresenter implements ReportPresenter {
     public void fetchReportData(ReportView view) {
         StringBuilder report = new StringBuilder();
         report.append("<div class=\"kumoReport\">");
-        report.append(buildTable("Check Ins By User in Last 15 Minutes", attendeeHistoryRepository.checkInCountByUsers()));
+        report.append(buildTable(
+                String.format("Check Ins By User in Last %s Minutes", checkInTracker.getWindowMinutes()),
+                checkInTracker.countsByUser()));
         report.append("</div>");
         view.afterSuccessfulFetch(report.toString());
         log.info("{} viewed Check Ins By User Report", view.getCurrentUser());
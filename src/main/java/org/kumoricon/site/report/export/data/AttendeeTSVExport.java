@@ -1,24 +1,41 @@
 package org.kumoricon.site.report.export.data;
 
 import com.vaadin.server.StreamResource;
-import org.kumoricon.model.attendee.Attendee;
-import org.kumoricon.model.attendee.AttendeeRepository;
+import org.hibernate.*;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayInputStream;
-import java.nio.charset.Charset;
-import java.util.List;
+import javax.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Date;
 
+/**
+ * Exports all attendees as a tab-separated file. Rows are read from a database cursor and
+ * written to the download as the browser reads it, so memory use doesn't depend on the number
+ * of attendees.
+ */
 @Service
 public class AttendeeTSVExport extends BaseTSVExport implements Export {
     private static final String FILENAME="attendees.csv";
+    private static final int FETCH_SIZE = 500;
+    private static final int CLEAR_INTERVAL = 1000;
+    private static final String EXPORT_QUERY = "select a.id, a.firstName, a.lastName, a.fanName, a.badgeNumber, " +
+            "a.zip, a.country, a.phoneNumber, a.email, a.birthDate, a.emergencyContactFullName, " +
+            "a.emergencyContactPhone, a.parentFullName, a.parentPhone, a.parentFormReceived, a.preRegistered, " +
+            "b.name, a.checkedIn, a.checkInTime, a.paid, a.paidAmount from Attendee a left join a.badge b order by a.id";
 
-    private final AttendeeRepository attendeeRepository;
+    private final EntityManagerFactory entityManagerFactory;
+
+    private static final Logger log = LoggerFactory.getLogger(AttendeeTSVExport.class);
 
     @Autowired
-    public AttendeeTSVExport(AttendeeRepository repository) {
-        this.attendeeRepository = repository;
+    public AttendeeTSVExport(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
     }
 
     private String buildHeader() {
@@ -46,43 +63,84 @@ public class AttendeeTSVExport extends BaseTSVExport implements Export {
                "\n";
     }
 
-    private String buildTable(List<Attendee> data) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(buildHeader());
+    private static void appendRow(StringBuilder sb, Object[] row) {
+        sb.append(format(row[0].toString()));
+        sb.append(format((String) row[1]));            // First name
+        sb.append(format((String) row[2]));            // Last name
+        sb.append(format((String) row[3]));            // Fan name
+        sb.append(format((String) row[4]));            // Badge number
+        sb.append(format((String) row[5]));            // Zip
+        sb.append(format((String) row[6]));            // Country
+        sb.append(format((String) row[7]));            // Phone number
+        sb.append(format((String) row[8]));            // Email
+        sb.append(format((LocalDate) row[9]));         // Birth date
+        sb.append(format((String) row[10]));           // Emergency contact
+        sb.append(format((String) row[11]));           // Emergency phone
+        sb.append(format((String) row[12]));           // Parent name
+        sb.append(format((String) row[13]));           // Parent phone
+        sb.append(format((Boolean) row[14]));          // Parent form received
+        sb.append(format((Boolean) row[15]));          // Pre-registered
+        sb.append(format((String) row[16]));           // Badge type
+        sb.append(format((Boolean) row[17]));          // Checked in
+        sb.append(format((Date) row[18]));             // Check in time
+        sb.append(format((Boolean) row[19]));          // Paid
+        sb.append(format((BigDecimal) row[20]));       // Paid amount
+        sb.append("\n");
+    }
 
-        for (Attendee attendee : data) {
-            sb.append(format(attendee.getId().toString()));
-            sb.append(format(attendee.getFirstName()));
-            sb.append(format(attendee.getLastName()));
-            sb.append(format(attendee.getFanName()));
-            sb.append(format(attendee.getBadgeNumber()));
-            sb.append(format(attendee.getZip()));
-            sb.append(format(attendee.getCountry()));
-            sb.append(format(attendee.getPhoneNumber()));
-            sb.append(format(attendee.getEmail()));
-            sb.append(format(attendee.getBirthDate()));
-            sb.append(format(attendee.getEmergencyContactFullName()));
-            sb.append(format(attendee.getEmergencyContactPhone()));
-            sb.append(format(attendee.getParentFullName()));
-            sb.append(format(attendee.getParentPhone()));
-            sb.append(format(attendee.getParentFormReceived()));
-            sb.append(format(attendee.isPreRegistered()));
-            sb.append(format(attendee.getBadge().getName()));
-            sb.append(format(attendee.getCheckedIn()));
-            sb.append(format(attendee.getCheckInTime()));
-            sb.append(format(attendee.getPaid()));
-            sb.append(format(attendee.getPaidAmount()));
-            sb.append("\n");
-        }
+    /**
+     * Opens a read-only Hibernate session and a forward-only cursor over attendees. The session
+     * is cleared every CLEAR_INTERVAL rows and closed when the download stream is closed.
+     * @return Row source for TSVInputStream
+     */
+    private TSVInputStream.RowSource openRows() {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        Session session = sessionFactory.openSession();
+        try {
+            session.setDefaultReadOnly(true);
+            session.setFlushMode(FlushMode.MANUAL);
+            session.setCacheMode(CacheMode.IGNORE);
+            Transaction transaction = session.beginTransaction();
+            // MySQL Connector/J only streams rows one at a time with a fetch size of Integer.MIN_VALUE;
+            // any other value reads the whole result in to memory.
+            int fetchSize = sessionFactory.getDialect() instanceof MySQLDialect ? Integer.MIN_VALUE : FETCH_SIZE;
+            ScrollableResults results = session.createQuery(EXPORT_QUERY)
+                    .setReadOnly(true)
+                    .setFetchSize(fetchSize)
+                    .scroll(ScrollMode.FORWARD_ONLY);
+            return new TSVInputStream.RowSource() {
+                private int rows = 0;
 
-        return sb.toString();
+                @Override
+                public boolean next(StringBuilder row) {
+                    if (!results.next()) { return false; }
+                    appendRow(row, results.get());
+                    if (++rows % CLEAR_INTERVAL == 0) {
+                        session.clear();
+                    }
+                    return true;
+                }
+
+                @Override
+                public void close() {
+                    try {
+                        results.close();
+                        transaction.rollback();
+                    } finally {
+                        session.close();
+                        log.info("Exported {} attendees", rows);
+                    }
+                }
+            };
+        } catch (RuntimeException e) {
+            session.close();
+            throw e;
+        }
     }
 
     public StreamResource getStream() {
-        return new StreamResource((StreamResource.StreamSource) () -> {
-            String output = buildTable(attendeeRepository.findAll());
-            return new ByteArrayInputStream(output.getBytes(Charset.forName("UTF-8")));
-        }, getFilename());
+        return new StreamResource((StreamResource.StreamSource) () ->
+                new TSVInputStream(buildHeader(), openRows()), getFilename());
     }
 
     public String getFilename() {
@@ -0,0 +1,100 @@
+package org.kumoricon.site.report.export.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * InputStream that builds a tab-separated file one row at a time as it is read, so a download
+ * never holds more than one row and one buffer of bytes in memory no matter how many rows
+ * there are. The same StringBuilder and byte buffer are reused for every row.
+ */
+public class TSVInputStream extends InputStream {
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Supplies rows to TSVInputStream. Closed when the stream is closed.
+     */
+    public interface RowSource extends Closeable {
+        /**
+         * Appends the next row, including its trailing newline
+         * @param row Empty StringBuilder to append to
+         * @return False if there are no more rows
+         */
+        boolean next(StringBuilder row);
+    }
+
+    private final RowSource source;
+    private final StringBuilder row = new StringBuilder(512);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private CharBuffer chars;
+    private boolean finished = false;
+
+    /**
+     * @param header Header row, including its trailing newline
+     * @param source Data rows
+     */
+    public TSVInputStream(String header, RowSource source) {
+        this.source = source;
+        row.append(header);
+        chars = CharBuffer.wrap(row);
+        bytes.flip();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) { return -1; }
+        return bytes.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) { return 0; }
+        if (!fill()) { return -1; }
+        int count = Math.min(len, bytes.remaining());
+        bytes.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return bytes.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        source.close();
+    }
+
+    /**
+     * Makes sure there are bytes to read, encoding the next row if needed
+     * @return False at the end of the file
+     */
+    private boolean fill() {
+        while (!bytes.hasRemaining()) {
+            if (finished) { return false; }
+            if (!chars.hasRemaining()) {
+                row.setLength(0);
+                if (!source.next(row)) {
+                    finished = true;
+                    return false;
+                }
+                chars = CharBuffer.wrap(row);
+                encoder.reset();
+            }
+            bytes.clear();
+            encoder.encode(chars, bytes, true);
+            bytes.flip();
+        }
+        return true;
+    }
+}
@@ -1,15 +1,17 @@
 package org.kumoricon.site.report.export.data;
 
 import com.vaadin.server.StreamResource;
+import org.kumoricon.model.order.Payment;
 import org.kumoricon.model.session.Session;
 import org.kumoricon.model.session.SessionService;
 import org.kumoricon.model.user.User;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayInputStream;
-import java.nio.charset.Charset;
-import java.util.List;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
 
 @Service
 public class TillTSVExport extends BaseTSVExport implements Export {
@@ -29,33 +31,57 @@ public class TillTSVExport extends BaseTSVExport implements Export {
                "Payment\n";
     }
 
-    private String buildTable() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(buildHeader());
+    /**
+     * Rows are built as the download is read: one per payment type for each session, or one with
+     * an empty payment column for sessions without payments. Totals for every session are loaded
+     * with a single query before the first row.
+     * @return Row source for TSVInputStream
+     */
+    private TSVInputStream.RowSource buildRows() {
+        final Iterator<Session> sessions = sessionService.getAllSessions().iterator();
+        final Map<Integer, Map<Payment.PaymentType, BigDecimal>> totals =
+                sessionService.getTotalsByPaymentTypeForAllSessions();
 
-        List<Session> sessions = sessionService.getAllSessions();
+        return new TSVInputStream.RowSource() {
+            private Session session;
+            private Iterator<Map.Entry<Payment.PaymentType, BigDecimal>> sessionTotals = Collections.emptyIterator();
 
-        for (Session session : sessions) {
-            String[] totals = sessionService.buildTextTotalsForSession(session).split("\n");
-            User user = session.getUser();
-            for (String total : totals) {
-                sb.append(String.format("%s %s (%s: %s)\t",
+            @Override
+            public boolean next(StringBuilder row) {
+                String total;
+                if (sessionTotals.hasNext()) {
+                    total = formatTotal(sessionTotals.next());
+                } else if (sessions.hasNext()) {
+                    session = sessions.next();
+                    sessionTotals = totals.getOrDefault(session.getId(), Collections.emptyMap()).entrySet().iterator();
+                    total = sessionTotals.hasNext() ? formatTotal(sessionTotals.next()) : "";
+                } else {
+                    return false;
+                }
+
+                User user = session.getUser();
+                row.append(String.format("%s %s (%s: %s)\t",
                         user.getFirstName(), user.getLastName(), user.getId(), user.getUsername()));
-                sb.append(String.format("%s\t", session.getId()));
-                sb.append(String.format("%s\t", session.getStart()));
-                sb.append(String.format("%s\t", session.getEnd()));
-                sb.append(String.format("%s\t", total));
-                sb.append("\n");
+                row.append(String.format("%s\t", session.getId()));
+                row.append(String.format("%s\t", session.getStart()));
+                row.append(String.format("%s\t", session.getEnd()));
+                row.append(String.format("%s\t", total));
+                row.append("\n");
+                return true;
             }
-        }
-        return sb.toString();
+
+            @Override
+            public void close() {}
+        };
+    }
+
+    private static String formatTotal(Map.Entry<Payment.PaymentType, BigDecimal> total) {
+        return SessionService.formatTextTotal(total.getKey(), total.getValue());
     }
 
     public StreamResource getStream() {
-        return new StreamResource((StreamResource.StreamSource) () -> {
-            String output = buildTable();
-            return new ByteArrayInputStream(output.getBytes(Charset.forName("UTF-8")));
-        }, getFilename());
+        return new StreamResource((StreamResource.StreamSource) () ->
+                new TSVInputStream(buildHeader(), buildRows()), getFilename());
     }
 
     public String getFilename() {
@@ -1,5 +1,6 @@
 package org.kumoricon.site.report.till;
 
+import org.kumoricon.model.order.Payment;
 import org.kumoricon.model.session.Session;
 import org.kumoricon.model.session.SessionService;
 import org.kumoricon.model.user.User;
@@ -8,8 +9,12 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 @Controller
 public class TillReportPresenter {
@@ -28,6 +33,8 @@ public class TillReportPresenter {
         StringBuilder output = new StringBuilder();
 
         List<Session> sessions = sessionService.getAllSessions();
+        Map<Integer, Map<Payment.PaymentType, BigDecimal>> totals =
+                sessionService.getTotalsByPaymentTypeForAllSessions();
 
         // Header
         output.append("<div class=\"kumoReport\">");
@@ -54,9 +61,11 @@ public class TillReportPresenter {
             } else {
                 output.append("<td align=\"right\">open</td>");
             }
-            output.append(String.format("<td align=\"right\">$%s</td>", sessionService.getTotalForSession(session)));
+            Map<Payment.PaymentType, BigDecimal> sessionTotals =
+                    totals.getOrDefault(session.getId(), Collections.emptyMap());
+            output.append(String.format("<td align=\"right\">$%s</td>", sum(sessionTotals.values())));
             output.append(String.format("<td align=\"right\"><pre>%s</pre></td>",
-                    sessionService.buildTextTotalsForSession(session)));
+                    SessionService.buildTextTotals(sessionTotals)));
             output.append("</tr>");
         }
 
@@ -65,4 +74,12 @@ public class TillReportPresenter {
                 view.getCurrentUsername(), System.currentTimeMillis() - startTime);
         view.showData(output.toString());
     }
+
+    /**
+     * @param amounts Amounts
+     * @return Sum of amounts, or null if there aren't any (the same as SQL's sum())
+     */
+    private static BigDecimal sum(Collection<BigDecimal> amounts) {
+        return amounts.stream().reduce(BigDecimal::add).orElse(null);
+    }
 }
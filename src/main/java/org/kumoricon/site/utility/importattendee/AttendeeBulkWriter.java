@@ -0,0 +1,291 @@
+package org.kumoricon.site.utility.importattendee;
+
+import org.kumoricon.model.Record;
+import org.kumoricon.model.attendee.Attendee;
+import org.kumoricon.model.attendee.AttendeeHistory;
+import org.kumoricon.model.order.Order;
+import org.kumoricon.model.order.Payment;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes imported orders, payments, attendees and attendee history with JDBC batch inserts.
+ * Saving through Hibernate does one INSERT per row because Record uses IDENTITY ids, which turns
+ * off Hibernate's JDBC batching.
+ *
+ * Each call to write() is one transaction. IDs are assigned by the database and read back from
+ * each batch's generated keys, so orders taken at the same time as an import don't conflict with
+ * it. Only MySQL's driver is known to return a key for every row of a batch; with other databases
+ * inserts are sent one row at a time.
+ *
+ * With MySQL, add rewriteBatchedStatements=true to the datasource URL so that each batch is
+ * sent as one multi-row INSERT.
+ *
+ * Chunks may be written on a different thread than the one that built them, one at a time.
+ * Hibernate events don't fire for these rows; callers must notify AttendeeCommitListeners.
+ */
+class AttendeeBulkWriter implements Closeable {
+    private static final String INSERT_ORDER = "INSERT INTO orders (uuid, order_id, paid, " +
+            "order_taken_by_user_id, notes) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_PAYMENT = "INSERT INTO payments (uuid, amount, order_id, " +
+            "payment_taken_by_id, payment_type, payment_taken_at, payment_location, auth_number, session_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_PAYMENT = "UPDATE payments SET amount = amount + ? WHERE id = ?";
+    private static final String INSERT_ATTENDEE = "INSERT INTO attendees (uuid, first_name, last_name, " +
+            "legal_first_name, legal_last_name, name_is_legal_name, fan_name, badge_number, zip, country, " +
+            "phone_number, email, birth_date, emergency_contact_full_name, emergency_contact_phone, " +
+            "parent_is_emergency_contact, parent_full_name, parent_phone, parent_form_received, paid, " +
+            "paid_amount, comped_badge, badge_id, order_id, checked_in, check_in_time, pre_registered, " +
+            "badge_pre_printed) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, " +
+            "?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_HISTORY = "INSERT INTO attendeehistory (uuid, timestamp, user_id, " +
+            "attendee_id, message) VALUES (?, ?, ?, ?, ?)";
+    private static final String UPDATE_USER = "UPDATE users SET last_badge_number_created = ? WHERE id = ?";
+
+    private final Connection connection;
+    private final int batchSize;
+    private final int insertBatchSize;
+
+    /**
+     * @param dataSource Data source; one connection is held until close()
+     * @param batchSize Number of rows sent to the database per JDBC batch
+     * @throws SQLException Error getting a connection
+     */
+    AttendeeBulkWriter(DataSource dataSource, int batchSize) throws SQLException {
+        if (batchSize < 1) { throw new IllegalArgumentException("Batch size must be at least 1"); }
+        this.batchSize = batchSize;
+        this.connection = dataSource.getConnection();
+        this.connection.setAutoCommit(false);
+        String database = connection.getMetaData().getDatabaseProductName();
+        this.insertBatchSize = "MySQL".equalsIgnoreCase(database) || "MariaDB".equalsIgnoreCase(database) ?
+                batchSize : 1;
+    }
+
+    /**
+     * Inserts one chunk of imported data and commits it. Sets the ID of every inserted object.
+     * Rolls back if anything fails.
+     * @param chunk Data to save
+     * @throws SQLException Database error
+     */
+    void write(ImportChunk chunk) throws SQLException {
+        try {
+            insertOrders(chunk.orders);
+            insertPayments(chunk.payments);
+            updatePayments(chunk.paymentIncreases);
+            insertAttendees(chunk.attendees);
+            insertHistory(chunk.attendees);
+            try (PreparedStatement statement = connection.prepareStatement(UPDATE_USER)) {
+                statement.setInt(1, chunk.lastBadgeNumberCreated);
+                statement.setInt(2, chunk.userId);
+                statement.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException | RuntimeException ex) {
+            connection.rollback();
+            for (Order order : chunk.orders) { order.setId(null); }
+            for (Payment payment : chunk.payments) { payment.setId(null); }
+            for (Attendee attendee : chunk.attendees) {
+                attendee.setId(null);
+                for (AttendeeHistory history : attendee.getHistory()) { history.setId(null); }
+            }
+            throw ex;
+        }
+    }
+
+    private void insertOrders(List<Order> orders) throws SQLException {
+        if (orders.isEmpty()) { return; }
+        try (PreparedStatement statement = prepareInsert(INSERT_ORDER)) {
+            Batch batch = new Batch(statement, insertBatchSize);
+            for (Order order : orders) {
+                statement.setString(1, order.getUuid());
+                statement.setString(2, order.getOrderId());
+                statement.setBoolean(3, order.getPaid());
+                statement.setInt(4, order.getOrderTakenByUser().getId());
+                statement.setString(5, order.getNotes());
+                batch.add(order);
+            }
+            batch.finish();
+        }
+    }
+
+    private void insertPayments(List<Payment> payments) throws SQLException {
+        if (payments.isEmpty()) { return; }
+        try (PreparedStatement statement = prepareInsert(INSERT_PAYMENT)) {
+            Batch batch = new Batch(statement, insertBatchSize);
+            for (Payment payment : payments) {
+                statement.setString(1, payment.getUuid());
+                statement.setBigDecimal(2, payment.getAmount());
+                statement.setInt(3, payment.getOrder().getId());
+                setId(statement, 4, payment.getPaymentTakenBy() == null ? null : payment.getPaymentTakenBy().getId());
+                statement.setInt(5, payment.getPaymentType().ordinal());
+                statement.setTimestamp(6, payment.getPaymentTakenAt() == null ?
+                        null : Timestamp.valueOf(payment.getPaymentTakenAt()));
+                statement.setString(7, payment.getPaymentLocation());
+                statement.setString(8, payment.getAuthNumber());
+                statement.setInt(9, payment.getSession().getId());
+                batch.add(payment);
+            }
+            batch.finish();
+        }
+    }
+
+    private void updatePayments(Map<Payment, BigDecimal> increases) throws SQLException {
+        if (increases.isEmpty()) { return; }
+        try (PreparedStatement statement = connection.prepareStatement(UPDATE_PAYMENT)) {
+            Batch batch = new Batch(statement, batchSize);
+            for (Map.Entry<Payment, BigDecimal> increase : increases.entrySet()) {
+                statement.setBigDecimal(1, increase.getValue());
+                statement.setInt(2, increase.getKey().getId());
+                batch.add();
+            }
+            batch.finish();
+        }
+    }
+
+    private void insertAttendees(List<Attendee> attendees) throws SQLException {
+        if (attendees.isEmpty()) { return; }
+        try (PreparedStatement statement = prepareInsert(INSERT_ATTENDEE)) {
+            Batch batch = new Batch(statement, insertBatchSize);
+            for (Attendee attendee : attendees) {
+                statement.setString(1, attendee.getUuid());
+                statement.setString(2, attendee.getFirstName());
+                statement.setString(3, attendee.getLastName());
+                statement.setString(4, attendee.getLegalFirstName());
+                statement.setString(5, attendee.getLegalLastName());
+                setBoolean(statement, 6, attendee.getNameIsLegalName());
+                statement.setString(7, attendee.getFanName());
+                statement.setString(8, attendee.getBadgeNumber());
+                statement.setString(9, attendee.getZip());
+                statement.setString(10, attendee.getCountry());
+                statement.setString(11, attendee.getPhoneNumber());
+                statement.setString(12, attendee.getEmail());
+                statement.setDate(13, attendee.getBirthDate() == null ?
+                        null : Date.valueOf(attendee.getBirthDate()));
+                statement.setString(14, attendee.getEmergencyContactFullName());
+                statement.setString(15, attendee.getEmergencyContactPhone());
+                setBoolean(statement, 16, attendee.getParentIsEmergencyContact());
+                statement.setString(17, attendee.getParentFullName());
+                statement.setString(18, attendee.getParentPhone());
+                setBoolean(statement, 19, attendee.getParentFormReceived());
+                setBoolean(statement, 20, attendee.getPaid());
+                statement.setBigDecimal(21, attendee.getPaidAmount());
+                setBoolean(statement, 22, attendee.getCompedBadge());
+                setId(statement, 23, attendee.getBadge() == null ? null : attendee.getBadge().getId());
+                setId(statement, 24, attendee.getOrder() == null ? null : attendee.getOrder().getId());
+                setBoolean(statement, 25, attendee.getCheckedIn());
+                statement.setTimestamp(26, attendee.getCheckInTime() == null ?
+                        null : new Timestamp(attendee.getCheckInTime().getTime()));
+                statement.setBoolean(27, attendee.isPreRegistered());
+                statement.setBoolean(28, attendee.isBadgePrePrinted());
+                batch.add(attendee);
+            }
+            batch.finish();
+        }
+    }
+
+    private void insertHistory(List<Attendee> attendees) throws SQLException {
+        int count = 0;
+        for (Attendee attendee : attendees) {
+            count += attendee.getHistory().size();
+        }
+        if (count == 0) { return; }
+        try (PreparedStatement statement = prepareInsert(INSERT_HISTORY)) {
+            Batch batch = new Batch(statement, insertBatchSize);
+            for (Attendee attendee : attendees) {
+                for (AttendeeHistory history : attendee.getHistory()) {
+                    statement.setString(1, history.getUuid());
+                    statement.setTimestamp(2, history.getTimestamp() == null ?
+                            null : new Timestamp(history.getTimestamp().getTime()));
+                    setId(statement, 3, history.getUser() == null ? null : history.getUser().getId());
+                    statement.setInt(4, attendee.getId());
+                    statement.setString(5, history.getMessage());
+                    batch.add(history);
+                }
+            }
+            batch.finish();
+        }
+    }
+
+    private PreparedStatement prepareInsert(String sql) throws SQLException {
+        return connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+    }
+
+    private static void setBoolean(PreparedStatement statement, int index, Boolean value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.BOOLEAN);
+        } else {
+            statement.setBoolean(index, value);
+        }
+    }
+
+    private static void setId(PreparedStatement statement, int index, Integer id) throws SQLException {
+        if (id == null) {
+            statement.setNull(index, Types.INTEGER);
+        } else {
+            statement.setInt(index, id);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // Nothing left to roll back; every chunk was committed or rolled back by write()
+        }
+    }
+
+    /**
+     * Sends the statement's rows to the database every size rows. Inserted rows get their
+     * generated IDs when their batch is sent.
+     */
+    private static class Batch {
+        private final PreparedStatement statement;
+        private final int size;
+        private final List<Record> inserted = new ArrayList<>();
+        private int pending = 0;
+
+        Batch(PreparedStatement statement, int size) {
+            this.statement = statement;
+            this.size = size;
+        }
+
+        void add() throws SQLException {
+            statement.addBatch();
+            if (++pending >= size) { send(); }
+        }
+
+        void add(Record record) throws SQLException {
+            inserted.add(record);
+            add();
+        }
+
+        void finish() throws SQLException {
+            if (pending > 0) { send(); }
+        }
+
+        private void send() throws SQLException {
+            statement.executeBatch();
+            pending = 0;
+            if (inserted.isEmpty()) { return; }
+
+            int count = 0;
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                while (count < inserted.size() && keys.next()) {
+                    inserted.get(count++).setId(keys.getInt(1));
+                }
+            }
+            if (count < inserted.size()) {
+                throw new SQLException(String.format("Database returned %d generated IDs for %d rows",
+                        count, inserted.size()));
+            }
+            inserted.clear();
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package org.kumoricon.site.utility.importattendee;
 
-import com.google.gson.*;
 import org.kumoricon.model.attendee.Attendee;
+import org.kumoricon.model.attendee.AttendeeCommitListener;
 import org.kumoricon.model.badge.Badge;
 import org.kumoricon.model.badge.BadgeRepository;
 import org.kumoricon.model.order.Order;
@@ -15,14 +15,28 @@ import org.kumoricon.service.FieldCleaner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.sql.DataSource;
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.math.BigDecimal;
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 class AttendeeImporterService {
     private final SessionService sessionService;
@@ -33,14 +47,33 @@ class AttendeeImporterService {
 
     private final UserRepository userRepository;
 
+    private final DataSource dataSource;
+
+    private final List<AttendeeCommitListener> attendeeCommitListeners;
+
+    private final int batchSize;
+
+    private final int chunkSize;
+
     private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     private static final Logger log = LoggerFactory.getLogger(AttendeeImporterService.class);
 
-    AttendeeImporterService(SessionService sessionService, OrderRepository orderRepository, BadgeRepository badgeRepository, UserRepository userRepository) {
+    /**
+     * @param batchSize Number of rows sent to the database per JDBC batch
+     * @param chunkSize Number of attendees saved per transaction
+     */
+    AttendeeImporterService(SessionService sessionService, OrderRepository orderRepository, BadgeRepository badgeRepository,
+                            UserRepository userRepository, DataSource dataSource,
+                            List<AttendeeCommitListener> attendeeCommitListeners, int batchSize, int chunkSize) {
+        if (chunkSize < 1) { throw new IllegalArgumentException("Chunk size must be at least 1"); }
         this.sessionService = sessionService;
         this.orderRepository = orderRepository;
         this.badgeRepository = badgeRepository;
         this.userRepository = userRepository;
+        this.dataSource = dataSource;
+        this.attendeeCommitListeners = attendeeCommitListeners;
+        this.batchSize = batchSize;
+        this.chunkSize = chunkSize;
     }
 
     private HashMap<String, Badge> getBadgeHashMap() {
@@ -51,9 +84,17 @@ class AttendeeImporterService {
         return badges;
     }
 
+    /**
+     * Attendees are only added to existing orders by ID, so orders aren't loaded with their
+     * attendees and payments
+     * @return Map of order ID (string) to an Order with only its id and orderId set
+     */
     private HashMap<String, Order> getOrderHashMap() {
         HashMap<String, Order> orders = new HashMap<>();
-        for (Order o : orderRepository.findAll()) {
+        for (Object[] row : orderRepository.findAllOrderIds()) {
+            Order o = new Order();
+            o.setOrderId((String) row[0]);
+            o.setId((Integer) row[1]);
             orders.put(o.getOrderId(), o);
         }
         return orders;
@@ -87,139 +128,324 @@ class AttendeeImporterService {
         return String.format("ONL%1$05d", badgeNumber);
     }
 
-    private List<AttendeeRecord> loadFile(BufferedReader bufferedReader) {
-        Gson gson = new GsonBuilder().registerTypeAdapter(LocalDate.class,
-                (JsonDeserializer<LocalDate>) (json, type, jsonDeserializationContext) -> LocalDate.parse(json.getAsJsonPrimitive().getAsString(), DateTimeFormatter.ISO_LOCAL_DATE)).create();
-        AttendeeRecord[] output = gson.fromJson(bufferedReader, AttendeeRecord[].class);
-
-        return Arrays.asList(output);
-    }
+    /**
+     * Imports attendees from a JSON file. The file is read twice: first every record is validated,
+     * so that a bad record fails the import before anything is saved. Then records are read one at
+     * a time and passed through map and persist stages; each chunk of chunkSize attendees is saved
+     * in its own transaction on a background thread while the next chunk is read. If saving fails
+     * or the import is cancelled, the chunks before it stay imported.
+     * @param file JSON file
+     * @param user User doing the import
+     * @param progress Called with the number of attendees saved so far after each chunk is committed
+     * @param cancelRequested Checked while validating and before each chunk is saved
+     * @return Result message
+     * @throws CancellationException cancelRequested returned true
+     * @throws Exception Invalid record, or error reading or saving the file
+     */
+    public String importFromJSON(File file, User user, IntConsumer progress,
+                                 BooleanSupplier cancelRequested) throws Exception {
+        log.info("{} starting data import", user);
+        User currentUser = null;
+        Session session = null;
+        try (AttendeeRecordReader records = openRecords(file);
+             AttendeeBulkWriter writer = new AttendeeBulkWriter(dataSource, batchSize)) {
+            log.info("Validated {} lines", validateFile(file, getBadgeHashMap(), cancelRequested));
+            currentUser = userRepository.findOne(user.getId());
+            if (sessionService.userHasOpenSession(currentUser)) {
+                log.info("{} closed open session {} before import",
+                        currentUser, sessionService.getCurrentSessionForUser(currentUser));
+            }
+            session = sessionService.getNewSessionForUser(currentUser);
+            ImportRun run = new ImportRun(writer, currentUser, session, progress, cancelRequested);
 
+            try {
+                int count = 0;
+                AttendeeRecord record;
+                while ((record = records.read()) != null) {
+                    count++;
+                    if (count % 1000 == 0) { log.info("Loading line " + count); }
+                    run.add(run.map(record));
+                }
+                run.persist();
+                run.finish();
+                log.info("Read " + count + " lines");
+            } finally {
+                // Don't close the connection while a chunk is still being written
+                run.stop();
+            }
 
-    public String importFromJSON(InputStreamReader reader, User user) {
-        log.info("{} starting data import", user);
-        BufferedReader jsonFile = new BufferedReader(reader);
-        try {
-            List<AttendeeRecord> attendees = loadFile(jsonFile);
-            List<Attendee> attendeesToAdd = new ArrayList<>();
-            List<Order> ordersToAdd = new ArrayList<>();
+            log.info("{} done importing data", user);
+            return String.format("Imported %s attendees and %s orders", run.saved, run.newOrders.size());
 
-            HashMap<String, Badge> badges = getBadgeHashMap();
-            HashMap<String, Order> orders = getOrderHashMap();
-            User currentUser = userRepository.findOne(user.getId());
+        } catch (CancellationException ex) {
+            log.info("{} cancelled data import", user);
+            throw ex;
+        } catch (Exception ex) {
+            log.error("Error parsing file: {}", ex.getMessage(), ex);
+            throw ex;
+        } finally {
+            if (session != null) {
+                log.info("{} closing session used during import", currentUser);
+                sessionService.closeSessionForUser(currentUser);
+            }
+        }
+    }
 
+    /**
+     * Checks that every record in the file can be imported, without saving anything
+     * @param file JSON file
+     * @param badges Badge types by name
+     * @param cancelRequested Checked every 1000 records
+     * @return Number of records
+     * @throws CancellationException cancelRequested returned true
+     * @throws Exception Record can't be imported, or error reading the file
+     */
+    int validateFile(File file, Map<String, Badge> badges, BooleanSupplier cancelRequested) throws Exception {
+        try (AttendeeRecordReader records = openRecords(file)) {
             int count = 0;
-            for (AttendeeRecord record : attendees) {
+            AttendeeRecord record;
+            while ((record = records.read()) != null) {
                 count++;
-                if (count % 1000 == 0) { log.info("Loading line " + count); }
-
-                // Auto-generate order ID if it doesn't exist
-                if (record.orderId == null || record.orderId.trim().isEmpty()) {
-                    record.orderId = Order.generateOrderId();
+                if (count % 1000 == 0 && cancelRequested.getAsBoolean()) {
+                    throw new CancellationException("Import cancelled");
                 }
+                validate(record, count, badges);
+            }
+            return count;
+        }
+    }
 
-                Attendee attendee = new Attendee();
-                attendee.setFirstName(record.firstName);
-                attendee.setLastName(record.lastName);
-                attendee.setNameIsLegalName(record.nameOnIdIsPreferredName);
-                attendee.setLegalFirstName(record.firstNameOnId);
-                attendee.setLegalLastName(record.lastNameOnId);
-                attendee.setFanName(record.fanName);
-                attendee.setBadgeNumber(generateBadgeNumber(currentUser.getNextBadgeNumber()));
-                attendee.setZip(record.postal);
-                attendee.setCountry(record.country);
-                attendee.setPhoneNumber(FieldCleaner.cleanPhoneNumber(record.phone));
-                attendee.setEmail(record.email);
-                attendee.setBirthDate(LocalDate.parse(record.birthdate, formatter));
-                attendee.setEmergencyContactFullName(record.emergencyName);
-                attendee.setEmergencyContactPhone(FieldCleaner.cleanPhoneNumber(record.emergencyPhone));
-                attendee.setParentIsEmergencyContact(record.emergencyContactSameAsParent);
-                attendee.setParentFullName(record.parentName);
-                attendee.setParentPhone(FieldCleaner.cleanPhoneNumber(record.parentPhone));
-                attendee.setPaid(true);     // All are paid, there isn't a specific flag for it
-                try {
-                    attendee.setPaidAmount(new BigDecimal(record.amountPaidInCents / 100));
-                } catch (NumberFormatException e) {
-                    attendee.setPaidAmount(BigDecimal.ZERO);
-                }
+    /**
+     * Checks that the record can be imported
+     * @param record Record
+     * @param line Record number in the file, for error messages
+     * @param badges Badge types by name
+     * @throws Exception Record can't be imported
+     */
+    private void validate(AttendeeRecord record, int line, Map<String, Badge> badges) throws Exception {
+        if (!badges.containsKey(record.membershipType)) {
+            log.error("Badge type " + record.membershipType + " not found on line " + line);
+            throw new Exception("Badge type " + record.membershipType + " not found on line " + line);
+        }
+        try {
+            LocalDate.parse(record.birthdate, formatter);
+        } catch (DateTimeParseException | NullPointerException ex) {
+            log.error("Invalid birthdate " + record.birthdate + " on line " + line);
+            throw new Exception("Invalid birthdate " + record.birthdate + " on line " + line);
+        }
+    }
 
-                if (badges.containsKey(record.membershipType)) {
-                    attendee.setBadge(badges.get(record.membershipType));
-                } else {
-                    log.error("Badge type " + record.membershipType + " not found on line " + count);
-                    throw new RuntimeException("Badge type " + record.membershipType + " not found on line " + count);
-                }
+    private static AttendeeRecordReader openRecords(File file) throws IOException {
+        return new AttendeeRecordReader(new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8)));
+    }
 
-                if (orders.containsKey(record.orderId)) {
-                    Order currentOrder = orders.get(record.orderId);
-                    attendee.setOrder(currentOrder);
-                    currentOrder.addAttendee(attendee);
-                } else {
-                    Order o = new Order();
-                    o.setOrderTakenByUser(currentUser);
-                    o.setOrderId(record.orderId);
-                    o.addAttendee(attendee);
-                    orders.put(o.getOrderId(), o);
-                    ordersToAdd.add(o);
-                    attendee.setOrder(o);
-                }
-                if (!record.notes.isEmpty() && !record.notes.trim().isEmpty()) {
-                    attendee.addHistoryEntry(currentUser, record.notes);
-                }
-                if (!record.vipTShirtSize.trim().isEmpty()) {
-                    attendee.addHistoryEntry(currentUser, "VIP T-Shirt size: " + record.vipTShirtSize);
-                }
-                attendee.setPreRegistered(true);
-                attendeesToAdd.add(attendee);
+    /**
+     * State of one import. Validated records are mapped to attendees and collected in to a chunk
+     * on the calling thread; persist() hands the chunk to a background thread that saves it while
+     * the next chunk is read. At most one chunk is being saved at a time, so no more than two
+     * chunks are held in memory.
+     */
+    private class ImportRun {
+        private final AttendeeBulkWriter writer;
+        private final User currentUser;
+        private final Session session;
+        private final IntConsumer progress;
+        private final BooleanSupplier cancelRequested;
+        private final HashMap<String, Badge> badges = getBadgeHashMap();
+        private final HashMap<String, Order> existingOrders = getOrderHashMap();
+        private final HashMap<String, Order> newOrders = new HashMap<>();
+        private final HashMap<Order, Payment> payments = new HashMap<>();
+        private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "attendee-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private ImportChunk chunk;
+        private Set<Order> ordersInChunk = new LinkedHashSet<>();
+        private Future<Integer> saving;
+        private int saved = 0;
+
+        ImportRun(AttendeeBulkWriter writer, User currentUser, Session session, IntConsumer progress,
+                  BooleanSupplier cancelRequested) {
+            this.writer = writer;
+            this.currentUser = currentUser;
+            this.session = session;
+            this.progress = progress;
+            this.cancelRequested = cancelRequested;
+            this.chunk = new ImportChunk(currentUser.getId());
+        }
+
+        /**
+         * Creates the attendee for a validated record and adds it to its order, creating the
+         * order if it isn't in the database or earlier in the file
+         * @param record Record
+         * @return Attendee
+         */
+        Attendee map(AttendeeRecord record) {
+            // Auto-generate order ID if it doesn't exist
+            if (record.orderId == null || record.orderId.trim().isEmpty()) {
+                record.orderId = Order.generateOrderId();
             }
 
-            log.info("Read " + count + " lines");
-            log.info("Setting paid/unpaid status in {} orders", ordersToAdd.size());
+            Attendee attendee = new Attendee();
+            attendee.setFirstName(record.firstName);
+            attendee.setLastName(record.lastName);
+            attendee.setNameIsLegalName(record.nameOnIdIsPreferredName);
+            attendee.setLegalFirstName(record.firstNameOnId);
+            attendee.setLegalLastName(record.lastNameOnId);
+            attendee.setFanName(record.fanName);
+            attendee.setBadgeNumber(generateBadgeNumber(currentUser.getNextBadgeNumber()));
+            attendee.setZip(record.postal);
+            attendee.setCountry(record.country);
+            attendee.setPhoneNumber(FieldCleaner.cleanPhoneNumber(record.phone));
+            attendee.setEmail(record.email);
+            attendee.setBirthDate(LocalDate.parse(record.birthdate, formatter));
+            attendee.setEmergencyContactFullName(record.emergencyName);
+            attendee.setEmergencyContactPhone(FieldCleaner.cleanPhoneNumber(record.emergencyPhone));
+            attendee.setParentIsEmergencyContact(record.emergencyContactSameAsParent);
+            attendee.setParentFullName(record.parentName);
+            attendee.setParentPhone(FieldCleaner.cleanPhoneNumber(record.parentPhone));
+            attendee.setPaid(true);     // All are paid, there isn't a specific flag for it
+            attendee.setPaidAmount(new BigDecimal(record.amountPaidInCents / 100));
+            attendee.setBadge(badges.get(record.membershipType));
+
+            if (newOrders.containsKey(record.orderId)) {
+                Order currentOrder = newOrders.get(record.orderId);
+                attendee.setOrder(currentOrder);
+                currentOrder.addAttendee(attendee);
+                ordersInChunk.add(currentOrder);
+            } else if (existingOrders.containsKey(record.orderId)) {
+                // Order was already in the database before this import
+                attendee.setOrder(existingOrders.get(record.orderId));
+            } else {
+                Order o = new Order();
+                o.setOrderTakenByUser(currentUser);
+                o.setOrderId(record.orderId);
+                o.addAttendee(attendee);
+                newOrders.put(o.getOrderId(), o);
+                chunk.orders.add(o);
+                ordersInChunk.add(o);
+                attendee.setOrder(o);
+            }
+            if (record.notes != null && !record.notes.trim().isEmpty()) {
+                attendee.addHistoryEntry(currentUser, record.notes);
+            }
+            if (record.vipTShirtSize != null && !record.vipTShirtSize.trim().isEmpty()) {
+                attendee.addHistoryEntry(currentUser, "VIP T-Shirt size: " + record.vipTShirtSize);
+            }
+            attendee.setPreRegistered(true);
+            return attendee;
+        }
 
-            if (sessionService.userHasOpenSession(currentUser)) {
-                log.info("{} closed open session {} before import",
-                        currentUser, sessionService.getCurrentSessionForUser(currentUser));
+        /**
+         * Adds an attendee to the current chunk, and persists the chunk if it is full
+         * @param attendee Attendee
+         * @throws Exception Error saving the previous chunk
+         */
+        void add(Attendee attendee) throws Exception {
+            chunk.attendees.add(attendee);
+            if (chunk.attendees.size() >= chunkSize) {
+                persist();
             }
-            Session session = sessionService.getNewSessionForUser(currentUser);
-            for (Order o : ordersToAdd) {
-                validatePaidStatus(o);
+        }
+
+        /**
+         * Sets paid status and payments for the orders in the current chunk, waits for the
+         * previous chunk to be saved, then starts saving this one in the background.
+         * @throws CancellationException Import was cancelled; the current chunk isn't saved
+         * @throws Exception Invalid order, or error saving the previous chunk
+         */
+        void persist() throws Exception {
+            if (chunk.attendees.isEmpty()) { return; }
+            if (cancelRequested.getAsBoolean()) {
+                throw new CancellationException("Import cancelled");
+            }
+            Set<Order> createdInChunk = new HashSet<>(chunk.orders);
+            for (Order o : ordersInChunk) {
+                // Order's attendee list only holds attendees from this chunk
+                if (createdInChunk.contains(o)) {
+                    validatePaidStatus(o);
+                } else {
+                    for (Attendee a : o.getAttendeeList()) {
+                        if (!a.getPaid().equals(o.getPaid())) {
+                            log.error("Error: Order {} has both paid and unpaid. This shouldn't happen!", o);
+                            throw new Exception("Error: Order " + o + " has both paid and unpaid attendees");
+                        }
+                    }
+                }
                 if (o.getPaid()) {
-                    Payment p = new Payment();
-                    p.setAmount(o.getTotalAmount());
-                    p.setPaymentType(Payment.PaymentType.PREREG);
-                    p.setPaymentTakenAt(LocalDateTime.now());
-                    p.setPaymentLocation("kumoricon.org");
-                    p.setPaymentTakenBy(currentUser);
-                    p.setSession(session);
-                    p.setOrder(o);
-                    o.addPayment(p);
+                    Payment p = payments.get(o);
+                    if (p == null) {
+                        p = new Payment();
+                        p.setAmount(o.getTotalAmount());
+                        p.setPaymentType(Payment.PaymentType.PREREG);
+                        p.setPaymentTakenAt(LocalDateTime.now());
+                        p.setPaymentLocation("kumoricon.org");
+                        p.setPaymentTakenBy(currentUser);
+                        p.setSession(session);
+                        p.setOrder(o);
+                        payments.put(o, p);
+                        chunk.payments.add(p);
+                    } else {
+                        chunk.paymentIncreases.put(p, o.getTotalAmount());
+                    }
                 }
+                o.getAttendeeList().clear();
             }
+            chunk.lastBadgeNumberCreated = currentUser.getLastBadgeNumberCreated();
 
+            waitForSave();
+            ImportChunk toSave = chunk;
+            saving = executor.submit(() -> save(toSave));
+            chunk = new ImportChunk(currentUser.getId());
+            ordersInChunk = new LinkedHashSet<>();
+        }
 
-            log.info("{} saving {} orders and {} attendees to database", user, ordersToAdd.size(), attendeesToAdd.size());
-            orderRepository.save(ordersToAdd);
-
-            userRepository.save(currentUser);
-
-            log.info("{} closing session used during import");
-            sessionService.closeSessionForUser(currentUser);
-
-            jsonFile.close();
+        /**
+         * Waits for the last chunk to be saved
+         * @throws Exception Error saving it
+         */
+        void finish() throws Exception {
+            waitForSave();
+        }
 
-            log.info("{} done importing data", user);
-            return String.format("Imported %s attendees and %s orders", attendeesToAdd.size(), ordersToAdd.size());
+        /**
+         * Waits for any chunk being saved, ignoring errors, and stops the background thread
+         */
+        void stop() {
+            try {
+                waitForSave();
+            } catch (Exception ignored) {
+                // Already reported by whatever stopped the import
+            }
+            executor.shutdown();
+        }
 
-        } catch (Exception ex) {
-            log.error("Error parsing file: ", ex.getMessage(), ex);
-            return "Error parsing file: " + ex.getMessage();
-        } finally {
+        private void waitForSave() throws Exception {
+            if (saving == null) { return; }
             try {
-                jsonFile.close();
-            } catch (IOException ex) {
-                log.error("Error closing file", ex);
+                saved += saving.get();
+            } catch (ExecutionException ex) {
+                throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+            } finally {
+                saving = null;
             }
+            log.info("{} saved {} attendees", currentUser, saved);
+            progress.accept(saved);
         }
 
+        /**
+         * Runs on the background thread
+         * @return Number of attendees saved
+         */
+        private int save(ImportChunk toSave) throws SQLException {
+            writer.write(toSave);
+            for (Attendee attendee : toSave.attendees) {
+                for (AttendeeCommitListener listener : attendeeCommitListeners) {
+                    listener.attendeeInsertedInBulk(attendee);
+                }
+            }
+            return toSave.attendees.size();
+        }
     }
 }
@@ -0,0 +1,57 @@
+package org.kumoricon.site.utility.importattendee;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads attendee records one at a time from a JSON array of records, so that the whole file is
+ * never held in memory.
+ */
+class AttendeeRecordReader implements Closeable {
+    private final Gson gson = new Gson();
+    private final JsonReader reader;
+    private boolean started = false;
+    private boolean finished = false;
+
+    /**
+     * @param reader JSON file containing an array of AttendeeRecords
+     */
+    AttendeeRecordReader(Reader reader) {
+        this.reader = new JsonReader(reader);
+    }
+
+    /**
+     * @return Next record, or null after the last one
+     * @throws IOException Error reading the file or the file isn't an array of records
+     */
+    AttendeeRecord read() throws IOException {
+        if (finished) { return null; }
+        if (!started) {
+            if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                throw new IOException("Expected an array of attendees but found " + reader.peek());
+            }
+            reader.beginArray();
+            started = true;
+        }
+        while (reader.hasNext()) {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();      // Skip null entries
+            } else {
+                return gson.fromJson(reader, AttendeeRecord.class);
+            }
+        }
+        reader.endArray();
+        finished = true;
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -2,9 +2,6 @@ package org.kumoricon.site.utility.importattendee;
 
 
 import com.vaadin.ui.Upload;
-import org.kumoricon.model.badge.BadgeRepository;
-import org.kumoricon.model.order.OrderRepository;
-import org.kumoricon.model.session.SessionService;
 import org.kumoricon.model.user.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,8 +10,7 @@ import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Controller;
 
 import java.io.*;
-
-import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.concurrent.RejectedExecutionException;
 
 
 @Controller
@@ -22,17 +18,13 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 public class ImportAttendeePresenter {
     private static final Logger log = LoggerFactory.getLogger(ImportAttendeePresenter.class);
 
-    private final SessionService sessionService;
-    private final OrderRepository orderRepository;
-    private final BadgeRepository badgeRepository;
+    private final ImportJobService importJobService;
     private final UserRepository userRepository;
     private ImportAttendeeView view;
 
     @Autowired
-    public ImportAttendeePresenter(SessionService sessionService, OrderRepository orderRepository, BadgeRepository badgeRepository, UserRepository userRepository) {
-        this.sessionService = sessionService;
-        this.orderRepository = orderRepository;
-        this.badgeRepository = badgeRepository;
+    public ImportAttendeePresenter(ImportJobService importJobService, UserRepository userRepository) {
+        this.importJobService = importJobService;
         this.userRepository = userRepository;
     }
 
@@ -48,10 +40,11 @@ public class ImportAttendeePresenter {
             // Create upload stream
             FileOutputStream fos; // Stream to write to
             try {
-                // Open the file for writing.
-                file = new File("/tmp/" + filename);
+                // Open the file for writing. Uploads may wait in the import queue, so each
+                // one gets its own file.
+                file = File.createTempFile("import", ".json");
                 fos = new FileOutputStream(file);
-            } catch (final java.io.FileNotFoundException e) {
+            } catch (final IOException e) {
                 log.error("When importing attendees, could not open file {}", e.getMessage(), e);
                 view.notifyError("Could not open file<br/>" + e.getMessage());
                 return null;
@@ -60,35 +53,50 @@ public class ImportAttendeePresenter {
         }
 
         public void uploadSucceeded(Upload.SucceededEvent event) {
-            AttendeeImporterService importer = new AttendeeImporterService(sessionService, orderRepository, badgeRepository, userRepository);
-            view.clearStatus();
-            String result;
-
             try {
-                InputStreamReader reader = new InputStreamReader(new FileInputStream(file), UTF_8);
-                result = importer.importFromJSON(reader, view.getCurrentUser());
-//                result = importer.importFromTSV(reader, view.getCurrentUser());
-                reader.close();
-            } catch (Exception e) {
-                log.error("Error importing attendees: ", e.getMessage());
-                result = e.getMessage();
-            } finally {
-                if (!file.delete()) {
-                    log.error("Error deleting file " + file.getAbsolutePath());
-                }
+                ImportJob job = importJobService.submit(file, event.getFilename(), view.getCurrentUser());
+                log.info("{} uploaded {} for import", view.getCurrentUsername(), event.getFilename());
+                view.showJob(job);
+            } catch (RejectedExecutionException e) {
+                view.notifyError(e.getMessage());
             }
-            view.appendStatus(result);
-
-            // Refresh user info in UI
-            view.setLoggedInUser(userRepository.findOne(view.getCurrentUser().getId()));
-
+            showJobs();
         }
 
         public void uploadFailed(Upload.FailedEvent event) {
+            if (file != null && !file.delete()) {
+                log.error("Error deleting file " + file.getAbsolutePath());
+            }
             view.notifyError(event.toString());
         }
     }
 
+    /**
+     * Updates the view with the current state of the import it is following and the list of jobs
+     * @param jobId ID of the import the view is following
+     */
+    public void refresh(int jobId) {
+        ImportJob job = importJobService.getJob(jobId);
+        if (job != null) {
+            view.showJob(job);
+            if (job.getState().isFinished()) {
+                // Refresh user info in UI; the import changes the user's last badge number
+                view.setLoggedInUser(userRepository.findOne(view.getCurrentUser().getId()));
+            }
+        }
+        showJobs();
+    }
+
+    public void showJobs() {
+        view.showJobs(importJobService.getJobs());
+    }
+
+    public void cancel(int jobId) {
+        if (importJobService.cancel(jobId)) {
+            log.info("{} cancelled import {}", view.getCurrentUsername(), jobId);
+            refresh(jobId);
+        }
+    }
+
     public void setView(ImportAttendeeView view) { this.view = view; }
 }
-
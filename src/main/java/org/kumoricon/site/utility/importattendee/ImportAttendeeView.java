@@ -3,14 +3,14 @@ package org.kumoricon.site.utility.importattendee;
 import com.vaadin.navigator.View;
 import com.vaadin.server.Sizeable;
 import com.vaadin.spring.annotation.SpringView;
+import com.vaadin.shared.Registration;
 import com.vaadin.spring.annotation.ViewScope;
-import com.vaadin.ui.Label;
-import com.vaadin.ui.TextArea;
-import com.vaadin.ui.Upload;
+import com.vaadin.ui.*;
 import org.kumoricon.BaseGridView;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.annotation.PostConstruct;
+import java.util.List;
 
 @ViewScope
 @SpringView(name = ImportAttendeeView.VIEW_NAME)
@@ -22,6 +22,10 @@ public class ImportAttendeeView extends BaseGridView implements View {
 
     private final Label instructions = new Label("Upload a data file containing pre-registered attendees:");
     private final TextArea status = new TextArea("");
+    private final Button cancel = new Button("Cancel Import");
+    private final Grid<ImportJob> jobGrid = new Grid<>("Imports");
+    private Integer jobId;
+    private Registration pollRegistration;
 
     @Autowired
     public ImportAttendeeView(ImportAttendeePresenter handler) {
@@ -33,7 +37,7 @@ public class ImportAttendeeView extends BaseGridView implements View {
         handler.setView(this);
 
         setColumns(3);
-        setRows(2);
+        setRows(4);
         setColumnExpandRatio(1, 5);
 
 
@@ -47,13 +51,61 @@ public class ImportAttendeeView extends BaseGridView implements View {
         status.setWidth(600, Sizeable.Unit.PIXELS);
         status.setEnabled(false);
         addComponent(status, 1, 1);
+
+        cancel.setEnabled(false);
+        cancel.addClickListener(c -> {
+            if (jobId != null) { handler.cancel(jobId); }
+        });
+        addComponent(cancel, 0, 2);
+
+        jobGrid.addColumn(ImportJob::getId).setCaption("ID");
+        jobGrid.addColumn(ImportJob::getFilename).setCaption("File");
+        jobGrid.addColumn(ImportJob::getUsername).setCaption("User");
+        jobGrid.addColumn(ImportJob::getState).setCaption("Status");
+        jobGrid.addColumn(ImportJob::getRowsProcessed).setCaption("Attendees");
+        jobGrid.addColumn(ImportJob::getRowsPerSecond).setCaption("Attendees/sec");
+        jobGrid.setSelectionMode(Grid.SelectionMode.NONE);
+        jobGrid.setWidth(800, Sizeable.Unit.PIXELS);
+        addComponent(jobGrid, 0, 3, 1, 3);
+        handler.showJobs();
+    }
+
+    /**
+     * Shows the progress of an import, and checks for updates every second until it finishes
+     * @param job Import job
+     */
+    public void showJob(ImportJob job) {
+        jobId = job.getId();
+        status.setValue(String.format("Import %s (%s): %s\nAttendees saved: %s (%s per second)\n%s",
+                job.getId(), job.getFilename(), job.getState(), job.getRowsProcessed(),
+                job.getRowsPerSecond(), job.getResult()));
+        boolean running = !job.getState().isFinished();
+        cancel.setEnabled(running && !job.isCancelRequested());
+        setPolling(running);
     }
 
-    public void appendStatus(String s) {
-        status.setValue(status.getValue() + s + "\n");
+    public void showJobs(List<ImportJob> jobs) {
+        jobGrid.setItems(jobs);
     }
 
-    public void clearStatus() { status.clear(); }
+    private void setPolling(boolean enabled) {
+        UI ui = getUI();
+        if (ui == null) { return; }
+        if (enabled && pollRegistration == null) {
+            ui.setPollInterval(1000);
+            pollRegistration = ui.addPollListener(e -> handler.refresh(jobId));
+        } else if (!enabled && pollRegistration != null) {
+            pollRegistration.remove();
+            pollRegistration = null;
+            ui.setPollInterval(-1);
+        }
+    }
+
+    @Override
+    public void detach() {
+        setPolling(false);
+        super.detach();
+    }
 
     public String getRequiredRight() { return REQUIRED_RIGHT; }
 }
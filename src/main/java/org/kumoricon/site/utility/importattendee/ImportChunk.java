@@ -0,0 +1,34 @@
+package org.kumoricon.site.utility.importattendee;
+
+import org.kumoricon.model.attendee.Attendee;
+import org.kumoricon.model.order.Order;
+import org.kumoricon.model.order.Payment;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Imported data saved in one transaction by AttendeeBulkWriter. Once a chunk is handed to the
+ * writer, the importer doesn't change it or the orders and payments it holds.
+ */
+class ImportChunk {
+    /** New orders */
+    final List<Order> orders = new ArrayList<>();
+    /** New payments. Their orders are in this chunk or an earlier one */
+    final List<Payment> payments = new ArrayList<>();
+    /** Amounts to add to payments saved by an earlier chunk */
+    final Map<Payment, BigDecimal> paymentIncreases = new LinkedHashMap<>();
+    /** New attendees, with their history. Their orders are in this chunk or an earlier one */
+    final List<Attendee> attendees = new ArrayList<>();
+    /** ID of the user doing the import */
+    final Integer userId;
+    /** The user's last badge number after the attendees in this chunk */
+    int lastBadgeNumberCreated;
+
+    ImportChunk(Integer userId) {
+        this.userId = userId;
+    }
+}
@@ -0,0 +1,75 @@
+package org.kumoricon.site.utility.importattendee;
+
+import java.time.LocalDateTime;
+
+/**
+ * A pre-registered attendee import running in the background. Updated by the import thread and
+ * read by the import view, so every field is volatile.
+ */
+public class ImportJob {
+    public enum State {
+        QUEUED, RUNNING, DONE, FAILED, CANCELLED;
+
+        public boolean isFinished() { return this == DONE || this == FAILED || this == CANCELLED; }
+    }
+
+    private final int id;
+    private final String filename;
+    private final String username;
+    private final LocalDateTime submittedAt = LocalDateTime.now();
+    private volatile State state = State.QUEUED;
+    private volatile int rowsProcessed = 0;
+    private volatile long startedNanos;
+    private volatile long finishedNanos;
+    private volatile boolean cancelRequested = false;
+    private volatile String result = "";
+
+    ImportJob(int id, String filename, String username) {
+        this.id = id;
+        this.filename = filename;
+        this.username = username;
+    }
+
+    public int getId() { return id; }
+    public String getFilename() { return filename; }
+    public String getUsername() { return username; }
+    public LocalDateTime getSubmittedAt() { return submittedAt; }
+    public State getState() { return state; }
+    public int getRowsProcessed() { return rowsProcessed; }
+    public boolean isCancelRequested() { return cancelRequested; }
+    public String getResult() { return result; }
+
+    /**
+     * @return Attendees saved per second while the job ran, or 0 before it starts
+     */
+    public long getRowsPerSecond() {
+        if (startedNanos == 0) { return 0; }
+        long end = state.isFinished() ? finishedNanos : System.nanoTime();
+        double seconds = (end - startedNanos) / 1_000_000_000.0;
+        return seconds > 0 ? Math.round(rowsProcessed / seconds) : 0;
+    }
+
+    /**
+     * Asks the import to stop. A running import stops before saving its next chunk; chunks
+     * already saved stay imported. A queued import doesn't start.
+     */
+    void requestCancel() { cancelRequested = true; }
+
+    void started() {
+        startedNanos = System.nanoTime();
+        state = State.RUNNING;
+    }
+
+    void setRowsProcessed(int rowsProcessed) { this.rowsProcessed = rowsProcessed; }
+
+    void finished(State state, String result) {
+        finishedNanos = System.nanoTime();
+        this.result = result;
+        this.state = state;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[Import %s: %s]", id, filename);
+    }
+}
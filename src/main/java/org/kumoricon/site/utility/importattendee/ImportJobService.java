@@ -0,0 +1,196 @@
+package org.kumoricon.site.utility.importattendee;
+
+import org.kumoricon.model.attendee.AttendeeCommitListener;
+import org.kumoricon.model.badge.BadgeRepository;
+import org.kumoricon.model.order.OrderRepository;
+import org.kumoricon.model.session.SessionService;
+import org.kumoricon.model.user.User;
+import org.kumoricon.model.user.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs pre-registered attendee imports in the background so the upload request returns right away.
+ * Imports run on kumoreg.import.threads threads (default 1); up to kumoreg.import.queueSize more
+ * (default 5) wait in a queue, and further uploads are refused. Each user may only have one import
+ * queued or running, since imports number badges from the user's last badge number and close the
+ * user's till session when they finish.
+ *
+ * Keeps the last MAX_FINISHED_JOBS finished jobs along with queued and running ones, so the import
+ * view can show their progress.
+ */
+@Service
+public class ImportJobService {
+    private static final int MAX_FINISHED_JOBS = 20;
+    private static final Logger log = LoggerFactory.getLogger(ImportJobService.class);
+
+    private final Importer importer;
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final Map<Integer, ImportJob> jobs = new LinkedHashMap<>();
+
+    @Autowired
+    public ImportJobService(SessionService sessionService, OrderRepository orderRepository,
+                            BadgeRepository badgeRepository, UserRepository userRepository,
+                            DataSource dataSource, List<AttendeeCommitListener> attendeeCommitListeners,
+                            @Value("${kumoreg.import.batchSize:500}") int batchSize,
+                            @Value("${kumoreg.import.chunkSize:5000}") int chunkSize,
+                            @Value("${kumoreg.import.threads:1}") int threads,
+                            @Value("${kumoreg.import.queueSize:5}") int queueSize) {
+        this(threads, queueSize, (file, user, job) -> {
+            AttendeeImporterService importer = new AttendeeImporterService(sessionService, orderRepository,
+                    badgeRepository, userRepository, dataSource, attendeeCommitListeners, batchSize, chunkSize);
+            return importer.importFromJSON(file, user, job::setRowsProcessed, job::isCancelRequested);
+        });
+    }
+
+    ImportJobService(int threads, int queueSize, Importer importer) {
+        this.importer = importer;
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueSize, 1)), r -> {
+                    Thread thread = new Thread(r, "attendee-import-job-" + threadNumber.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Imports one file for a job. Must throw CancellationException if the job is cancelled.
+     */
+    interface Importer {
+        String importFile(File file, User user, ImportJob job) throws Exception;
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queues an import. The file is deleted when the import finishes.
+     * @param file Uploaded JSON file
+     * @param filename Name of the file as uploaded, for display
+     * @param user User doing the import
+     * @return Job
+     * @throws RejectedExecutionException The user already has an import queued or running, or too
+     *                                     many imports are already queued
+     */
+    public ImportJob submit(File file, String filename, User user) {
+        ImportJob job = new ImportJob(nextId.getAndIncrement(), filename, user.getUsername());
+        synchronized (jobs) {
+            for (ImportJob existing : jobs.values()) {
+                if (!existing.getState().isFinished() && existing.getUsername().equals(user.getUsername())) {
+                    log.warn("{} import of {} refused, {} is not finished", user, filename, existing);
+                    deleteFile(file);
+                    throw new RejectedExecutionException(
+                            "Your previous import hasn't finished yet, try again when it's done");
+                }
+            }
+            jobs.put(job.getId(), job);
+        }
+        try {
+            executor.execute(() -> run(job, file, user));
+        } catch (RejectedExecutionException ex) {
+            log.warn("{} import of {} refused, too many imports queued", user, filename);
+            finish(job, ImportJob.State.FAILED, "Too many imports are queued, try again later");
+            deleteFile(file);
+            throw new RejectedExecutionException("Too many imports are queued, try again later", ex);
+        }
+        log.info("{} queued {}", user, job);
+        return job;
+    }
+
+    /**
+     * @param id Job ID
+     * @return Job, or null if it isn't known
+     */
+    public ImportJob getJob(int id) {
+        synchronized (jobs) {
+            return jobs.get(id);
+        }
+    }
+
+    /**
+     * @return Queued, running and recently finished jobs, oldest first
+     */
+    public List<ImportJob> getJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    /**
+     * Cancels a job. A running job stops before it saves its next chunk.
+     * @param id Job ID
+     * @return True if the job was queued or running
+     */
+    public boolean cancel(int id) {
+        ImportJob job = getJob(id);
+        if (job == null || job.getState().isFinished()) { return false; }
+        job.requestCancel();
+        return true;
+    }
+
+    private void run(ImportJob job, File file, User user) {
+        try {
+            if (job.isCancelRequested()) {
+                finish(job, ImportJob.State.CANCELLED, "Cancelled before starting");
+                return;
+            }
+            job.started();
+            finish(job, ImportJob.State.DONE, importer.importFile(file, user, job));
+        } catch (CancellationException ex) {
+            finish(job, ImportJob.State.CANCELLED,
+                    String.format("Cancelled. Imported %s attendees before cancelling", job.getRowsProcessed()));
+        } catch (Exception ex) {
+            log.error("Error importing attendees: {}", ex.getMessage(), ex);
+            String result = "Error parsing file: " + ex.getMessage();
+            if (job.getRowsProcessed() > 0) {
+                result += String.format("\nImported %s attendees before the error", job.getRowsProcessed());
+            }
+            finish(job, ImportJob.State.FAILED, result);
+        } finally {
+            deleteFile(file);
+        }
+    }
+
+    private void finish(ImportJob job, ImportJob.State state, String result) {
+        job.finished(state, result);
+        log.info("{} {}: {}", job, state, result);
+        synchronized (jobs) {
+            int finished = 0;
+            for (ImportJob j : jobs.values()) {
+                if (j.getState().isFinished()) { finished++; }
+            }
+            // Oldest jobs come first
+            for (Iterator<ImportJob> it = jobs.values().iterator();
+                 it.hasNext() && finished > MAX_FINISHED_JOBS; ) {
+                if (it.next().getState().isFinished()) {
+                    it.remove();
+                    finished--;
+                }
+            }
+        }
+    }
+
+    private static void deleteFile(File file) {
+        if (!file.delete()) {
+            log.error("Error deleting file " + file.getAbsolutePath());
+        }
+    }
+}
@@ -147,6 +147,7 @@ public class LoadBaseDataPresenter {
                 {"view_role_report", "View registration system role report"},
                 {"view_till_report", "View till report"},
                 {"view_export", "Export information/reports"},
+                {"rebuild_report_counts", "Rebuild check in counts used by reports from attendee records"},
                 {"manage_staff", "Add/edit users and reset passwords"},
                 {"manage_pass_types", "Add/edit badge types"},
                 {"manage_roles", "Add/edit security roles"},
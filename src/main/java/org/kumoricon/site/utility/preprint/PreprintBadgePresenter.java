@@ -63,7 +63,10 @@ public class PreprintBadgePresenter {
         attendeeRepository.setAttendeesPrePrinted(badge);
 
         log.info("{} pre-printing {} badges", view.getCurrentUsername(), attendees.size());
-        BadgePrintFormatter formatter = getBadgeFormatter(view, attendees);
+        // Large jobs are printed in chunks; only show the first one instead of holding every
+        // badge in memory
+        List<Attendee> preview = attendees.subList(0, Math.min(attendees.size(), badgePrintService.getChunkSize()));
+        BadgePrintFormatter formatter = getBadgeFormatter(view, preview);
         view.showPDF(formatter);
         try {
 
@@ -0,0 +1,23 @@
+package org.kumoricon.site.utility.printqueue;
+
+import org.kumoricon.service.print.PrintQueueService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+
+@Controller
+public class PrintQueuePresenter {
+    private final PrintQueueService printQueueService;
+
+    @Autowired
+    public PrintQueuePresenter(PrintQueueService printQueueService) {
+        this.printQueueService = printQueueService;
+    }
+
+    /**
+     * Updates the view with queued, printing and recently finished print jobs
+     * @param view View
+     */
+    public void showJobs(PrintQueueView view) {
+        view.showJobs(printQueueService.getJobs());
+    }
+}
@@ -0,0 +1,83 @@
+package org.kumoricon.site.utility.printqueue;
+
+import com.vaadin.navigator.View;
+import com.vaadin.server.Sizeable;
+import com.vaadin.shared.Registration;
+import com.vaadin.spring.annotation.SpringView;
+import com.vaadin.spring.annotation.ViewScope;
+import com.vaadin.ui.Grid;
+import com.vaadin.ui.UI;
+import org.kumoricon.BaseGridView;
+import org.kumoricon.service.print.PrintJob;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.annotation.PostConstruct;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+@ViewScope
+@SpringView(name = PrintQueueView.VIEW_NAME)
+public class PrintQueueView extends BaseGridView implements View {
+    public static final String VIEW_NAME = "printQueue";
+    public static final String REQUIRED_RIGHT = null;
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final PrintQueuePresenter handler;
+
+    private final Grid<PrintJob> jobGrid = new Grid<>("Print Jobs");
+    private Registration pollRegistration;
+
+    @Autowired
+    public PrintQueueView(PrintQueuePresenter handler) {
+        this.handler = handler;
+    }
+
+    @PostConstruct
+    public void init() {
+        setColumns(1);
+        setRows(1);
+
+        jobGrid.addColumn(PrintJob::getId).setCaption("ID");
+        jobGrid.addColumn(job -> job.getSubmittedAt().format(TIME_FORMAT)).setCaption("Submitted");
+        jobGrid.addColumn(PrintJob::getPrinterName).setCaption("Printer");
+        jobGrid.addColumn(PrintJob::getDescription).setCaption("Description");
+        jobGrid.addColumn(PrintJob::getState).setCaption("Status");
+        jobGrid.addColumn(PrintJob::getAttempts).setCaption("Attempts");
+        jobGrid.addColumn(PrintJob::getMessage).setCaption("Message");
+        jobGrid.setSelectionMode(Grid.SelectionMode.NONE);
+        jobGrid.setWidth(1000, Sizeable.Unit.PIXELS);
+        addComponent(jobGrid, 0, 0);
+        handler.showJobs(this);
+    }
+
+    public void showJobs(List<PrintJob> jobs) {
+        jobGrid.setItems(jobs);
+    }
+
+    /**
+     * Checks for updates every two seconds while the view is shown
+     */
+    @Override
+    public void attach() {
+        super.attach();
+        UI ui = getUI();
+        if (ui != null && pollRegistration == null) {
+            ui.setPollInterval(2000);
+            pollRegistration = ui.addPollListener(e -> handler.showJobs(this));
+        }
+    }
+
+    @Override
+    public void detach() {
+        UI ui = getUI();
+        if (pollRegistration != null) {
+            pollRegistration.remove();
+            pollRegistration = null;
+            if (ui != null) { ui.setPollInterval(-1); }
+        }
+        super.detach();
+    }
+
+    public String getRequiredRight() { return REQUIRED_RIGHT; }
+}
@@ -0,0 +1,30 @@
+package org.kumoricon.model;
+
+import org.junit.Test;
+import org.springframework.data.domain.Pageable;
+
+import static org.junit.Assert.*;
+
+public class OffsetPageRequestTest {
+    @Test
+    public void offsetDoesNotNeedToBeOnPageBoundary() {
+        Pageable pageable = new OffsetPageRequest(15, 10, null);
+        assertEquals(15, pageable.getOffset());
+        assertEquals(10, pageable.getPageSize());
+        assertEquals(1, pageable.getPageNumber());
+    }
+
+    @Test
+    public void nextAndPrevious() {
+        Pageable pageable = new OffsetPageRequest(15, 10, null);
+        assertEquals(25, pageable.next().getOffset());
+        assertEquals(5, pageable.previousOrFirst().getOffset());
+        assertEquals(0, pageable.previousOrFirst().previousOrFirst().getOffset());
+        assertFalse(pageable.first().hasPrevious());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void limitMustBePositive() {
+        new OffsetPageRequest(0, 0, null);
+    }
+}
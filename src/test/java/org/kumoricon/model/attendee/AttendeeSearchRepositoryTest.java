@@ -0,0 +1,199 @@
+package org.kumoricon.model.attendee;
+
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.kumoricon.KumoregApplication;
+import org.kumoricon.model.OffsetPageRequest;
+import org.kumoricon.model.badge.Badge;
+import org.kumoricon.model.badge.BadgeFactory;
+import org.kumoricon.model.badge.BadgeRepository;
+import org.kumoricon.model.badge.BadgeType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how many SQL statements attendee searches and loads run, so that N+1 loading of
+ * attendee history is caught. Runs in a transaction that is rolled back after each test.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@TestPropertySource(locations="classpath:test.properties")
+@WebAppConfiguration
+@SpringBootTest(classes = KumoregApplication.class)
+@Transactional
+public class AttendeeSearchRepositoryTest {
+
+    @Autowired
+    private AttendeeSearchRepository searchRepository;
+
+    @Autowired
+    private AttendeeRepository attendeeRepository;
+
+    @Autowired
+    private AttendeeHistoryRepository attendeeHistoryRepository;
+
+    @Autowired
+    private BadgeRepository badgeRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private Statistics statistics;
+    private Badge badge;
+
+    @Before
+    public void setUp() {
+        badge = badgeRepository.save(BadgeFactory.createBadge("Statement Count Test", BadgeType.ATTENDEE,
+                "Weekend", "#FFFFFF", 50, 40, 30));
+        addAttendees(badge, "Smithers", 2);
+        addAttendees(badge, "Jonesworth", 10);
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    public void searchStatementCountDoesNotGrowWithResults() {
+        long fewResults = countStatementsForSearch("Smithers", 2);
+        long manyResults = countStatementsForSearch("Jonesworth", 10);
+
+        assertEquals(fewResults, manyResults);
+        assertTrue("Search ran " + manyResults + " statements for 10 results", manyResults < 10);
+    }
+
+    @Test
+    public void findAllByIdStatementCountDoesNotGrowWithResults() {
+        List<Attendee> attendees = searchRepository.searchFor(new String[] {"Jonesworth"});
+        List<Integer> ids = attendees.stream().map(Attendee::getId).collect(Collectors.toList());
+        entityManager.clear();
+
+        statistics.clear();
+        List<Attendee> loaded = attendeeRepository.findAll(ids);
+        for (Attendee attendee : loaded) {
+            attendee.getBadge().getName();
+        }
+
+        assertEquals(10, loaded.size());
+        assertTrue(statistics.getPrepareStatementCount() < 10);
+    }
+
+    @Test
+    public void searchSummariesMatchesSearch() {
+        List<Integer> fromEntities = searchRepository.searchFor(new String[] {"Jones", "Test1"}).stream()
+                .map(Attendee::getId).sorted().collect(Collectors.toList());
+        List<Integer> fromSummaries = searchRepository.searchSummariesFor(new String[] {"Jones", "Test1"},
+                new OffsetPageRequest(0, 50, null)).stream()
+                .map(AttendeeSummary::getId).collect(Collectors.toList());
+
+        assertEquals(1, fromSummaries.size());
+        assertEquals(fromEntities, fromSummaries);
+        assertEquals(1, searchRepository.countFor(new String[] {"Jones", "Test1"}));
+    }
+
+    @Test
+    public void findSummariesByBadgeTypeRunsOneStatement() {
+        entityManager.clear();
+        statistics.clear();
+        List<AttendeeSummary> summaries = attendeeRepository.findSummariesByBadgeType(badge,
+                new OffsetPageRequest(0, 50, null));
+
+        assertEquals(12, summaries.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void findSummariesByBadgeTypeReturnsRequestedPage() {
+        Sort sort = new Sort(Sort.Direction.DESC, "lastName").and(new Sort(Sort.Direction.ASC, "id"));
+        List<AttendeeSummary> page = attendeeRepository.findSummariesByBadgeType(badge,
+                new OffsetPageRequest(1, 5, sort));
+
+        assertEquals(5, page.size());
+        assertEquals("Smithers", page.get(0).getLastName());
+        assertEquals("Jonesworth", page.get(4).getLastName());
+        assertEquals(12, attendeeRepository.countByBadge(badge));
+    }
+
+    @Test
+    public void findOneDoesNotLoadHistory() {
+        Integer id = searchRepository.searchFor(new String[] {"Smithers"}).get(0).getId();
+        entityManager.clear();
+
+        Attendee attendee = attendeeRepository.findOne(id);
+        assertFalse(Hibernate.isInitialized(attendee.getHistory()));
+    }
+
+    @Test
+    public void findOneWithHistoryLoadsHistory() {
+        Integer id = searchRepository.searchFor(new String[] {"Smithers"}).get(0).getId();
+        entityManager.clear();
+
+        Attendee attendee = attendeeRepository.findOneWithHistory(id);
+        entityManager.clear();
+
+        assertTrue(Hibernate.isInitialized(attendee.getHistory()));
+        assertEquals(3, attendee.getHistory().size());
+    }
+
+    @Test
+    public void addHistoryEntryWithoutLoadingHistoryKeepsExistingEntries() {
+        Integer id = searchRepository.searchFor(new String[] {"Smithers"}).get(0).getId();
+        entityManager.clear();
+
+        Attendee attendee = attendeeRepository.findOne(id);
+        entityManager.clear();
+        attendee.addHistoryEntry(null, "Attendee checked in");
+        attendeeRepository.save(attendee);
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(4, attendeeHistoryRepository.findByAttendee(attendee).size());
+    }
+
+    private long countStatementsForSearch(String word, int expectedResults) {
+        entityManager.clear();
+        statistics.clear();
+        List<Attendee> attendees = searchRepository.searchFor(new String[] {word});
+        for (Attendee attendee : attendees) {
+            attendee.getBadge().getName();
+        }
+        assertEquals(expectedResults, attendees.size());
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void addAttendees(Badge badge, String lastName, int count) {
+        for (int i = 0; i < count; i++) {
+            Attendee attendee = new Attendee();
+            attendee.setFirstName("Test" + i);
+            attendee.setLastName(lastName);
+            attendee.setBadgeNumber(String.format("%s%05d", lastName.substring(0, 2).toUpperCase(), i));
+            attendee.setBirthDate(LocalDate.of(1990, 1, 1));
+            attendee.setBadge(badge);
+            for (int j = 0; j < 3; j++) {
+                attendee.addHistoryEntry(null, "Note " + j);
+            }
+            attendeeRepository.save(attendee);
+        }
+    }
+}
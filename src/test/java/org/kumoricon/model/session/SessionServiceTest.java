@@ -20,7 +20,9 @@ import org.springframework.test.context.web.WebAppConfiguration;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 
@@ -106,6 +108,41 @@ public class SessionServiceTest {
         assertEquals(0, BigDecimal.valueOf(16F).compareTo(sessionService.getTotalForSession(session)));
     }
 
+    @Test
+    public void getTotalsByPaymentType() {
+        User user = userRepository.findOne(3);
+        Session session = sessionService.getCurrentSessionForUser(user);
+        Map<Payment.PaymentType, BigDecimal> totals = sessionService.getTotalsByPaymentType(session);
+
+        assertEquals(3, totals.size());
+        assertEquals(0, BigDecimal.TEN.compareTo(totals.get(Payment.PaymentType.CASH)));
+        assertEquals(0, BigDecimal.ONE.compareTo(totals.get(Payment.PaymentType.CHECK)));
+        assertEquals(0, BigDecimal.valueOf(5L).compareTo(totals.get(Payment.PaymentType.CREDIT)));
+        assertNull(totals.get(Payment.PaymentType.PREREG));
+    }
+
+    @Test
+    public void buildTextTotalsForSessionListsPaymentTypesInOrder() {
+        User user = userRepository.findOne(3);
+        String[] lines = sessionService.buildTextTotalsForSession(sessionService.getCurrentSessionForUser(user))
+                .split("\n");
+
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("Cash"));
+        assertTrue(lines[1].startsWith("Check/Money Order"));
+        assertTrue(lines[2].startsWith("Credit Card"));
+    }
+
+    @Test
+    public void getTotalsByPaymentTypeForAllSessionsMatchesEachSession() {
+        Map<Integer, Map<Payment.PaymentType, BigDecimal>> allTotals =
+                sessionService.getTotalsByPaymentTypeForAllSessions();
+
+        for (Session session : sessionService.getAllSessions()) {
+            assertEquals(sessionService.getTotalsByPaymentType(session),
+                    allTotals.getOrDefault(session.getId(), Collections.emptyMap()));
+        }
+    }
 
     private List<User> buildUsers() {
         List<User> users = new ArrayList<>();
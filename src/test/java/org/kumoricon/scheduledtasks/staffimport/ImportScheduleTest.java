@@ -0,0 +1,104 @@
+package org.kumoricon.scheduledtasks.staffimport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ImportScheduleTest {
+    private static final long NOW = 1_500_000_000_000L;
+    private final ImportSchedule schedule = new ImportSchedule(1000, 60000);
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("staffimport");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) { file.delete(); }
+        }
+        directory.toFile().delete();
+    }
+
+    @Test
+    public void firstCheckIsImmediateAndReloadsBadge() {
+        assertEquals(0, schedule.getTimeout());
+        assertTrue(schedule.isPolled());
+    }
+
+    @Test
+    public void fileChangeWaitsForStableTime() {
+        schedule.checked(false);
+        schedule.fileChanged();
+
+        assertEquals(1000, schedule.getTimeout());
+        assertFalse(schedule.isPolled());
+    }
+
+    @Test
+    public void pendingFilesCheckedAgainAfterStableTime() {
+        schedule.fileChanged();
+        schedule.checked(true);
+
+        assertEquals(1000, schedule.getTimeout());
+        assertFalse(schedule.isPolled());
+    }
+
+    @Test
+    public void quietDirectoryPolledAfterPollTime() {
+        schedule.fileChanged();
+        schedule.checked(false);
+
+        assertEquals(60000, schedule.getTimeout());
+        assertTrue(schedule.isPolled());
+    }
+
+    @Test
+    public void fileIsStableAfterStableTime() {
+        assertTrue(schedule.isStable(NOW - 1000, NOW));
+        assertTrue(schedule.isStable(NOW - 5000, NOW));
+        assertFalse(schedule.isStable(NOW - 999, NOW));
+        assertFalse(schedule.isStable(NOW, NOW));
+    }
+
+    @Test
+    public void findStableFilesSkipsChangingFiles() throws IOException {
+        Path stable = file("stable.json", NOW - 5000);
+        file("changing.json", NOW - 10);
+        file("ignored.txt", NOW - 5000);
+        List<Path> found = new ArrayList<>();
+
+        assertTrue(schedule.findStableFiles(directory, NOW, found));
+        assertEquals(1, found.size());
+        assertEquals(stable, found.get(0));
+    }
+
+    @Test
+    public void findStableFilesWithNothingPending() throws IOException {
+        file("first.json", NOW - 5000);
+        file("second.json", NOW - 2000);
+        List<Path> found = new ArrayList<>();
+
+        assertFalse(schedule.findStableFiles(directory, NOW, found));
+        assertEquals(2, found.size());
+    }
+
+    private Path file(String name, long lastModified) throws IOException {
+        Path path = Files.write(directory.resolve(name), "{}".getBytes());
+        Files.setLastModifiedTime(path, FileTime.fromMillis(lastModified));
+        return path;
+    }
+}
@@ -0,0 +1,93 @@
+package org.kumoricon.scheduledtasks.staffimport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class OrderedTaskRunnerTest {
+    private ExecutorService executor;
+    private OrderedTaskRunner runner;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        runner = new OrderedTaskRunner(executor);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void tasksWithSameKeyRunInOrder() {
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            int task = i;
+            futures.add(runner.submit(Collections.singletonList("1"), () -> {
+                order.add(task);
+                return task;
+            }));
+        }
+        for (CompletableFuture<Integer> future : futures) { future.join(); }
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Integer.valueOf(i), order.get(i));
+        }
+    }
+
+    @Test
+    public void tasksWithDifferentKeysRunInParallel() throws Exception {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        CompletableFuture<Boolean> first = runner.submit(Collections.singletonList("1"), () -> await(bothStarted));
+        CompletableFuture<Boolean> second = runner.submit(Collections.singletonList("2"), () -> await(bothStarted));
+
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void taskWaitsForEveryKeyItShares() {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        runner.submit(Collections.singletonList("1"), () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            return order.add("first");
+        });
+        runner.submit(Collections.singletonList("2"), () -> order.add("second"));
+        CompletableFuture<Boolean> third = runner.submit(Arrays.asList("1", "2"), () -> order.add("third"));
+
+        release.countDown();
+        third.join();
+        assertEquals("third", order.get(2));
+    }
+
+    @Test
+    public void laterTaskRunsAfterEarlierTaskFails() {
+        CompletableFuture<Object> failed = runner.submit(Collections.singletonList("1"), () -> {
+            throw new IllegalStateException("Bad file");
+        });
+        CompletableFuture<String> next = runner.submit(Collections.singletonList("1"), () -> "ran");
+
+        assertEquals("ran", next.join());
+        assertTrue(failed.isCompletedExceptionally());
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        latch.countDown();
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+}
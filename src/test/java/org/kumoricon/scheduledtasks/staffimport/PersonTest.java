@@ -4,6 +4,8 @@ import org.junit.Test;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
 
 import static org.junit.Assert.*;
 
@@ -40,4 +42,45 @@ public class PersonTest {
         assertFalse(Person.isDifferent(BigDecimal.TEN, BigDecimal.TEN));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void contentHashSameForSameContent() {
+        assertEquals(person("Test", "Staff").contentHash(), person("Test", "Staff").contentHash());
+        assertEquals(64, person("Test", "Staff").contentHash().length());
+    }
+
+    @Test
+    public void contentHashChangesWithContent() {
+        Person person = person("Test", "Staff");
+        String hash = person.contentHash();
+
+        person.namePrivacyLast = "Person";
+        assertNotEquals(hash, person.contentHash());
+
+        person = person("Test", "Staff");
+        person.positions.get(0).title = "Coordinator";
+        assertNotEquals(hash, person.contentHash());
+
+        person = person("Test", "Staff");
+        person.notes = Collections.singletonList("Note");
+        assertNotEquals(hash, person.contentHash());
+    }
+
+    @Test
+    public void contentHashKeepsFieldsApart() {
+        assertNotEquals(person("ab", "c").contentHash(), person("a", "bc").contentHash());
+        assertNotEquals(person(null, "a").contentHash(), person("a", null).contentHash());
+    }
+
+    private static Person person(String first, String last) {
+        Person person = new Person();
+        person.id = 1;
+        person.namePrivacyFirst = first;
+        person.namePrivacyLast = last;
+        person.birthdate = LocalDate.of(1990, 1, 1);
+        Position position = new Position();
+        position.title = "Staff";
+        position.department = "Registration";
+        person.positions = new ArrayList<>(Collections.singletonList(position));
+        return person;
+    }
+}
@@ -0,0 +1,33 @@
+package org.kumoricon.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class ContentHashTest {
+    @Test
+    public void sha256HexMatchesKnownHash() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                ContentHash.sha256Hex("abc"));
+    }
+
+    @Test
+    public void valuesDoNotRunTogether() {
+        assertNotEquals(hash("ab", "c"), hash("a", "bc"));
+        assertNotEquals(hash("a|1:b"), hash("a", "b"));
+    }
+
+    @Test
+    public void nullDiffersFromEmptyString() {
+        assertNotEquals(hash((Object) null), hash(""));
+    }
+
+    private static String hash(Object... values) {
+        StringBuilder content = new StringBuilder();
+        for (Object value : values) {
+            ContentHash.append(content, value);
+        }
+        return ContentHash.sha256Hex(content);
+    }
+}
@@ -0,0 +1,60 @@
+package org.kumoricon.service.print;
+
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Test;
+import org.kumoricon.model.attendee.Attendee;
+import org.kumoricon.model.badge.BadgeFactory;
+import org.kumoricon.model.badge.BadgeType;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BadgeFormatterFactoryTest {
+    @Test
+    public void vectorFormatDrawsText() throws IOException {
+        List<String> operators = firstPageOperators("vector");
+
+        assertTrue(operators.contains("Tj"));
+        assertFalse(operators.contains("Do"));
+    }
+
+    @Test
+    public void liteFormatDrawsImage() throws IOException {
+        List<String> operators = firstPageOperators("lite");
+
+        assertTrue(operators.contains("Do"));
+        assertFalse(operators.contains("Tj"));
+    }
+
+    private static List<String> firstPageOperators(String badgeFormat) throws IOException {
+        BadgeFormatterFactory factory = new BadgeFormatterFactory(new BadgeRenderCache(0), badgeFormat);
+        try (PDDocument document = PDDocument.load(factory.getCurrentBadgeFormatter(attendees(), 0, 0).getStream())) {
+            PDFStreamParser parser = new PDFStreamParser(document.getPage(0));
+            parser.parse();
+            List<String> operators = new ArrayList<>();
+            for (Object token : parser.getTokens()) {
+                if (token instanceof Operator) {
+                    operators.add(((Operator) token).getName());
+                }
+            }
+            return operators;
+        }
+    }
+
+    private static List<Attendee> attendees() {
+        Attendee attendee = new Attendee();
+        attendee.setFirstName("Rei");
+        attendee.setLastName("Ayanami");
+        attendee.setBadgeNumber("TST00001");
+        attendee.setBirthDate(LocalDate.now().minusYears(30));
+        attendee.setBadge(BadgeFactory.createBadge("Weekend", BadgeType.ATTENDEE, "Weekend", "#00FF00", 55, 45, 35));
+        return Collections.singletonList(attendee);
+    }
+}
@@ -0,0 +1,117 @@
+package org.kumoricon.service.print;
+
+import org.junit.Test;
+import org.kumoricon.model.attendee.Attendee;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BadgeRenderCacheTest {
+    private static final LocalDate TODAY = LocalDate.of(2018, 5, 26);
+    private final AtomicInteger renders = new AtomicInteger();
+
+    @Test
+    public void sameBadgesRenderedOnce() {
+        BadgeRenderCache cache = new BadgeRenderCache(1);
+
+        byte[] preview = cache.get("lite", attendees("Rei"), 0, 0, TODAY, this::render);
+        byte[] print = cache.get("lite", attendees("Rei"), 0, 0, TODAY, this::render);
+
+        assertSame(preview, print);
+        assertEquals(1, renders.get());
+    }
+
+    @Test
+    public void changedBadgesRenderedAgain() {
+        BadgeRenderCache cache = new BadgeRenderCache(1);
+
+        cache.get("lite", attendees("Rei"), 0, 0, TODAY, this::render);
+        cache.get("lite", attendees("Asuka"), 0, 0, TODAY, this::render);
+        cache.get("lite", attendees("Rei"), 5, 0, TODAY, this::render);
+        cache.get("full", attendees("Rei"), 0, 0, TODAY, this::render);
+        cache.get("lite", attendees("Rei"), 0, 0, TODAY.plusDays(1), this::render);
+
+        assertEquals(5, renders.get());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        // Room for four 240 KB documents
+        BadgeRenderCache cache = new BadgeRenderCache(1);
+        byte[] large = new byte[240 * 1024];
+
+        for (String name : new String[]{"A", "B", "C", "D"}) {
+            cache.get("lite", attendees(name), 0, 0, TODAY, () -> large);
+        }
+        cache.get("lite", attendees("A"), 0, 0, TODAY, this::render);
+        cache.get("lite", attendees("E"), 0, 0, TODAY, () -> large);
+        assertEquals(0, renders.get());
+
+        // B was dropped for E; A was used more recently and kept
+        cache.get("lite", attendees("B"), 0, 0, TODAY, this::render);
+        cache.get("lite", attendees("A"), 0, 0, TODAY, this::render);
+        assertEquals(1, renders.get());
+    }
+
+    @Test
+    public void disabledCacheAlwaysRenders() {
+        BadgeRenderCache cache = new BadgeRenderCache(0);
+
+        cache.get("lite", attendees("Rei"), 0, 0, TODAY, this::render);
+        cache.get("lite", attendees("Rei"), 0, 0, TODAY, this::render);
+
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    public void replacedStaffPhotoRenderedAgain() throws IOException {
+        File photo = File.createTempFile("staff", ".jpg");
+        photo.deleteOnExit();
+        Files.write(photo.toPath(), new byte[]{1, 2, 3});
+        photo.setLastModified(1_500_000_000_000L);
+        BadgeRenderCache cache = new BadgeRenderCache(1, attendee -> photo);
+
+        cache.get("full", attendees("Rei"), 0, 0, TODAY, this::render);
+        cache.get("full", attendees("Rei"), 0, 0, TODAY, this::render);
+        assertEquals(1, renders.get());
+
+        // Same name, new picture
+        Files.write(photo.toPath(), new byte[]{4, 5, 6});
+        photo.setLastModified(1_500_000_060_000L);
+        cache.get("full", attendees("Rei"), 0, 0, TODAY, this::render);
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    public void addedStaffPhotoRenderedAgain() throws IOException {
+        File photo = new File(System.getProperty("java.io.tmpdir"), "staff-" + System.nanoTime() + ".jpg");
+        photo.deleteOnExit();
+        BadgeRenderCache cache = new BadgeRenderCache(1, attendee -> photo);
+
+        cache.get("full", attendees("Rei"), 0, 0, TODAY, this::render);
+        Files.write(photo.toPath(), new byte[]{1, 2, 3});
+        cache.get("full", attendees("Rei"), 0, 0, TODAY, this::render);
+
+        assertEquals(2, renders.get());
+    }
+
+    private byte[] render() {
+        renders.incrementAndGet();
+        return new byte[]{1, 2, 3};
+    }
+
+    private static List<Attendee> attendees(String firstName) {
+        Attendee attendee = new Attendee();
+        attendee.setFirstName(firstName);
+        attendee.setLastName("Test");
+        attendee.setBadgeNumber("TST00001");
+        return Collections.singletonList(attendee);
+    }
+}
@@ -0,0 +1,178 @@
+package org.kumoricon.service.print;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.print.PrintException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PrintQueueServiceTest {
+    private final List<javax.print.PrintService> installed = new ArrayList<>();
+    private final PrinterRegistry registry = new PrinterRegistry(0,
+            () -> installed.toArray(new javax.print.PrintService[0]));
+    private PrintQueueService service;
+
+    @Before
+    public void setUp() {
+        installed.add(printer("Printer"));
+        installed.add(printer("Other printer"));
+        registry.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (service != null) { service.stop(); }
+    }
+
+    @Test
+    public void printsJob() throws Exception {
+        CountDownLatch printed = new CountDownLatch(1);
+        service = new PrintQueueService(5, 3, 1, registry, (printService, job) -> printed.countDown());
+
+        PrintJob job = service.submit("Printer", "Test", new byte[]{1, 2, 3}, false);
+
+        assertTrue(printed.await(5, TimeUnit.SECONDS));
+        waitUntilFinished(job);
+        assertEquals(PrintJob.State.DONE, job.getState());
+        assertEquals(1, job.getAttempts());
+        assertSame(job, service.getJob(job.getId()));
+    }
+
+    @Test
+    public void retriesFailedJob() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        service = new PrintQueueService(5, 3, 1, registry, (printService, job) -> {
+            if (calls.incrementAndGet() < 3) { throw new PrintException("Printer offline"); }
+        });
+
+        PrintJob job = service.submit("Printer", "Test", new byte[0], false);
+
+        waitUntilFinished(job);
+        assertEquals(PrintJob.State.DONE, job.getState());
+        assertEquals(3, job.getAttempts());
+    }
+
+    @Test
+    public void failsAfterRetries() throws Exception {
+        service = new PrintQueueService(5, 2, 1, registry, (printService, job) -> { throw new PrintException("Printer offline"); });
+
+        PrintJob job = service.submit("Printer", "Test", new byte[0], false);
+
+        waitUntilFinished(job);
+        assertEquals(PrintJob.State.FAILED, job.getState());
+        assertEquals(3, job.getAttempts());
+        assertEquals("Printer offline", job.getMessage());
+    }
+
+    @Test
+    public void refusesJobsWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        service = new PrintQueueService(1, 0, 1, registry, (printService, job) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        PrintJob first = service.submit("Printer", "First", new byte[0], false);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        PrintJob second = service.submit("PRINTER ", "Second", new byte[0], false);
+        try {
+            service.submit("printer", "Third", new byte[0], false);
+            fail("Expected PrintException");
+        } catch (PrintException ex) {
+            assertEquals(1, service.getQueueLength("Printer"));
+        }
+        // Other printers have their own queue
+        service.submit("Other printer", "Fourth", new byte[0], false);
+
+        release.countDown();
+        waitUntilFinished(first);
+        waitUntilFinished(second);
+        assertEquals(PrintJob.State.DONE, second.getState());
+    }
+
+    @Test
+    public void deletesFileWhenFinished() throws Exception {
+        Path file = Files.createTempFile("badges", ".pdf");
+        service = new PrintQueueService(5, 0, 1, registry, (printService, job) -> job.open().close());
+
+        PrintJob job = service.submitAndWait("Printer", "Test", file, true);
+
+        waitUntilFinished(job);
+        assertEquals(PrintJob.State.DONE, job.getState());
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void refusesUnknownPrinter() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        service = new PrintQueueService(5, 3, 1, registry, (printService, job) -> calls.incrementAndGet());
+
+        try {
+            service.submit("Missing", "Test", new byte[0], false);
+            fail("Expected PrintException");
+        } catch (PrintException ex) {
+            // Expected
+        }
+
+        assertTrue(service.getJobs().isEmpty());
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    public void removedPrinterFailsWithoutRetrying() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        service = new PrintQueueService(5, 3, 1000, registry, (printService, job) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        PrintJob first = service.submit("Printer", "First", new byte[0], false);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        PrintJob second = service.submit("Printer", "Second", new byte[0], false);
+        installed.remove(0);
+        registry.refresh();
+        release.countDown();
+
+        waitUntilFinished(second);
+        assertEquals(PrintJob.State.DONE, first.getState());
+        assertEquals(PrintJob.State.FAILED, second.getState());
+        assertEquals(0, second.getAttempts());
+    }
+
+    private static void waitUntilFinished(PrintJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!job.getState().isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue("Timed out waiting for " + job, job.getState().isFinished());
+    }
+
+    private static javax.print.PrintService printer(String name) {
+        return (javax.print.PrintService) Proxy.newProxyInstance(PrintQueueServiceTest.class.getClassLoader(),
+                new Class<?>[]{javax.print.PrintService.class}, (proxy, method, args) -> {
+                    if ("getName".equals(method.getName())) { return name; }
+                    if ("toString".equals(method.getName())) { return name; }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
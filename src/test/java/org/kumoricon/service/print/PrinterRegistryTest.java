@@ -0,0 +1,86 @@
+package org.kumoricon.service.print;
+
+import org.junit.Test;
+
+import javax.print.PrintException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PrinterRegistryTest {
+    private final List<javax.print.PrintService> installed = new ArrayList<>();
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final PrinterRegistry registry = new PrinterRegistry(0, () -> {
+        lookups.incrementAndGet();
+        return installed.toArray(new javax.print.PrintService[0]);
+    });
+
+    @Test
+    public void findsPrinterWithoutLookingUpAgain() throws Exception {
+        installed.add(printer("Badge-Printer-1"));
+        installed.add(printer("Badge-Printer-2"));
+        registry.start();
+
+        assertEquals("Badge-Printer-2", registry.find(" badge-printer-2 ").getName());
+        assertEquals("Badge-Printer-1", registry.find("BADGE-PRINTER-1").getName());
+        assertEquals(1, lookups.get());
+        assertEquals(2, registry.getPrinters().size());
+    }
+
+    @Test
+    public void refreshFindsNewPrinter() throws Exception {
+        registry.start();
+        installed.add(printer("New-Printer"));
+        registry.refresh();
+
+        assertEquals("New-Printer", registry.find("new-printer").getName());
+    }
+
+    @Test
+    public void onlyReloadClearsSystemCache() {
+        AtomicInteger cacheClears = new AtomicInteger();
+        PrinterRegistry registry = new PrinterRegistry(0,
+                () -> installed.toArray(new javax.print.PrintService[0]), cacheClears::incrementAndGet);
+        registry.start();
+        registry.refresh();
+        try {
+            registry.find("missing");
+            fail("Expected PrintException");
+        } catch (PrintException ex) {
+            // Expected
+        }
+        assertEquals(0, cacheClears.get());
+
+        installed.add(printer("New-Printer"));
+        registry.reload();
+        assertEquals(1, cacheClears.get());
+        assertEquals(1, registry.getPrinters().size());
+    }
+
+    @Test
+    public void unknownPrinterDoesNotRefreshEveryTime() {
+        registry.start();
+        for (int i = 0; i < 3; i++) {
+            try {
+                registry.find("missing");
+                fail("Expected PrintException");
+            } catch (PrintException ex) {
+                // Expected
+            }
+        }
+        // Only the refresh in start(); lookups after a miss are limited to one every few seconds
+        assertEquals(1, lookups.get());
+    }
+
+    private static javax.print.PrintService printer(String name) {
+        return (javax.print.PrintService) Proxy.newProxyInstance(PrinterRegistryTest.class.getClassLoader(),
+                new Class<?>[]{javax.print.PrintService.class}, (proxy, method, args) -> {
+                    if ("getName".equals(method.getName())) { return name; }
+                    if ("toString".equals(method.getName())) { return name; }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
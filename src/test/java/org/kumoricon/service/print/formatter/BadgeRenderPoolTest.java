@@ -0,0 +1,45 @@
+package org.kumoricon.service.print.formatter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BadgeRenderPoolTest {
+    @Test
+    public void mapKeepsOrder() {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            items.add(i);
+        }
+
+        List<String> results = BadgeRenderPool.map(items, i -> {
+            if (i % 7 == 0) { Thread.yield(); }
+            return "Badge " + i;
+        });
+
+        assertEquals(1000, results.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("Badge " + i, results.get(i));
+        }
+    }
+
+    @Test
+    public void mapEmptyList() {
+        assertEquals(0, BadgeRenderPool.map(new ArrayList<Integer>(), i -> i).size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void mapRethrowsException() {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            items.add(i);
+        }
+        BadgeRenderPool.map(items, i -> {
+            if (i == 5) { throw new IllegalStateException("Error drawing badge"); }
+            return i;
+        });
+    }
+}
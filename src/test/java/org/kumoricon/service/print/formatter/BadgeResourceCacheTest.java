@@ -0,0 +1,137 @@
+package org.kumoricon.service.print.formatter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+public class BadgeResourceCacheTest {
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("badgeResources");
+        BadgeResourceCache.clear();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Path path : Files.newDirectoryStream(directory)) {
+            Files.delete(path);
+        }
+        Files.delete(directory);
+        BadgeResourceCache.clear();
+    }
+
+    @Test
+    public void getBytesReturnsCachedContents() throws IOException {
+        Path file = write("background.pdf", "first");
+
+        byte[] first = BadgeResourceCache.getBytes(file);
+        assertEquals("first", new String(first, StandardCharsets.UTF_8));
+        assertSame(first, BadgeResourceCache.getBytes(file));
+    }
+
+    @Test
+    public void getBytesRereadsChangedFile() throws Exception {
+        Path file = write("background.pdf", "first");
+        BadgeResourceCache.getBytes(file);
+
+        write("background.pdf", "second");
+        assertTrue(waitForContents(file, "second"));
+    }
+
+    @Test
+    public void getImageReturnsCachedImage() throws IOException {
+        Path file = directory.resolve("staffadult.png");
+        ImageIO.write(new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+
+        BufferedImage image = BadgeResourceCache.getImage(file);
+        assertEquals(4, image.getWidth());
+        assertEquals(3, image.getHeight());
+        assertSame(image, BadgeResourceCache.getImage(file));
+    }
+
+    @Test(expected = IOException.class)
+    public void getBytesMissingFile() throws IOException {
+        BadgeResourceCache.getBytes(directory.resolve("missing.ttf"));
+    }
+
+    @Test
+    public void getOptionalImageFindsCreatedFile() throws Exception {
+        Path file = directory.resolve("badgebackground.png");
+        assertNull(BadgeResourceCache.getOptionalImage(file));
+
+        ImageIO.write(new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+        BufferedImage image = null;
+        for (int i = 0; i < 300 && image == null; i++) {
+            image = BadgeResourceCache.getOptionalImage(file);
+            if (image == null) { Thread.sleep(100); }
+        }
+        assertNotNull(image);
+        assertEquals(4, image.getWidth());
+    }
+
+    @Test
+    public void putAfterChangeIsNotCached() {
+        Map<Path, String> cache = new ConcurrentHashMap<>();
+        long readGeneration = BadgeResourceCache.getGeneration();
+        BadgeResourceCache.clear();
+
+        assertFalse(BadgeResourceCache.put(cache, directory.resolve("logo.png"), "old", readGeneration));
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void putDuringChangeIsDropped() {
+        // The file changes after the generation is checked, but before the value is stored
+        Map<Path, String> cache = new ConcurrentHashMap<Path, String>() {
+            @Override
+            public String put(Path key, String value) {
+                String previous = super.put(key, value);
+                BadgeResourceCache.clear();
+                return previous;
+            }
+        };
+        long readGeneration = BadgeResourceCache.getGeneration();
+
+        assertFalse(BadgeResourceCache.put(cache, directory.resolve("logo.png"), "old", readGeneration));
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void putUnchangedIsCached() {
+        Map<Path, String> cache = new ConcurrentHashMap<>();
+        Path path = directory.resolve("logo.png");
+
+        assertTrue(BadgeResourceCache.put(cache, path, "current", BadgeResourceCache.getGeneration()));
+        assertEquals("current", cache.get(path));
+    }
+
+    private Path write(String filename, String contents) throws IOException {
+        return Files.write(directory.resolve(filename), contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Change notifications arrive in the background (after several seconds on some platforms)
+     */
+    private static boolean waitForContents(Path file, String expected) throws Exception {
+        for (int i = 0; i < 300; i++) {
+            if (expected.equals(new String(BadgeResourceCache.getBytes(file), StandardCharsets.UTF_8))) {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,44 @@
+package org.kumoricon.service.print.formatter;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TextWidthsTest {
+    private final PDFont font = PDType1Font.HELVETICA_BOLD;
+
+    @After
+    public void tearDown() {
+        TextWidths.clear();
+    }
+
+    @Test
+    public void getStringWidthMatchesFont() throws Exception {
+        for (String text : new String[]{"", "Weekend", "ADULT", "Youth 13-17", "Zoë Brontë", "ONL12345"}) {
+            assertEquals(text, font.getStringWidth(text), TextWidths.getStringWidth(font, text), 0.01f);
+            // Second time comes from the table
+            assertEquals(text, font.getStringWidth(text), TextWidths.getStringWidth(font, text), 0.01f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getStringWidthMissingGlyph() throws Exception {
+        TextWidths.getStringWidth(font, "中文");
+    }
+
+    @Test
+    public void findMaxLineSizeLimitedByHeight() throws Exception {
+        assertEquals(40, TextWidths.findMaxLineSize(font, "A", 240, 40));
+    }
+
+    @Test
+    public void findMaxLineSizeLimitedByWidth() throws Exception {
+        String text = "Weekend Plus Sponsor";
+        int expected = (int) (240 * 1000.0f / font.getStringWidth(text));
+        assertEquals(expected, TextWidths.findMaxLineSize(font, text, 240, 40));
+        assertEquals(expected, TextWidths.findMaxLineSize(font, text, 240, 40));
+    }
+}
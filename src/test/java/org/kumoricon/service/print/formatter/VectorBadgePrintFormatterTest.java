@@ -0,0 +1,86 @@
+package org.kumoricon.service.print.formatter;
+
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.junit.Test;
+import org.kumoricon.model.attendee.Attendee;
+import org.kumoricon.model.badge.BadgeFactory;
+import org.kumoricon.model.badge.BadgeType;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class VectorBadgePrintFormatterTest {
+    @Test
+    public void badgeDrawnAsText() throws IOException {
+        try (PDDocument document = print(attendee("Rei", "Ayanami"))) {
+            PDPage page = document.getPage(0);
+
+            List<String> operators = operators(page);
+            assertTrue(operators.contains("BT"));
+            assertTrue(operators.contains("Tj"));
+            assertFalse(operators.contains("Do"));
+            assertEquals(0, imageCount(page));
+        }
+    }
+
+    @Test
+    public void badgeWithMissingGlyphDrawnAsImage() throws IOException {
+        // The badge font (or Helvetica, if it isn't installed) has no Japanese characters
+        try (PDDocument document = print(attendee("Rei", "Ayanami"), attendee("綾波", "レイ"))) {
+            assertEquals(2, document.getNumberOfPages());
+            assertTrue(operators(document.getPage(0)).contains("Tj"));
+
+            PDPage page = document.getPage(1);
+            List<String> operators = operators(page);
+            assertTrue(operators.contains("Do"));
+            assertFalse(operators.contains("Tj"));
+            assertEquals(1, imageCount(page));
+        }
+    }
+
+    private static PDDocument print(Attendee... attendees) throws IOException {
+        VectorBadgePrintFormatter formatter = new VectorBadgePrintFormatter(Arrays.asList(attendees), 0, 0);
+        return PDDocument.load(formatter.getStream());
+    }
+
+    private static List<String> operators(PDPage page) throws IOException {
+        PDFStreamParser parser = new PDFStreamParser(page);
+        parser.parse();
+        List<String> operators = new ArrayList<>();
+        for (Object token : parser.getTokens()) {
+            if (token instanceof Operator) {
+                operators.add(((Operator) token).getName());
+            }
+        }
+        return operators;
+    }
+
+    private static int imageCount(PDPage page) throws IOException {
+        PDResources resources = page.getResources();
+        int count = 0;
+        for (COSName name : resources.getXObjectNames()) {
+            if (resources.isImageXObject(name)) { count += 1; }
+        }
+        return count;
+    }
+
+    private static Attendee attendee(String firstName, String lastName) {
+        Attendee attendee = new Attendee();
+        attendee.setFirstName(firstName);
+        attendee.setLastName(lastName);
+        attendee.setBadgeNumber("TST00001");
+        attendee.setBirthDate(LocalDate.now().minusYears(30));
+        attendee.setBadge(BadgeFactory.createBadge("Weekend", BadgeType.ATTENDEE, "Weekend", "#00FF00", 55, 45, 35));
+        return attendee;
+    }
+}
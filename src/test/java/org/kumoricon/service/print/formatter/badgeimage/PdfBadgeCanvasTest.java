@@ -0,0 +1,116 @@
+package org.kumoricon.service.print.formatter.badgeimage;
+
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PdfBadgeCanvasTest {
+    // 750x600 pixel badge drawn 360x288 points in size, so 0.48 points per pixel
+    private static final PDRectangle AREA = new PDRectangle(126, 54, 360, 288);
+    private PDDocument document;
+    private PDPage page;
+
+    @Before
+    public void setUp() {
+        document = new PDDocument();
+        page = new PDPage(new PDRectangle(612f, 396f));
+        document.addPage(page);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        document.close();
+    }
+
+    @Test
+    public void fillRectScalesToArea() throws IOException {
+        try (PDPageContentStream stream = new PDPageContentStream(document, page)) {
+            PdfBadgeCanvas canvas = new PdfBadgeCanvas(stream, PDType1Font.HELVETICA_BOLD, AREA, 750, 600);
+            canvas.fillRect(new Rectangle(0, 0, 750, 600), Color.RED);
+            canvas.fillRect(new Rectangle(100, 50, 250, 100), Color.BLUE);
+        }
+
+        List<Float> rectangles = operands("re");
+        assertEquals(8, rectangles.size());
+        // Whole badge fills the area
+        assertEquals(126, rectangles.get(0), 0.01);
+        assertEquals(54, rectangles.get(1), 0.01);
+        assertEquals(360, rectangles.get(2), 0.01);
+        assertEquals(288, rectangles.get(3), 0.01);
+        // Pixel y is from the top of the badge, PDF y from the bottom of the page
+        assertEquals(126 + 100 * 0.48, rectangles.get(4), 0.01);
+        assertEquals(54 + (600 - 150) * 0.48, rectangles.get(5), 0.01);
+        assertEquals(250 * 0.48, rectangles.get(6), 0.01);
+        assertEquals(100 * 0.48, rectangles.get(7), 0.01);
+    }
+
+    @Test
+    public void drawStringFitsTextInRectangle() throws IOException {
+        try (PDPageContentStream stream = new PDPageContentStream(document, page)) {
+            PdfBadgeCanvas canvas = new PdfBadgeCanvas(stream, PDType1Font.HELVETICA_BOLD, AREA, 750, 600);
+            canvas.drawStretchedCenteredString("Weekend", new Rectangle(166, 444, 528, 90), null, Color.BLACK);
+        }
+
+        // Eight outline copies and the text itself
+        assertEquals(9, countOperator("Tj"));
+        List<Float> fontSizes = operands("Tf");
+        assertEquals(1, fontSizes.size());
+        assertTrue(fontSizes.get(0) > 0);
+        float width = PDType1Font.HELVETICA_BOLD.getStringWidth("Weekend") * fontSizes.get(0) / 1000;
+        assertTrue(width <= 528 * 0.48);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void textWithMissingGlyphRefused() throws IOException {
+        try (PDPageContentStream stream = new PDPageContentStream(document, page)) {
+            PdfBadgeCanvas canvas = new PdfBadgeCanvas(stream, PDType1Font.HELVETICA_BOLD, AREA, 750, 600);
+            canvas.drawStretchedCenteredString("綾波", new Rectangle(305, 265, 370, 70), null, Color.BLACK);
+        }
+    }
+
+    /**
+     * @return Numeric operands of every use of the operator on the page, in order
+     */
+    private List<Float> operands(String operator) throws IOException {
+        List<Float> operands = new ArrayList<>();
+        List<Float> pending = new ArrayList<>();
+        for (Object token : tokens()) {
+            if (token instanceof COSNumber) {
+                pending.add(((COSNumber) token).floatValue());
+            } else if (token instanceof Operator) {
+                if (operator.equals(((Operator) token).getName())) { operands.addAll(pending); }
+                pending.clear();
+            }
+        }
+        return operands;
+    }
+
+    private int countOperator(String operator) throws IOException {
+        int count = 0;
+        for (Object token : tokens()) {
+            if (token instanceof Operator && operator.equals(((Operator) token).getName())) { count += 1; }
+        }
+        return count;
+    }
+
+    private List<Object> tokens() throws IOException {
+        PDFStreamParser parser = new PDFStreamParser(page);
+        parser.parse();
+        return parser.getTokens();
+    }
+}
@@ -0,0 +1,107 @@
+package org.kumoricon.service.report;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AttendeeCountersTest {
+    private static final LocalDate BIRTH_DATE = LocalDate.of(1990, 1, 1);
+    private AttendeeCounters counters;
+
+    @Before
+    public void setUp() {
+        counters = new AttendeeCounters();
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(row(1, true, false, "John", "Smith", "50"));
+        rows.add(row(1, false, false, "Jane", "Smith", "50"));
+        rows.add(row(1, true, true, "Bob", "Jones", "0"));
+        rows.add(row(2, false, true, "Al", "Bo", "0"));
+        counters.rebuild(() -> rows);
+    }
+
+    @Test
+    public void rebuildCountsByBadgeType() {
+        assertTrue(counters.isReady());
+        assertArrayEquals(new int[] {1, 1, 1, 0}, counters.getBadgeCounts(1));
+        assertArrayEquals(new int[] {0, 0, 0, 1}, counters.getBadgeCounts(2));
+        assertArrayEquals(new int[] {0, 0, 0, 0}, counters.getBadgeCounts(3));
+        assertEquals(2, counters.getWarmBodyCount());
+        assertEquals(1, counters.getTotalAttendeeCount());
+    }
+
+    @Test
+    public void checkInMovesCounts() {
+        counters.replace(entry(1, false, false, "Jane", "Smith", "50"),
+                entry(1, true, false, "Jane", "Smith", "50"));
+        assertArrayEquals(new int[] {2, 0, 1, 0}, counters.getBadgeCounts(1));
+        assertEquals(3, counters.getWarmBodyCount());
+        assertEquals(2, counters.getTotalAttendeeCount());
+    }
+
+    @Test
+    public void samePersonIsCountedOnce() {
+        // Second single day badge for the same person, different case
+        counters.add(entry(2, true, false, "JOHN", "smith ", "40"));
+        assertEquals(2, counters.getWarmBodyCount());
+        assertEquals(1, counters.getTotalAttendeeCount());
+
+        counters.remove(entry(1, true, false, "John", "Smith", "50"));
+        assertEquals(2, counters.getWarmBodyCount());
+        assertEquals(1, counters.getTotalAttendeeCount());
+
+        counters.remove(entry(2, true, false, "JOHN", "smith ", "40"));
+        assertEquals(1, counters.getWarmBodyCount());
+        assertEquals(0, counters.getTotalAttendeeCount());
+    }
+
+    @Test
+    public void accentsIgnoredLikeDatabaseCollation() {
+        counters.add(entry(2, true, false, "Jöhn", "SMÍTH", "40"));
+        assertEquals(2, counters.getWarmBodyCount());
+        assertEquals(1, counters.getTotalAttendeeCount());
+    }
+
+    @Test
+    public void unpaidBadgeDoesNotCountTowardTotalAttendance() {
+        counters.add(entry(1, true, false, "Bob", "Jones", "25"));
+        assertEquals(2, counters.getWarmBodyCount());
+        assertEquals(2, counters.getTotalAttendeeCount());
+    }
+
+    @Test
+    public void removeNotCheckedInAttendee() {
+        counters.remove(entry(2, false, true, "Al", "Bo", "0"));
+        assertArrayEquals(new int[] {0, 0, 0, 0}, counters.getBadgeCounts(2));
+        assertEquals(2, counters.getWarmBodyCount());
+    }
+
+    @Test
+    public void invalidateUntilRebuild() {
+        counters.invalidate();
+        assertFalse(counters.isReady());
+        counters.rebuild(ArrayList::new);
+        assertTrue(counters.isReady());
+        assertEquals(0, counters.getWarmBodyCount());
+    }
+
+    private static Object[] row(Integer badgeId, boolean checkedIn, boolean preRegistered, String firstName,
+                                String lastName, String paidAmount) {
+        return new Object[] {badgeId, checkedIn, preRegistered, firstName, lastName, "97201", BIRTH_DATE,
+                new BigDecimal(paidAmount)};
+    }
+
+    private static AttendeeCounters.Entry entry(Integer badgeId, boolean checkedIn, boolean preRegistered,
+                                                String firstName, String lastName, String paidAmount) {
+        return AttendeeCounters.Entry.fromRow(row(badgeId, checkedIn, preRegistered, firstName, lastName,
+                paidAmount));
+    }
+}
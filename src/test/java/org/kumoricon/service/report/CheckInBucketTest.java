@@ -0,0 +1,36 @@
+package org.kumoricon.service.report;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class CheckInBucketTest {
+    private static final Date CHECK_IN_TIME =
+            Date.from(LocalDateTime.of(2017, 9, 1, 14, 59).atZone(ZoneId.systemDefault()).toInstant());
+
+    @Test
+    public void bucketUsesLocalDateAndHour() {
+        CheckInBucket bucket = CheckInBucket.of(true, CHECK_IN_TIME, true);
+        assertEquals(LocalDate.of(2017, 9, 1), bucket.getDate());
+        assertEquals(14, bucket.getHour());
+        assertTrue(bucket.isPreRegistered());
+    }
+
+    @Test
+    public void notCheckedInIsNotCounted() {
+        assertNull(CheckInBucket.of(false, CHECK_IN_TIME, false));
+        assertNull(CheckInBucket.of(null, CHECK_IN_TIME, false));
+        assertNull(CheckInBucket.of(true, null, false));
+    }
+
+    @Test
+    public void preRegisteredIsPartOfBucket() {
+        assertEquals(CheckInBucket.of(true, CHECK_IN_TIME, false), CheckInBucket.of(true, CHECK_IN_TIME, null));
+        assertNotEquals(CheckInBucket.of(true, CHECK_IN_TIME, false), CheckInBucket.of(true, CHECK_IN_TIME, true));
+    }
+}
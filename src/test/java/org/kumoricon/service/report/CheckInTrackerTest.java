@@ -0,0 +1,99 @@
+package org.kumoricon.service.report;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CheckInTrackerTest {
+    private static final long MINUTE = 60_000L;
+    private static final long START = 1_000_000 * MINUTE;
+    private CheckInTracker tracker;
+
+    @Before
+    public void setUp() {
+        tracker = new CheckInTracker(15);
+    }
+
+    @Test
+    public void countsCheckInsPerUser() {
+        tracker.record(2, "bob", "Bob", "Smith", START);
+        tracker.record(1, "al", "Al", "Jones", START + MINUTE);
+        tracker.record(2, "bob", "Bob", "Smith", START + 2 * MINUTE);
+
+        List<Object[]> rows = tracker.countsByUser(START + 3 * MINUTE);
+        assertEquals(2, rows.size());
+        assertEquals("Al", rows.get(0)[0]);
+        assertEquals(1, rows.get(0)[2]);
+        assertEquals("Bob", rows.get(1)[0]);
+        assertEquals(2, rows.get(1)[2]);
+    }
+
+    @Test
+    public void checkInsExpireAfterWindow() {
+        tracker.record(1, "al", "Al", "Jones", START);
+        tracker.record(1, "al", "Al", "Jones", START + 10 * MINUTE);
+
+        assertEquals(2, tracker.countsByUser(START + 14 * MINUTE).get(0)[2]);
+        assertEquals(1, tracker.countsByUser(START + 16 * MINUTE).get(0)[2]);
+        assertTrue(tracker.countsByUser(START + 26 * MINUTE).isEmpty());
+    }
+
+    @Test
+    public void slotIsReusedOnNextLap() {
+        tracker.record(1, "al", "Al", "Jones", START);
+        tracker.record(1, "al", "Al", "Jones", START + 15 * MINUTE);
+
+        assertEquals(1, tracker.countsByUser(START + 15 * MINUTE).get(0)[2]);
+    }
+
+    @Test
+    public void checkInOlderThanWindowIsIgnored() {
+        tracker.record(1, "al", "Al", "Jones", START + 15 * MINUTE);
+        tracker.record(1, "al", "Al", "Jones", START);
+
+        assertEquals(1, tracker.countsByUser(START + 15 * MINUTE).get(0)[2]);
+    }
+
+    @Test
+    public void concurrentCheckInsAreAllCounted() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8000; i++) {
+            final long time = START + (i % 10) * MINUTE;
+            executor.execute(() -> tracker.record(1, "al", "Al", "Jones", time));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(8000, tracker.countsByUser(START + 10 * MINUTE).get(0)[2]);
+    }
+
+    @Test
+    public void metricsAreAggregated() {
+        long now = System.currentTimeMillis();
+        tracker.record(1, "al", "Al", "Jones", now);
+        tracker.record(2, "bob", "Bob", "Smith", now);
+        tracker.record(2, "bob", "Bob", "Smith", now);
+
+        Map<String, Number> metrics = new HashMap<>();
+        for (Metric<?> metric : tracker.metrics()) {
+            metrics.put(metric.getName(), metric.getValue());
+        }
+        assertEquals(3, metrics.get("kumoreg.checkins.window.total"));
+        assertEquals(2, metrics.get("kumoreg.checkins.window.users"));
+        assertEquals(2, metrics.get("kumoreg.checkins.window.maxPerUser"));
+        for (String name : metrics.keySet()) {
+            assertFalse(name, name.contains("bob"));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.kumoricon.service.search;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AttendeeSearchIndexTest {
+    private AttendeeSearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new AttendeeSearchIndex();
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] {1, "John", "Smith", null, null, null});
+        rows.add(new Object[] {2, "Jane", "Smithson", "Janey", "Janet", "Smithson"});
+        rows.add(new Object[] {3, "René", "Doe", "Ren", null, null});
+        rows.add(new Object[] {4, "Al", "Bo", null, null, null});
+        index.rebuild(() -> rows);
+    }
+
+    @Test
+    public void searchMatchesSubstringCaseInsensitive() {
+        assertEquals(Arrays.asList(1, 2), index.search(new String[] {"SMITH"}));
+        assertEquals(Collections.singletonList(2), index.search(new String[] {"mithso"}));
+    }
+
+    @Test
+    public void searchRequiresAllWords() {
+        assertEquals(Collections.singletonList(1), index.search(new String[] {"john", "smith"}));
+        assertEquals(Collections.emptyList(), index.search(new String[] {"john", "janey"}));
+    }
+
+    @Test
+    public void searchMatchesAnyField() {
+        assertEquals(Collections.singletonList(2), index.search(new String[] {"janet"}));
+    }
+
+    @Test
+    public void searchDoesNotMatchAcrossFields() {
+        // "johnsmith" isn't in any single field
+        assertEquals(Collections.emptyList(), index.search(new String[] {"johnsmith"}));
+    }
+
+    @Test
+    public void searchShortWords() {
+        assertEquals(Collections.singletonList(4), index.search(new String[] {"al", "b"}));
+    }
+
+    @Test
+    public void searchIgnoresAccents() {
+        assertEquals(Collections.singletonList(3), index.search(new String[] {"rene"}));
+    }
+
+    @Test
+    public void putReplacesExistingEntry() {
+        index.put(1, "Johnny", "Jones", null, null, null);
+        assertEquals(Collections.singletonList(2), index.search(new String[] {"smith"}));
+        assertEquals(Collections.singletonList(1), index.search(new String[] {"jones"}));
+    }
+
+    @Test
+    public void removeDeletesEntry() {
+        index.remove(2);
+        assertEquals(Collections.singletonList(1), index.search(new String[] {"smith"}));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void putDuringRebuildTakesPrecedence() {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] {1, "John", "Smith", null, null, null});
+        index.rebuild(() -> {
+            index.put(1, "John", "Jones", null, null, null);
+            return rows;
+        });
+        assertEquals(Collections.singletonList(1), index.search(new String[] {"jones"}));
+        assertEquals(Collections.emptyList(), index.search(new String[] {"smith"}));
+    }
+
+    @Test
+    public void canAnswerRejectsWildcardsAndNonAscii() {
+        assertTrue(index.canAnswer(new String[] {"smith", "jo"}));
+        assertFalse(index.canAnswer(new String[] {"sm%th"}));
+        assertFalse(index.canAnswer(new String[] {"sm_th"}));
+        assertFalse(index.canAnswer(new String[] {"rené"}));
+    }
+
+    @Test
+    public void canAnswerIsFalseBeforeLoad() {
+        assertFalse(new AttendeeSearchIndex().canAnswer(new String[] {"smith"}));
+    }
+}
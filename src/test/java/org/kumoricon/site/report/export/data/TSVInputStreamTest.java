@@ -0,0 +1,83 @@
+package org.kumoricon.site.report.export.data;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TSVInputStreamTest {
+
+    @Test
+    public void readsHeaderAndRows() throws IOException {
+        CountingSource source = new CountingSource(3, "row");
+        assertEquals("H\nrow0\nrow1\nrow2\n", readAll(new TSVInputStream("H\n", source)));
+        assertTrue(source.closed);
+    }
+
+    @Test
+    public void emptySourceReturnsHeader() throws IOException {
+        assertEquals("H\n", readAll(new TSVInputStream("H\n", new CountingSource(0, "row"))));
+    }
+
+    @Test
+    public void rowsLongerThanBufferAreSplit() throws IOException {
+        StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            longValue.append("é");
+        }
+        String output = readAll(new TSVInputStream("H\n", new CountingSource(2, longValue.toString())));
+        assertEquals("H\n" + longValue + "0\n" + longValue + "1\n", output);
+    }
+
+    @Test
+    public void singleByteReads() throws IOException {
+        InputStream stream = new TSVInputStream("H\n", new CountingSource(1, "ü"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b;
+        while ((b = stream.read()) != -1) {
+            out.write(b);
+        }
+        assertEquals("H\nü0\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static String readAll(InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[100];
+        int count;
+        try (InputStream in = stream) {
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static class CountingSource implements TSVInputStream.RowSource {
+        private final int rows;
+        private final String prefix;
+        private int current = 0;
+        private boolean closed = false;
+
+        CountingSource(int rows, String prefix) {
+            this.rows = rows;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public boolean next(StringBuilder row) {
+            if (current >= rows) { return false; }
+            row.append(prefix).append(current++).append("\n");
+            return true;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package org.kumoricon.site.utility.importattendee;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.kumoricon.model.attendee.Attendee;
+import org.kumoricon.model.badge.Badge;
+import org.kumoricon.model.order.Order;
+import org.kumoricon.model.order.Payment;
+import org.kumoricon.model.session.Session;
+import org.kumoricon.model.user.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs AttendeeBulkWriter against its own in-memory H2 database with just the columns it writes,
+ * so that the shared test database (and the IDs other tests expect) isn't touched.
+ *
+ * benchmarkBatchedInsert() logs import throughput with and without JDBC batching. It is slow, so
+ * it only runs with -Dkumoreg.benchmark=true. H2 doesn't return a generated key for every row of a
+ * batch, so AttendeeBulkWriter inserts rows one at a time there; to compare batching, also set
+ * kumoreg.benchmark.url (and kumoreg.benchmark.username/password) to a scratch MySQL database.
+ * Its tables are dropped and created again.
+ */
+public class AttendeeBulkWriterTest {
+    private static final Logger log = LoggerFactory.getLogger(AttendeeBulkWriterTest.class);
+    private static final int BENCHMARK_ATTENDEES = 20000;
+    private static final int BENCHMARK_CHUNK_SIZE = 2000;
+
+    private DriverManagerDataSource dataSource;
+    private User user;
+    private Session session;
+    private Badge badge;
+
+    @Before
+    public void setUp() throws SQLException {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:bulkwriter;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        createTables();
+
+        user = new User();
+        user.setId(1);
+        user.setLastBadgeNumberCreated(0);
+        session = new Session();
+        session.setId(1);
+        badge = new Badge();
+        badge.setId(1);
+    }
+
+    private void createTables() throws SQLException {
+        execute("DROP TABLE IF EXISTS attendeehistory", "DROP TABLE IF EXISTS attendees",
+                "DROP TABLE IF EXISTS payments", "DROP TABLE IF EXISTS orders", "DROP TABLE IF EXISTS users",
+                "CREATE TABLE users (id INT AUTO_INCREMENT PRIMARY KEY, last_badge_number_created INT)",
+                "CREATE TABLE orders (id INT AUTO_INCREMENT PRIMARY KEY, uuid CHAR(36) NOT NULL, " +
+                        "order_id VARCHAR(255), paid BOOLEAN NOT NULL, order_taken_by_user_id INT NOT NULL, " +
+                        "notes VARCHAR(255))",
+                "CREATE TABLE payments (id INT AUTO_INCREMENT PRIMARY KEY, uuid CHAR(36) NOT NULL, " +
+                        "amount DECIMAL(19,2) NOT NULL, order_id INT NOT NULL, payment_taken_by_id INT, " +
+                        "payment_type INT NOT NULL, payment_taken_at TIMESTAMP NULL, payment_location VARCHAR(255), " +
+                        "auth_number VARCHAR(255), session_id INT NOT NULL)",
+                "CREATE TABLE attendees (id INT AUTO_INCREMENT PRIMARY KEY, uuid CHAR(36) NOT NULL, " +
+                        "first_name VARCHAR(255), last_name VARCHAR(255), legal_first_name VARCHAR(255), " +
+                        "legal_last_name VARCHAR(255), name_is_legal_name BOOLEAN, fan_name VARCHAR(255), " +
+                        "badge_number VARCHAR(255) UNIQUE, zip VARCHAR(255), country VARCHAR(255), " +
+                        "phone_number VARCHAR(255), email VARCHAR(255), birth_date DATE, " +
+                        "emergency_contact_full_name VARCHAR(255), emergency_contact_phone VARCHAR(255), " +
+                        "parent_is_emergency_contact BOOLEAN, parent_full_name VARCHAR(255), " +
+                        "parent_phone VARCHAR(255), parent_form_received BOOLEAN, paid BOOLEAN, " +
+                        "paid_amount DECIMAL(19,2), comped_badge BOOLEAN, badge_id INT, order_id INT, " +
+                        "checked_in BOOLEAN, check_in_time TIMESTAMP NULL, pre_registered BOOLEAN NOT NULL, " +
+                        "badge_pre_printed BOOLEAN NOT NULL)",
+                "CREATE TABLE attendeehistory (id INT AUTO_INCREMENT PRIMARY KEY, uuid CHAR(36) NOT NULL, " +
+                        "timestamp TIMESTAMP NULL, user_id INT, attendee_id INT, message VARCHAR(255))",
+                "INSERT INTO users (id, last_badge_number_created) VALUES (1, 0)");
+    }
+
+    @Test
+    public void writeAssignsIdsAndSavesRows() throws SQLException {
+        Order order = buildOrder("order1");
+        List<Attendee> attendees = new ArrayList<>();
+        attendees.add(buildAttendee(order, new BigDecimal("50")));
+        attendees.add(buildAttendee(order, new BigDecimal("40")));
+        attendees.get(0).addHistoryEntry(user, "VIP T-Shirt size: L");
+        Payment payment = buildPayment(order, new BigDecimal("90"));
+
+        try (AttendeeBulkWriter writer = new AttendeeBulkWriter(dataSource, 1)) {
+            ImportChunk chunk = buildChunk();
+            chunk.orders.add(order);
+            chunk.payments.add(payment);
+            chunk.attendees.addAll(attendees);
+            writer.write(chunk);
+        }
+
+        assertEquals(Integer.valueOf(1), order.getId());
+        assertEquals(Integer.valueOf(1), payment.getId());
+        assertEquals(Integer.valueOf(1), attendees.get(0).getId());
+        assertEquals(Integer.valueOf(2), attendees.get(1).getId());
+        assertEquals(2, queryInt("SELECT COUNT(*) FROM attendees WHERE order_id = 1"));
+        assertEquals(1, queryInt("SELECT COUNT(*) FROM attendeehistory WHERE attendee_id = 1"));
+        assertEquals(90, queryInt("SELECT amount FROM payments WHERE order_id = 1"));
+        assertEquals(2, queryInt("SELECT last_badge_number_created FROM users WHERE id = 1"));
+    }
+
+    @Test
+    public void writeContinuesAfterExistingIds() throws SQLException {
+        execute("INSERT INTO orders (id, uuid, order_id, paid, order_taken_by_user_id) VALUES (41, 'x', 'old', TRUE, 1)");
+        Order order = buildOrder("order2");
+        Attendee attendee = buildAttendee(order, BigDecimal.TEN);
+
+        try (AttendeeBulkWriter writer = new AttendeeBulkWriter(dataSource, 10)) {
+            ImportChunk chunk = buildChunk();
+            chunk.orders.add(order);
+            chunk.attendees.add(attendee);
+            writer.write(chunk);
+        }
+
+        assertEquals(Integer.valueOf(42), order.getId());
+        assertEquals(42, queryInt("SELECT order_id FROM attendees WHERE id = " + attendee.getId()));
+    }
+
+    @Test
+    public void rowsInsertedBetweenChunksKeepTheirIds() throws SQLException {
+        Order first = buildOrder("order5");
+        Order second = buildOrder("order6");
+        try (AttendeeBulkWriter writer = new AttendeeBulkWriter(dataSource, 10)) {
+            ImportChunk chunk = buildChunk();
+            chunk.orders.add(first);
+            writer.write(chunk);
+
+            execute("INSERT INTO orders (uuid, order_id, paid, order_taken_by_user_id) VALUES ('x', 'at-con', TRUE, 1)");
+
+            chunk = buildChunk();
+            chunk.orders.add(second);
+            writer.write(chunk);
+        }
+
+        assertEquals(3, queryInt("SELECT COUNT(*) FROM orders"));
+        assertEquals(Integer.valueOf(first.getId() + 2), second.getId());
+        assertEquals(first.getId() + 1, queryInt("SELECT id FROM orders WHERE order_id = 'at-con'"));
+    }
+
+    @Test
+    public void changedPaymentAmountIsSaved() throws SQLException {
+        Order order = buildOrder("order3");
+        Payment payment = buildPayment(order, BigDecimal.TEN);
+        try (AttendeeBulkWriter writer = new AttendeeBulkWriter(dataSource, 10)) {
+            ImportChunk first = buildChunk();
+            first.orders.add(order);
+            first.payments.add(payment);
+            first.attendees.add(buildAttendee(order, BigDecimal.TEN));
+            writer.write(first);
+
+            ImportChunk second = buildChunk();
+            second.paymentIncreases.put(payment, new BigDecimal("15"));
+            second.attendees.add(buildAttendee(order, new BigDecimal("15")));
+            writer.write(second);
+        }
+
+        assertEquals(25, queryInt("SELECT amount FROM payments WHERE id = " + payment.getId()));
+        assertEquals(2, queryInt("SELECT COUNT(*) FROM attendees"));
+    }
+
+    @Test
+    public void failedChunkIsRolledBack() throws SQLException {
+        Order order = buildOrder("order4");
+        Attendee first = buildAttendee(order, BigDecimal.TEN);
+        Attendee duplicate = buildAttendee(order, BigDecimal.TEN);
+        duplicate.setBadgeNumber(first.getBadgeNumber());
+
+        try (AttendeeBulkWriter writer = new AttendeeBulkWriter(dataSource, 10)) {
+            ImportChunk chunk = buildChunk();
+            chunk.orders.add(order);
+            chunk.attendees.addAll(Arrays.asList(first, duplicate));
+            writer.write(chunk);
+            fail("Duplicate badge number should fail");
+        } catch (SQLException expected) {
+            // Expected
+        }
+
+        assertNull(order.getId());
+        assertNull(first.getId());
+        assertEquals(0, queryInt("SELECT COUNT(*) FROM orders"));
+        assertEquals(0, queryInt("SELECT COUNT(*) FROM attendees"));
+    }
+
+    @Test
+    public void benchmarkBatchedInsert() throws SQLException {
+        assumeTrue(Boolean.getBoolean("kumoreg.benchmark"));
+        String url = System.getProperty("kumoreg.benchmark.url");
+        if (url != null) {
+            dataSource = new DriverManagerDataSource(url, System.getProperty("kumoreg.benchmark.username"),
+                    System.getProperty("kumoreg.benchmark.password"));
+            createTables();
+        }
+
+        double unbatched = runBenchmark(1);
+        execute("DELETE FROM attendeehistory", "DELETE FROM attendees", "DELETE FROM payments", "DELETE FROM orders");
+        double batched = runBenchmark(500);
+        log.info("Bulk import of {} attendees: {} rows/sec with batch size 1, {} rows/sec with batch size 500",
+                BENCHMARK_ATTENDEES, Math.round(unbatched), Math.round(batched));
+
+        assertEquals(BENCHMARK_ATTENDEES, queryInt("SELECT COUNT(*) FROM attendees"));
+        assertEquals(BENCHMARK_ATTENDEES / 2, queryInt("SELECT COUNT(*) FROM payments"));
+    }
+
+    /**
+     * Imports BENCHMARK_ATTENDEES attendees, two per order, in chunks
+     * @return Attendees per second
+     */
+    private double runBenchmark(int batchSize) throws SQLException {
+        long start = System.nanoTime();
+        try (AttendeeBulkWriter writer = new AttendeeBulkWriter(dataSource, batchSize)) {
+            for (int chunkStart = 0; chunkStart < BENCHMARK_ATTENDEES; chunkStart += BENCHMARK_CHUNK_SIZE) {
+                ImportChunk chunk = new ImportChunk(user.getId());
+                for (int i = chunkStart; i < chunkStart + BENCHMARK_CHUNK_SIZE; i += 2) {
+                    Order order = buildOrder("benchmark" + i);
+                    chunk.orders.add(order);
+                    chunk.payments.add(buildPayment(order, new BigDecimal("100")));
+                    chunk.attendees.add(buildAttendee(order, new BigDecimal("50")));
+                    chunk.attendees.add(buildAttendee(order, new BigDecimal("50")));
+                }
+                chunk.lastBadgeNumberCreated = user.getLastBadgeNumberCreated();
+                writer.write(chunk);
+            }
+        }
+        return BENCHMARK_ATTENDEES / ((System.nanoTime() - start) / 1_000_000_000.0);
+    }
+
+    private ImportChunk buildChunk() {
+        ImportChunk chunk = new ImportChunk(user.getId());
+        chunk.lastBadgeNumberCreated = user.getLastBadgeNumberCreated();
+        return chunk;
+    }
+
+    private Order buildOrder(String orderId) {
+        Order order = new Order();
+        order.setOrderId(orderId);
+        order.setOrderTakenByUser(user);
+        order.setPaid(true);
+        return order;
+    }
+
+    private Payment buildPayment(Order order, BigDecimal amount) {
+        Payment payment = new Payment();
+        payment.setAmount(amount);
+        payment.setPaymentType(Payment.PaymentType.PREREG);
+        payment.setPaymentTakenAt(LocalDateTime.now());
+        payment.setPaymentLocation("kumoricon.org");
+        payment.setPaymentTakenBy(user);
+        payment.setSession(session);
+        payment.setOrder(order);
+        return payment;
+    }
+
+    private Attendee buildAttendee(Order order, BigDecimal paidAmount) {
+        Attendee attendee = new Attendee();
+        attendee.setFirstName("Test");
+        attendee.setLastName("Person");
+        attendee.setBadgeNumber(String.format("ONL%1$05d", user.getNextBadgeNumber()));
+        attendee.setBirthDate(LocalDate.of(1990, 1, 1));
+        attendee.setPaid(true);
+        attendee.setPaidAmount(paidAmount);
+        attendee.setBadge(badge);
+        attendee.setOrder(order);
+        attendee.setPreRegistered(true);
+        return attendee;
+    }
+
+    private void execute(String... sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String s : sql) {
+                statement.execute(s);
+            }
+        }
+    }
+
+    private int queryInt(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(sql)) {
+            assertTrue(result.next());
+            return result.getInt(1);
+        }
+    }
+}
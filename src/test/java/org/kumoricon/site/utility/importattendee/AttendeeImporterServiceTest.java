@@ -3,10 +3,19 @@ package org.kumoricon.site.utility.importattendee;
 import org.junit.Before;
 import org.junit.Test;
 import org.kumoricon.model.attendee.Attendee;
+import org.kumoricon.model.badge.Badge;
 import org.kumoricon.model.order.Order;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class AttendeeImporterServiceTest {
     private Order order;
@@ -58,5 +67,43 @@ public class AttendeeImporterServiceTest {
         AttendeeImporterService.validatePaidStatus(order);
     }
 
+    @Test
+    public void validateFileChecksEveryRecord() throws Exception {
+        File file = jsonFile("[{\"membershipType\": \"Weekend\", \"birthdate\": \"1990-01-01\"}, " +
+                "{\"membershipType\": \"Weekend\", \"birthdate\": \"2001-12-31\"}]");
+
+        assertEquals(2, importer().validateFile(file, badges(), () -> false));
+    }
+
+    @Test
+    public void validateFileStopsAtBadRecord() throws Exception {
+        File file = jsonFile("[{\"membershipType\": \"Weekend\", \"birthdate\": \"1990-01-01\"}, " +
+                "{\"membershipType\": \"Weekend\", \"birthdate\": \"01/01/1990\"}, " +
+                "{\"membershipType\": \"Weekend\", \"birthdate\": \"1990-01-01\"}]");
+
+        try {
+            importer().validateFile(file, badges(), () -> false);
+            fail("Invalid birthdate should fail");
+        } catch (Exception expected) {
+            assertEquals("Invalid birthdate 01/01/1990 on line 2", expected.getMessage());
+        }
+    }
+
+    private static AttendeeImporterService importer() {
+        // Validation doesn't touch the database
+        return new AttendeeImporterService(null, null, null, null, null, Collections.emptyList(), 1, 1);
+    }
 
-}
\ No newline at end of file
+    private static Map<String, Badge> badges() {
+        Badge badge = new Badge();
+        badge.setName("Weekend");
+        return Collections.singletonMap("Weekend", badge);
+    }
+
+    private static File jsonFile(String json) throws Exception {
+        File file = File.createTempFile("import", ".json");
+        file.deleteOnExit();
+        Files.write(file.toPath(), json.getBytes(UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,43 @@
+package org.kumoricon.site.utility.importattendee;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class AttendeeRecordReaderTest {
+    @Test
+    public void readsRecordsInOrder() throws IOException {
+        AttendeeRecordReader reader = new AttendeeRecordReader(new StringReader(
+                "[{\"firstName\": \"Alice\", \"amountPaidInCents\": 5000}, {\"firstName\": \"Bob\"}]"));
+
+        AttendeeRecord alice = reader.read();
+        assertEquals("Alice", alice.firstName);
+        assertEquals(5000, alice.amountPaidInCents);
+        assertEquals("Bob", reader.read().firstName);
+        assertNull(reader.read());
+        assertNull(reader.read());
+    }
+
+    @Test
+    public void emptyArrayHasNoRecords() throws IOException {
+        AttendeeRecordReader reader = new AttendeeRecordReader(new StringReader("[]"));
+        assertNull(reader.read());
+    }
+
+    @Test
+    public void skipsNullEntries() throws IOException {
+        AttendeeRecordReader reader = new AttendeeRecordReader(new StringReader(
+                "[null, {\"firstName\": \"Alice\"}, null]"));
+
+        assertEquals("Alice", reader.read().firstName);
+        assertNull(reader.read());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsFileThatIsNotAnArray() throws IOException {
+        new AttendeeRecordReader(new StringReader("{\"attendees\": []}")).read();
+    }
+}
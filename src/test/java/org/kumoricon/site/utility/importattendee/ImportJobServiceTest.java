@@ -0,0 +1,152 @@
+package org.kumoricon.site.utility.importattendee;
+
+import org.junit.After;
+import org.junit.Test;
+import org.kumoricon.model.user.User;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ImportJobServiceTest {
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger imports = new AtomicInteger();
+    private ImportJobService service;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (service != null) { service.stop(); }
+    }
+
+    @Test
+    public void submittedJobRunsAndDeletesFile() throws Exception {
+        service = new ImportJobService(1, 5, (file, user, job) -> {
+            job.setRowsProcessed(2);
+            return "Imported 2 attendees and 1 orders";
+        });
+        File file = tempFile();
+
+        ImportJob job = service.submit(file, "prereg.json", user("admin"));
+        waitUntilFinished(job);
+
+        assertEquals(ImportJob.State.DONE, job.getState());
+        assertEquals("Imported 2 attendees and 1 orders", job.getResult());
+        assertEquals("admin", job.getUsername());
+        assertSame(job, service.getJob(job.getId()));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void fullQueueRefusesImport() throws Exception {
+        service = new ImportJobService(1, 1, this::blockingImport);
+        service.submit(tempFile(), "running.json", user("alice"));
+        service.submit(tempFile(), "queued.json", user("bob"));
+        File refused = tempFile();
+
+        try {
+            service.submit(refused, "refused.json", user("carol"));
+            fail("Third import should be refused");
+        } catch (RejectedExecutionException expected) {
+            assertEquals("Too many imports are queued, try again later", expected.getMessage());
+        }
+
+        ImportJob job = service.getJobs().get(2);
+        assertEquals(ImportJob.State.FAILED, job.getState());
+        assertFalse(refused.exists());
+    }
+
+    @Test
+    public void secondImportFromSameUserRefused() throws Exception {
+        service = new ImportJobService(2, 5, this::blockingImport);
+        ImportJob first = service.submit(tempFile(), "first.json", user("admin"));
+        File refused = tempFile();
+
+        try {
+            service.submit(refused, "second.json", user("admin"));
+            fail("Second import from the same user should be refused");
+        } catch (RejectedExecutionException expected) {
+            // Expected
+        }
+
+        assertEquals(1, service.getJobs().size());
+        assertFalse(refused.exists());
+
+        // Allowed again once the first import finishes
+        release.countDown();
+        waitUntilFinished(first);
+        ImportJob second = service.submit(tempFile(), "second.json", user("admin"));
+        waitUntilFinished(second);
+        assertEquals(ImportJob.State.DONE, second.getState());
+    }
+
+    @Test
+    public void cancelledQueuedJobDoesNotStart() throws Exception {
+        service = new ImportJobService(1, 5, this::blockingImport);
+        ImportJob running = service.submit(tempFile(), "running.json", user("alice"));
+        ImportJob queued = service.submit(tempFile(), "queued.json", user("bob"));
+
+        assertTrue(service.cancel(queued.getId()));
+        release.countDown();
+        waitUntilFinished(running);
+        waitUntilFinished(queued);
+
+        assertEquals(ImportJob.State.DONE, running.getState());
+        assertEquals(ImportJob.State.CANCELLED, queued.getState());
+        assertEquals(1, imports.get());
+        assertFalse(service.cancel(queued.getId()));
+    }
+
+    @Test
+    public void cancelStopsRunningJob() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        service = new ImportJobService(1, 5, (file, user, job) -> {
+            job.setRowsProcessed(5000);
+            started.countDown();
+            while (!job.isCancelRequested()) {
+                Thread.sleep(10);
+            }
+            throw new CancellationException();
+        });
+        ImportJob job = service.submit(tempFile(), "prereg.json", user("admin"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertTrue(service.cancel(job.getId()));
+        waitUntilFinished(job);
+
+        assertEquals(ImportJob.State.CANCELLED, job.getState());
+        assertEquals("Cancelled. Imported 5000 attendees before cancelling", job.getResult());
+    }
+
+    private String blockingImport(File file, User user, ImportJob job) throws InterruptedException {
+        imports.incrementAndGet();
+        assertTrue(release.await(5, TimeUnit.SECONDS));
+        return "Imported";
+    }
+
+    private static void waitUntilFinished(ImportJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!job.getState().isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(job + " didn't finish", job.getState().isFinished());
+    }
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("import", ".json");
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        return user;
+    }
+}
@@ -0,0 +1,38 @@
+package org.kumoricon.site.utility.importattendee;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ImportJobTest {
+    @Test
+    public void newJobIsQueued() {
+        ImportJob job = new ImportJob(1, "prereg.json", "admin");
+        assertEquals(ImportJob.State.QUEUED, job.getState());
+        assertFalse(job.getState().isFinished());
+        assertEquals(0, job.getRowsPerSecond());
+    }
+
+    @Test
+    public void finishedJobKeepsResult() {
+        ImportJob job = new ImportJob(1, "prereg.json", "admin");
+        job.started();
+        job.setRowsProcessed(5000);
+        job.finished(ImportJob.State.DONE, "Imported 5000 attendees and 2500 orders");
+
+        assertTrue(job.getState().isFinished());
+        assertEquals(5000, job.getRowsProcessed());
+        assertEquals("Imported 5000 attendees and 2500 orders", job.getResult());
+        assertTrue(job.getRowsPerSecond() > 0);
+    }
+
+    @Test
+    public void cancelIsRequestedNotImmediate() {
+        ImportJob job = new ImportJob(1, "prereg.json", "admin");
+        job.started();
+        job.requestCancel();
+
+        assertTrue(job.isCancelRequested());
+        assertEquals(ImportJob.State.RUNNING, job.getState());
+    }
+}